@@ -0,0 +1,23 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange.benchmarks;
+
+
+import junit.framework.TestSuite;
+
+@SuppressWarnings("nls")
+public class AllTests {
+    
+    public static junit.framework.Test suite() {
+        TestSuite suite = new TestSuite("org.opengroup.archimate.xmlexchange.benchmarks");
+        
+        suite.addTest(ModelGeneratorTests.suite());
+        suite.addTest(ScalingTests.suite());
+        
+        return suite;
+    }
+    
+}
@@ -0,0 +1,101 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.osgi.framework.Bundle;
+
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.util.ArchimateResourceFactory;
+
+
+/**
+ * Models and exchange files for the benchmarks
+ *
+ * A source is either "archisurance" for the test data in the tests bundle, or the number of concepts of a generated model.
+ */
+@SuppressWarnings("nls")
+public class BenchmarkData {
+    
+    public static final String ARCHISURANCE = "archisurance";
+    
+    /**
+     * All generated models use the same seed so that results can be compared across runs and versions
+     */
+    public static final long SEED = 1;
+    
+    /**
+     * System property to set the test data folder if the tests bundle is not available
+     */
+    public static final String TESTDATA_PROPERTY = "xmlexchange.testdata";
+    
+    // Exchange files are written once per run and shared by the benchmarks
+    private static Map<String, File> xmlFiles = new HashMap<>();
+    
+    /**
+     * @return The model for source
+     */
+    public static IArchimateModel getModel(String source) throws IOException {
+        if(ARCHISURANCE.equals(source)) {
+            Resource resource = ArchimateResourceFactory.createNewResource(new File(getTestDataFolder(), "archisurance.archimate"));
+            resource.load(null);
+            return (IArchimateModel)resource.getContents().get(0);
+        }
+        
+        ModelGenerator generator = new ModelGenerator(SEED);
+        generator.setConceptCount(Integer.parseInt(source));
+        return generator.createModel();
+    }
+    
+    /**
+     * @return The exchange file for source
+     */
+    public static synchronized File getXMLFile(String source) throws IOException {
+        if(ARCHISURANCE.equals(source)) {
+            return new File(getTestDataFolder(), "archisurance.xml");
+        }
+        
+        File file = xmlFiles.get(source);
+        if(file == null) {
+            file = File.createTempFile("benchmark-" + source + "-", ".xml");
+            file.deleteOnExit();
+            
+            ModelGenerator generator = new ModelGenerator(SEED);
+            generator.setConceptCount(Integer.parseInt(source));
+            generator.writeXMLFile(file);
+            
+            xmlFiles.put(source, file);
+        }
+        
+        return file;
+    }
+    
+    /**
+     * @return The testdata folder in the tests bundle
+     */
+    static File getTestDataFolder() throws IOException {
+        String path = System.getProperty(TESTDATA_PROPERTY);
+        if(path != null) {
+            return new File(path);
+        }
+        
+        Bundle bundle = Platform.getBundle("org.opengroup.archimate.xmlexchange.tests");
+        if(bundle == null) {
+            throw new IOException("Tests bundle not found. Set the " + TESTDATA_PROPERTY + " system property to the testdata folder.");
+        }
+        
+        URL url = FileLocator.resolve(bundle.getEntry("/"));
+        return new File(url.getPath(), "testdata");
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.opengroup.archimate.xmlexchange.XMLModelExporter;
+
+import com.archimatetool.model.IArchimateModel;
+
+
+/**
+ * Benchmark XMLModelExporter.exportModel()
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ExportBenchmark {
+    
+    @Param({BenchmarkData.ARCHISURANCE, "1000", "10000", "100000", "1000000"})
+    public String source;
+    
+    @Param({"false", "true"})
+    public boolean streaming;
+    
+    private IArchimateModel model;
+    private File file;
+    
+    @Setup
+    public void setup() throws Exception {
+        model = BenchmarkData.getModel(source);
+        file = File.createTempFile("benchmark-export-", ".xml"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+    
+    @Benchmark
+    public long exportModel() throws Exception {
+        XMLModelExporter exporter = new XMLModelExporter();
+        exporter.setSaveOrganisation(true);
+        exporter.setStreaming(streaming);
+        exporter.exportModel(model, file);
+        return file.length();
+    }
+}
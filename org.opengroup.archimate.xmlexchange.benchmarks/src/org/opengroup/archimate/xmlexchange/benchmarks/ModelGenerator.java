@@ -0,0 +1,405 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.emf.ecore.EClass;
+import org.opengroup.archimate.xmlexchange.XMLModelExporter;
+
+import com.archimatetool.model.IArchimateDiagramModel;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IArchimateRelationship;
+import com.archimatetool.model.IDiagramModelArchimateConnection;
+import com.archimatetool.model.IDiagramModelArchimateObject;
+import com.archimatetool.model.IDiagramModelBendpoint;
+import com.archimatetool.model.IDiagramModelContainer;
+import com.archimatetool.model.IProperties;
+import com.archimatetool.model.IProperty;
+
+
+/**
+ * Generates ArchiMate models and exchange files of a given size and shape for benchmarking and scale testing
+ *
+ * The same seed and settings always generate the same model with the same identifiers, so the same exchange file.
+ *
+ * Elements are shown on views in blocks of "nodes per view" consecutive elements, and most relationships are between
+ * elements in the same block so that views have connections. With a nesting depth greater than 1 the nodes on a view
+ * are nested in chains of that depth.
+ */
+@SuppressWarnings("nls")
+public class ModelGenerator {
+    
+    // A fixed list so that a seed generates the same model whatever new types are added to Archi
+    private static final EClass[] ELEMENT_TYPES = {
+            IArchimatePackage.eINSTANCE.getCapability(),
+            IArchimatePackage.eINSTANCE.getResource(),
+            IArchimatePackage.eINSTANCE.getBusinessActor(),
+            IArchimatePackage.eINSTANCE.getBusinessRole(),
+            IArchimatePackage.eINSTANCE.getBusinessProcess(),
+            IArchimatePackage.eINSTANCE.getBusinessFunction(),
+            IArchimatePackage.eINSTANCE.getBusinessService(),
+            IArchimatePackage.eINSTANCE.getBusinessObject(),
+            IArchimatePackage.eINSTANCE.getApplicationComponent(),
+            IArchimatePackage.eINSTANCE.getApplicationInterface(),
+            IArchimatePackage.eINSTANCE.getApplicationService(),
+            IArchimatePackage.eINSTANCE.getDataObject(),
+            IArchimatePackage.eINSTANCE.getNode(),
+            IArchimatePackage.eINSTANCE.getDevice(),
+            IArchimatePackage.eINSTANCE.getSystemSoftware(),
+            IArchimatePackage.eINSTANCE.getTechnologyService(),
+            IArchimatePackage.eINSTANCE.getArtifact(),
+            IArchimatePackage.eINSTANCE.getStakeholder(),
+            IArchimatePackage.eINSTANCE.getGoal(),
+            IArchimatePackage.eINSTANCE.getRequirement(),
+            IArchimatePackage.eINSTANCE.getWorkPackage(),
+            IArchimatePackage.eINSTANCE.getLocation()
+    };
+    
+    // Relationship types allowed between any two elements of the same type
+    private static final EClass[] SAME_TYPE_RELATIONSHIP_TYPES = {
+            IArchimatePackage.eINSTANCE.getCompositionRelationship(),
+            IArchimatePackage.eINSTANCE.getAggregationRelationship(),
+            IArchimatePackage.eINSTANCE.getSpecializationRelationship(),
+            IArchimatePackage.eINSTANCE.getAssociationRelationship()
+    };
+    
+    // "Element", "Relationship", "View" and "Documentation" in other languages and scripts for multilingual text
+    private static final String[][] WORDS = {
+            { "Element", "Relationship", "View", "Documentation" },
+            { "\u00c9l\u00e9ment", "Relation", "Vue", "Documentation fran\u00e7aise" },
+            { "Stra\u00dfe", "Beziehung", "Sicht", "Dokumentation \u00fcber Gr\u00f6\u00dfe" },
+            { "\u03a3\u03c4\u03bf\u03b9\u03c7\u03b5\u03af\u03bf", "\u03a3\u03c7\u03ad\u03c3\u03b7", "\u038c\u03c8\u03b7", "\u03a4\u03b5\u03ba\u03bc\u03b7\u03c1\u03af\u03c9\u03c3\u03b7" },
+            { "\u042d\u043b\u0435\u043c\u0435\u043d\u0442", "\u0421\u0432\u044f\u0437\u044c", "\u0412\u0438\u0434", "\u0414\u043e\u043a\u0443\u043c\u0435\u043d\u0442\u0430\u0446\u0438\u044f" },
+            { "\u8981\u7d20", "\u95a2\u4fc2", "\u30d3\u30e5\u30fc", "\u30c9\u30ad\u30e5\u30e1\u30f3\u30c8" },
+            { "\u0639\u0646\u0635\u0631", "\u0639\u0644\u0627\u0642\u0629", "\u0639\u0631\u0636", "\u062a\u0648\u062b\u064a\u0642" },
+            { "\ud83d\udce6 Element", "\ud83d\udd17 Relationship", "\ud83d\uddbc View", "Documentation & <markup> \"quoted\"" }
+    };
+    
+    private static final int NODE_WIDTH = 120;
+    private static final int NODE_HEIGHT = 55;
+    private static final int NESTED_MARGIN_X = 20;
+    private static final int NESTED_MARGIN_Y = 40;
+    private static final int SPACING = 30;
+    private static final int COLUMNS = 5;
+    
+    private final long fSeed;
+    private Random fRandom;
+    
+    private int fElementCount = 1000;
+    private int fRelationshipCount = 500;
+    private double fPropertyDensity = 1;
+    private int fPropertyKeyCount = 20;
+    private int fViewCount = 10;
+    private int fNodesPerView = 20;
+    private int fNestingDepth = 1;
+    private int fBendpointsPerConnection;
+    private boolean fMultilingual;
+    
+    public ModelGenerator(long seed) {
+        fSeed = seed;
+    }
+    
+    /**
+     * Set the number of elements, relationships and views from a total number of concepts.
+     * Two thirds of the concepts are elements and one third are relationships, with one view for every 100 elements.
+     * @param count
+     */
+    public void setConceptCount(int count) {
+        fElementCount = Math.max(2, count * 2 / 3);
+        fRelationshipCount = count - fElementCount;
+        fViewCount = fElementCount / 100;
+    }
+    
+    /**
+     * Set the number of elements
+     * @param count
+     */
+    public void setElementCount(int count) {
+        fElementCount = count;
+    }
+    
+    /**
+     * Set the number of relationships
+     * @param count
+     */
+    public void setRelationshipCount(int count) {
+        fRelationshipCount = count;
+    }
+    
+    /**
+     * Set the average number of properties on each element, relationship and view
+     * @param density
+     */
+    public void setPropertyDensity(double density) {
+        fPropertyDensity = density;
+    }
+    
+    /**
+     * Set the number of different property keys
+     * @param count
+     */
+    public void setPropertyKeyCount(int count) {
+        fPropertyKeyCount = count;
+    }
+    
+    /**
+     * Set the number of views
+     * @param count
+     */
+    public void setViewCount(int count) {
+        fViewCount = count;
+    }
+    
+    /**
+     * Set the number of nodes on each view
+     * @param count
+     */
+    public void setNodesPerView(int count) {
+        fNodesPerView = count;
+    }
+    
+    /**
+     * Set how deeply nodes are nested on a view. 1 means no nesting.
+     * @param depth
+     */
+    public void setNestingDepth(int depth) {
+        fNestingDepth = depth;
+    }
+    
+    /**
+     * Set the number of bendpoints on each connection
+     * @param count
+     */
+    public void setBendpointsPerConnection(int count) {
+        fBendpointsPerConnection = count;
+    }
+    
+    /**
+     * Set whether to use names and documentation in several languages and scripts rather than only English
+     * @param set
+     */
+    public void setMultilingual(boolean set) {
+        fMultilingual = set;
+    }
+    
+    /**
+     * @return A new model generated from the seed and settings
+     */
+    public IArchimateModel createModel() {
+        // Start from the seed each time so that the same model is generated every time
+        fRandom = new Random(fSeed);
+        
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        model.setId("id-model-" + fSeed);
+        model.setName("Generated Model " + fSeed);
+        model.setPurpose(createText(3, "Generated model"));
+        addProperties(model);
+        
+        List<IArchimateElement> elements = createElements(model);
+        createRelationships(model, elements);
+        
+        if(!elements.isEmpty()) {
+            for(int i = 0; i < fViewCount; i++) {
+                createView(model, elements, i);
+            }
+        }
+        
+        return model;
+    }
+    
+    /**
+     * Generate a model and export it to an exchange file.
+     * The file is written as the model is exported so only the model is held in memory.
+     * @param file The exchange file to write
+     * @return The generated model
+     */
+    public IArchimateModel writeXMLFile(File file) throws IOException {
+        IArchimateModel model = createModel();
+        
+        XMLModelExporter exporter = new XMLModelExporter();
+        exporter.setSaveOrganisation(true);
+        exporter.setStreaming(true);
+        exporter.exportModel(model, file);
+        
+        return model;
+    }
+    
+    // ========================================= Concepts ======================================
+    
+    private List<IArchimateElement> createElements(IArchimateModel model) {
+        List<IArchimateElement> elements = new ArrayList<>(fElementCount);
+        
+        for(int i = 0; i < fElementCount; i++) {
+            IArchimateElement element = (IArchimateElement)IArchimateFactory.eINSTANCE.create(ELEMENT_TYPES[fRandom.nextInt(ELEMENT_TYPES.length)]);
+            element.setId("id-element-" + i);
+            element.setName(createText(0, i));
+            element.setDocumentation(createText(3, i));
+            addProperties(element);
+            model.getDefaultFolderForObject(element).getElements().add(element);
+            elements.add(element);
+        }
+        
+        return elements;
+    }
+    
+    private void createRelationships(IArchimateModel model, List<IArchimateElement> elements) {
+        if(elements.size() < 2) {
+            return;
+        }
+        
+        for(int i = 0; i < fRelationshipCount; i++) {
+            int sourceIndex = fRandom.nextInt(elements.size());
+            IArchimateElement source = elements.get(sourceIndex);
+            IArchimateElement target = elements.get(getTargetIndex(sourceIndex, elements.size()));
+            
+            EClass type = source.eClass() == target.eClass() ? SAME_TYPE_RELATIONSHIP_TYPES[fRandom.nextInt(SAME_TYPE_RELATIONSHIP_TYPES.length)]
+                                                             : IArchimatePackage.eINSTANCE.getAssociationRelationship();
+            
+            IArchimateRelationship relationship = (IArchimateRelationship)IArchimateFactory.eINSTANCE.create(type);
+            relationship.setId("id-relationship-" + i);
+            
+            // Only some relationships are named
+            if(fRandom.nextInt(4) == 0) {
+                relationship.setName(createText(1, i));
+            }
+            
+            addProperties(relationship);
+            relationship.connect(source, target);
+            model.getDefaultFolderForObject(relationship).getElements().add(relationship);
+        }
+    }
+    
+    /**
+     * @return The index of a target element for a source element, usually in the same block of elements shown on a view
+     */
+    private int getTargetIndex(int sourceIndex, int size) {
+        int targetIndex;
+        
+        if(fRandom.nextInt(5) == 0) {
+            targetIndex = fRandom.nextInt(size);
+        }
+        else {
+            int blockStart = (sourceIndex / fNodesPerView) * fNodesPerView;
+            targetIndex = Math.min(size - 1, blockStart + fRandom.nextInt(fNodesPerView));
+        }
+        
+        return targetIndex != sourceIndex ? targetIndex : (sourceIndex + 1) % size;
+    }
+    
+    private void addProperties(IProperties properties) {
+        int count = (int)fPropertyDensity;
+        if(fRandom.nextDouble() < fPropertyDensity - count) {
+            count++;
+        }
+        
+        for(int i = 0; i < count; i++) {
+            IProperty property = IArchimateFactory.eINSTANCE.createProperty();
+            property.setKey("Key " + fRandom.nextInt(fPropertyKeyCount));
+            property.setValue(createText(0, fRandom.nextInt(1000)));
+            properties.getProperties().add(property);
+        }
+    }
+    
+    // ========================================= Views ======================================
+    
+    /**
+     * Create a view showing a block of elements and the connections between them
+     */
+    private void createView(IArchimateModel model, List<IArchimateElement> elements, int index) {
+        IArchimateDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        dm.setId("id-view-" + index);
+        dm.setName(createText(2, index));
+        addProperties(dm);
+        model.getDefaultFolderForObject(dm).getElements().add(dm);
+        
+        int blockCount = Math.max(1, (elements.size() + fNodesPerView - 1) / fNodesPerView);
+        int start = fRandom.nextInt(blockCount) * fNodesPerView;
+        int depth = Math.max(1, fNestingDepth);
+        
+        // Nodes shown on this view by element, in the order they were added so that connections are always created in the same order
+        Map<IArchimateElement, IDiagramModelArchimateObject> nodes = new LinkedHashMap<>();
+        
+        IDiagramModelContainer parent = dm;
+        
+        for(int i = 0; i < fNodesPerView && start + i < elements.size(); i++) {
+            int level = i % depth;
+            int chain = i / depth;
+            
+            // Start a new chain of nested nodes
+            if(level == 0) {
+                parent = dm;
+            }
+            
+            int width = NODE_WIDTH + (depth - 1 - level) * NESTED_MARGIN_X * 2;
+            int height = NODE_HEIGHT + (depth - 1 - level) * (NESTED_MARGIN_Y + NESTED_MARGIN_X);
+            int x = level == 0 ? SPACING + (chain % COLUMNS) * (width + SPACING) : NESTED_MARGIN_X;
+            int y = level == 0 ? SPACING + (chain / COLUMNS) * (height + SPACING) : NESTED_MARGIN_Y;
+            
+            IArchimateElement element = elements.get(start + i);
+            
+            IDiagramModelArchimateObject dmo = IArchimateFactory.eINSTANCE.createDiagramModelArchimateObject();
+            dmo.setId("id-node-" + index + "-" + i);
+            dmo.setArchimateElement(element);
+            dmo.setBounds(IArchimateFactory.eINSTANCE.createBounds(x, y, width, height));
+            parent.getChildren().add(dmo);
+            
+            // An element can only be shown once on a view
+            nodes.putIfAbsent(element, dmo);
+            
+            parent = dmo;
+        }
+        
+        int connectionCount = 0;
+        
+        for(IDiagramModelArchimateObject source : nodes.values()) {
+            for(IArchimateRelationship relationship : source.getArchimateElement().getSourceRelationships()) {
+                IDiagramModelArchimateObject target = nodes.get(relationship.getTarget());
+                
+                // Don't connect nested nodes as this is shown by the nesting
+                if(target == null || source.getChildren().contains(target) || target.getChildren().contains(source)) {
+                    continue;
+                }
+                
+                IDiagramModelArchimateConnection connection = IArchimateFactory.eINSTANCE.createDiagramModelArchimateConnection();
+                connection.setId("id-connection-" + index + "-" + connectionCount++);
+                connection.setArchimateRelationship(relationship);
+                connection.connect(source, target);
+                
+                for(int i = 0; i < fBendpointsPerConnection; i++) {
+                    IDiagramModelBendpoint bendpoint = IArchimateFactory.eINSTANCE.createDiagramModelBendpoint();
+                    bendpoint.setStartX(fRandom.nextInt(200) - 100);
+                    bendpoint.setStartY(fRandom.nextInt(200) - 100);
+                    bendpoint.setEndX(fRandom.nextInt(200) - 100);
+                    bendpoint.setEndY(fRandom.nextInt(200) - 100);
+                    connection.getBendpoints().add(bendpoint);
+                }
+            }
+        }
+    }
+    
+    // ========================================= Text ======================================
+    
+    /**
+     * @param word The index of the word in WORDS
+     * @param number A number to add to the text
+     * @return Text in English, or in a random language if multilingual
+     */
+    private String createText(int word, Object number) {
+        String[] words = fMultilingual ? WORDS[fRandom.nextInt(WORDS.length)] : WORDS[0];
+        return words[word] + " " + number;
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange.benchmarks;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Iterator;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.eclipse.emf.ecore.EObject;
+import org.junit.Test;
+import org.opengroup.archimate.xmlexchange.XMLModelImporter;
+import org.opengroup.archimate.xmlexchange.XMLValidator;
+
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimateRelationship;
+import com.archimatetool.model.IDiagramModelArchimateConnection;
+import com.archimatetool.model.IDiagramModelArchimateObject;
+import com.archimatetool.tests.TestUtils;
+
+
+/**
+ * Model Generator Tests
+ */
+@SuppressWarnings("nls")
+public class ModelGeneratorTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ModelGeneratorTests.class);
+    }
+    
+    @Test
+    public void testCreateModel_Counts() {
+        ModelGenerator generator = new ModelGenerator(1);
+        generator.setElementCount(300);
+        generator.setRelationshipCount(200);
+        generator.setViewCount(5);
+        
+        IArchimateModel model = generator.createModel();
+        
+        assertEquals(300, count(model, IArchimateElement.class));
+        assertEquals(200, count(model, IArchimateRelationship.class));
+        assertEquals(5, model.getDiagramModels().size());
+        assertEquals(5 * 20, count(model, IDiagramModelArchimateObject.class));
+    }
+    
+    @Test
+    public void testWriteXMLFile_SameSeedSameFile() throws Exception {
+        TestUtils.ensureDefaultDisplay();
+        
+        File file1 = createShapedFile(7);
+        File file2 = createShapedFile(7);
+        File file3 = createShapedFile(8);
+        
+        assertArrayEquals(Files.readAllBytes(file1.toPath()), Files.readAllBytes(file2.toPath()));
+        assertFalse(new String(Files.readAllBytes(file1.toPath()), "UTF-8").equals(new String(Files.readAllBytes(file3.toPath()), "UTF-8")));
+    }
+    
+    @Test
+    public void testWriteXMLFile_ValidAndImports() throws Exception {
+        TestUtils.ensureDefaultDisplay();
+        
+        File file = createShapedFile(3);
+        
+        new XMLValidator().validateXML(file);
+        
+        IArchimateModel model = new XMLModelImporter().createArchiMateModel(file);
+        assertEquals(420, count(model, IArchimateElement.class));
+        assertEquals(600, count(model, IArchimateRelationship.class));
+        assertEquals(10, model.getDiagramModels().size());
+        assertEquals(10 * 30, count(model, IDiagramModelArchimateObject.class));
+    }
+    
+    @Test
+    public void testNestingAndBendpoints() {
+        ModelGenerator generator = new ModelGenerator(5);
+        generator.setElementCount(105);
+        generator.setRelationshipCount(400);
+        generator.setViewCount(3);
+        generator.setNodesPerView(21);
+        generator.setNestingDepth(3);
+        generator.setBendpointsPerConnection(2);
+        
+        IArchimateModel model = generator.createModel();
+        
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            
+            // Every third node is at the top level of a chain of three
+            if(eObject instanceof IDiagramModelArchimateObject) {
+                IDiagramModelArchimateObject dmo = (IDiagramModelArchimateObject)eObject;
+                assertEquals(dmo.getChildren().isEmpty(), dmo.eContainer() instanceof IDiagramModelArchimateObject
+                        && dmo.eContainer().eContainer() instanceof IDiagramModelArchimateObject);
+            }
+            
+            if(eObject instanceof IDiagramModelArchimateConnection) {
+                assertEquals(2, ((IDiagramModelArchimateConnection)eObject).getBendpoints().size());
+            }
+        }
+    }
+    
+    private File createShapedFile(long seed) throws Exception {
+        ModelGenerator generator = new ModelGenerator(seed);
+        generator.setElementCount(420);
+        generator.setRelationshipCount(600);
+        generator.setPropertyDensity(1.5);
+        generator.setViewCount(10);
+        generator.setNodesPerView(30);
+        generator.setNestingDepth(3);
+        generator.setBendpointsPerConnection(2);
+        generator.setMultilingual(true);
+        
+        File file = File.createTempFile("generated", ".xml");
+        file.deleteOnExit();
+        generator.writeXMLFile(file);
+        return file;
+    }
+    
+    private int count(IArchimateModel model, Class<?> type) {
+        int count = 0;
+        
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            if(type.isInstance(iter.next())) {
+                count++;
+            }
+        }
+        
+        return count;
+    }
+    
+}
@@ -0,0 +1,75 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange.benchmarks;
+
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.archimatetool.tests.TestUtils;
+
+
+/**
+ * Run the benchmarks with the GC profiler so that allocation rates are reported along with throughput
+ *
+ * The importer and exporter need the running Archi platform for preferences, fonts and colours,
+ * so launch this as a JUnit Plug-in Test and the benchmarks run in that JVM rather than in forked JVMs.
+ * Results are written to jmh-result.json to compare across versions.
+ *
+ * JMH command line options can be set in the "jmh.args" system property, for example
+ * -Djmh.args="ImportBenchmark -p source=archisurance,10000 -wi 3 -i 5"
+ *
+ * The JMH annotation processor generates the benchmark list when this fragment is compiled.
+ * In Eclipse it is set in .factorypath and needs the M2_REPO classpath variable,
+ * and in the build it is on the compile path from the optional import of org.openjdk.jmh.generators.
+ */
+@SuppressWarnings("nls")
+public class RunBenchmarks {
+    
+    public static final String ARGS_PROPERTY = "jmh.args";
+    
+    static final String BENCHMARK_LIST = "/META-INF/BenchmarkList";
+    
+    @Test
+    public void runBenchmarks() throws Exception {
+        TestUtils.ensureDefaultDisplay();
+        
+        // Fail with the reason rather than JMH's "No benchmarks to run"
+        assertNotNull(BENCHMARK_LIST + " was not generated. Enable annotation processing with the JMH generator.",
+                getClass().getResource(BENCHMARK_LIST));
+        
+        String args = System.getProperty(ARGS_PROPERTY, "").trim();
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args.isEmpty() ? new String[0] : args.split("\\s+"));
+        
+        ChainedOptionsBuilder builder = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class);
+        
+        if(commandLineOptions.getIncludes().isEmpty()) {
+            builder.include(getClass().getPackage().getName() + ".*Benchmark");
+        }
+        
+        if(!commandLineOptions.getForkCount().hasValue()) {
+            builder.forks(0);
+        }
+        
+        if(!commandLineOptions.getResult().hasValue()) {
+            builder.result("jmh-result.json");
+        }
+        
+        if(!commandLineOptions.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opengroup.archimate.xmlexchange.XMLExchangeStats;
+import org.opengroup.archimate.xmlexchange.XMLModelExporter;
+import org.opengroup.archimate.xmlexchange.XMLModelImporter;
+import org.opengroup.archimate.xmlexchange.XMLValidator;
+
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.tests.TestUtils;
+
+
+/**
+ * Scaling Tests
+ *
+ * Import, export and validate generated models at doubling sizes, fit the growth of the time of each phase in XMLExchangeStats
+ * to n^k on a log-log scale, and fail if k is more than n log n allows for in any phase. Linear and n log n code fits k of
+ * about 1.1 over these sizes and quadratic code fits k of about 2. Each phase is fitted on its own so that a quadratic phase
+ * is not hidden by the time of the other phases.
+ */
+@SuppressWarnings("nls")
+public class ScalingTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ScalingTests.class);
+    }
+    
+    /**
+     * Number of concepts in each model
+     */
+    static final int[] SIZES = { 4000, 8000, 16000, 32000, 64000 };
+    
+    /**
+     * The highest growth exponent allowed. n log n is about 1.1 over SIZES and this allows for timing noise.
+     */
+    static final double MAX_EXPONENT = 1.4;
+    
+    /**
+     * Each phase is timed this many times and the fastest time is used
+     */
+    static final int RUNS = 3;
+    
+    /**
+     * Phase times are raised to at least this many nanoseconds before fitting, so that the noise in phases that take
+     * almost no time is not fitted as growth
+     */
+    static final double MIN_PHASE_TIME = 1e6;
+    
+    /**
+     * The phase timed when validating, as the validator does not keep stats
+     */
+    static final String PHASE_VALIDATE = "validate";
+    
+    private static IArchimateModel[] models;
+    private static File[] files;
+    
+    @BeforeClass
+    public static void runOnceBeforeAllTests() throws Exception {
+        TestUtils.ensureDefaultDisplay();
+        
+        models = new IArchimateModel[SIZES.length];
+        files = new File[SIZES.length];
+        
+        for(int i = 0; i < SIZES.length; i++) {
+            files[i] = File.createTempFile("scaling-" + SIZES[i] + "-", ".xml");
+            models[i] = createGenerator(SIZES[i]).writeXMLFile(files[i]);
+        }
+    }
+    
+    @AfterClass
+    public static void runOnceAfterAllTests() {
+        for(File file : files) {
+            file.delete();
+        }
+        
+        models = null;
+        files = null;
+    }
+    
+    @Test
+    public void testGetGrowthExponent() {
+        int[] sizes = { 1000, 2000, 4000, 8000 };
+        assertEquals(1, getGrowthExponent(sizes, new double[] { 10, 20, 40, 80 }), 0.001);
+        assertEquals(2, getGrowthExponent(sizes, new double[] { 10, 40, 160, 640 }), 0.001);
+    }
+    
+    @Test
+    public void testImportScaling() throws Exception {
+        assertScaling("Import", i -> {
+            XMLModelImporter importer = new XMLModelImporter();
+            importer.createArchiMateModel(files[i]);
+            return importer.getStats();
+        });
+    }
+    
+    @Test
+    public void testStreamingImportScaling() throws Exception {
+        assertScaling("Streaming import", i -> {
+            XMLModelImporter importer = new XMLModelImporter();
+            importer.setStreaming(true);
+            importer.createArchiMateModel(files[i]);
+            return importer.getStats();
+        });
+    }
+    
+    @Test
+    public void testExportScaling() throws Exception {
+        assertScaling("Export", i -> export(i, false));
+    }
+    
+    @Test
+    public void testStreamingExportScaling() throws Exception {
+        assertScaling("Streaming export", i -> export(i, true));
+    }
+    
+    @Test
+    public void testValidateScaling() throws Exception {
+        assertScaling("Validate", i -> {
+            XMLExchangeStats stats = new XMLExchangeStats();
+            long start = System.nanoTime();
+            new XMLValidator().validateXML(files[i]);
+            stats.addPhaseTime(PHASE_VALIDATE, start);
+            return stats;
+        });
+    }
+    
+    /**
+     * A generator for a model of size concepts, with nesting and bendpoints so that every phase has work to do
+     */
+    static ModelGenerator createGenerator(int size) {
+        ModelGenerator generator = new ModelGenerator(BenchmarkData.SEED);
+        generator.setConceptCount(size);
+        generator.setNestingDepth(2);
+        generator.setBendpointsPerConnection(1);
+        return generator;
+    }
+    
+    private XMLExchangeStats export(int i, boolean streaming) throws Exception {
+        File file = File.createTempFile("scaling-export-", ".xml");
+        
+        try {
+            XMLModelExporter exporter = new XMLModelExporter();
+            exporter.setSaveOrganisation(true);
+            exporter.setStreaming(streaming);
+            exporter.exportModel(models[i], file);
+            return exporter.getStats();
+        }
+        finally {
+            file.delete();
+        }
+    }
+    
+    /**
+     * An import, export or validation to run on the model or file at an index in SIZES
+     */
+    interface Run {
+        /**
+         * @return The stats with the time of each phase of the run
+         */
+        XMLExchangeStats run(int index) throws Exception;
+    }
+    
+    private void assertScaling(String name, Run run) throws Exception {
+        // Phase name mapped to the fastest time at each size
+        Map<String, double[]> phaseTimes = new LinkedHashMap<>();
+        
+        // Warm up on the smallest model
+        run.run(0);
+        
+        for(int i = 0; i < SIZES.length; i++) {
+            for(int r = 0; r < RUNS; r++) {
+                for(Entry<String, Long> entry : run.run(i).getPhaseTimes().entrySet()) {
+                    double[] times = phaseTimes.computeIfAbsent(entry.getKey(), key -> {
+                        double[] t = new double[SIZES.length];
+                        Arrays.fill(t, Double.MAX_VALUE);
+                        return t;
+                    });
+                    times[i] = Math.min(times[i], entry.getValue());
+                }
+            }
+        }
+        
+        assertTrue(name + " timed no phases", !phaseTimes.isEmpty());
+        
+        List<String> failures = new ArrayList<>();
+        
+        for(Entry<String, double[]> entry : phaseTimes.entrySet()) {
+            // A phase not timed at a size took no time
+            double[] times = Arrays.stream(entry.getValue()).map(t -> t == Double.MAX_VALUE ? 0 : t).toArray();
+            
+            double exponent = getGrowthExponent(SIZES, Arrays.stream(times).map(t -> Math.max(t, MIN_PHASE_TIME)).toArray());
+            
+            if(exponent > MAX_EXPONENT) {
+                failures.add(String.format("%s %s grows as n^%.2f (maximum n^%.2f). Sizes %s, times (ms) %s", name, entry.getKey(),
+                        exponent, MAX_EXPONENT, Arrays.toString(SIZES),
+                        Arrays.toString(Arrays.stream(times).mapToLong(t -> Math.round(t / 1e6)).toArray())));
+            }
+        }
+        
+        assertTrue(String.join("\n", failures), failures.isEmpty());
+    }
+    
+    /**
+     * @return The exponent k of the least squares fit of times to c * size^k
+     */
+    static double getGrowthExponent(int[] sizes, double[] times) {
+        int n = sizes.length;
+        double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+        
+        for(int i = 0; i < n; i++) {
+            double x = Math.log(sizes[i]);
+            double y = Math.log(Math.max(times[i], 1));
+            sumX += x;
+            sumY += y;
+            sumXX += x * x;
+            sumXY += x * y;
+        }
+        
+        return (n * sumXY - sumX * sumY) / (n * sumXX - sumX * sumX);
+    }
+    
+}
@@ -0,0 +1,44 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.opengroup.archimate.xmlexchange.XMLValidator;
+
+
+/**
+ * Benchmark XMLValidator.validateXML()
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ValidateBenchmark {
+    
+    @Param({BenchmarkData.ARCHISURANCE, "1000", "10000", "100000", "1000000"})
+    public String source;
+    
+    private File file;
+    
+    @Setup
+    public void setup() throws Exception {
+        file = BenchmarkData.getXMLFile(source);
+    }
+    
+    @Benchmark
+    public void validateXML() throws Exception {
+        new XMLValidator().validateXML(file);
+    }
+}
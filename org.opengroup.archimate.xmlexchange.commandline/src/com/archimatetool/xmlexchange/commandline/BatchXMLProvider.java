@@ -0,0 +1,425 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.xmlexchange.commandline;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.eclipse.osgi.util.NLS;
+import org.opengroup.archimate.xmlexchange.IXMLExchangeGlobals;
+import org.opengroup.archimate.xmlexchange.XMLModelExporter;
+import org.opengroup.archimate.xmlexchange.XMLModelImporter;
+import org.opengroup.archimate.xmlexchange.XMLValidator;
+
+import com.archimatetool.commandline.AbstractCommandLineProvider;
+import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.editor.utils.StringUtils;
+import com.archimatetool.model.IArchimateModel;
+
+/**
+ * Command Line interface for converting many files to or from XML in one run
+ * 
+ * Typical usage - (should be all on one line):
+ * 
+ * Archi -consoleLog -nosplash -application com.archimatetool.commandline.app
+   --xmlexchange.batchExport "/path/models"
+   --xmlexchange.batchOutput "/path/xml"
+ * 
+ * --xmlexchange.batchExport converts every *.archimate file in a folder, or every file matching a glob such as "/path/models/**.archimate",
+ * to an XML file that is then validated.
+ * --xmlexchange.batchImport converts every *.xml, *.xml.gz and *.zip file in a folder, or every file matching a glob, to an *.archimate file.
+ * 
+ * Files are converted at the same time on --xmlexchange.batchThreads threads, default is the number of processors.
+ * A file that fails to convert is reported and does not stop the others. If any file fails an exception is thrown after the summary.
+ * Input files that convert to the same output file, such as a.xml and a.xml.gz, are reported as failed and are not converted.
+ */
+public class BatchXMLProvider extends AbstractCommandLineProvider {
+    
+    static final String PREFIX = Messages.BatchXMLProvider_0;
+    
+    static final String OPTION_BATCH_EXPORT = "xmlexchange.batchExport"; //$NON-NLS-1$
+    static final String OPTION_BATCH_IMPORT = "xmlexchange.batchImport"; //$NON-NLS-1$
+    static final String OPTION_BATCH_OUTPUT = "xmlexchange.batchOutput"; //$NON-NLS-1$
+    static final String OPTION_BATCH_THREADS = "xmlexchange.batchThreads"; //$NON-NLS-1$
+    
+    static final String ARCHIMATE_FILE_EXTENSION = ".archimate"; //$NON-NLS-1$
+    
+    private static final String[] EXPORT_FILE_EXTENSIONS = { ARCHIMATE_FILE_EXTENSION };
+    
+    private static final String[] IMPORT_FILE_EXTENSIONS = {
+            IXMLExchangeGlobals.FILE_EXTENSION,
+            IXMLExchangeGlobals.GZIP_FILE_EXTENSION,
+            IXMLExchangeGlobals.ZIP_FILE_EXTENSION
+    };
+    
+    public BatchXMLProvider() {
+    }
+    
+    @Override
+    public void run(CommandLine commandLine) throws Exception {
+        if(!hasCorrectOptions(commandLine)) {
+            return;
+        }
+        
+        boolean isExport = commandLine.hasOption(OPTION_BATCH_EXPORT);
+        
+        // Input folder or glob
+        String value = commandLine.getOptionValue(isExport ? OPTION_BATCH_EXPORT : OPTION_BATCH_IMPORT);
+        if(!StringUtils.isSet(value)) {
+            logError(Messages.BatchXMLProvider_1);
+            return;
+        }
+        
+        List<Path> inputFiles = new ArrayList<>();
+        Path inputFolder = findFiles(value, isExport ? EXPORT_FILE_EXTENSIONS : IMPORT_FILE_EXTENSIONS, inputFiles);
+        if(inputFiles.isEmpty()) {
+            logError(NLS.bind(Messages.BatchXMLProvider_2, value));
+            return;
+        }
+        
+        // Output folder
+        String outputValue = commandLine.getOptionValue(OPTION_BATCH_OUTPUT);
+        File outputFolder = StringUtils.isSet(outputValue) ? new File(outputValue) : null;
+        
+        // Threads
+        int threads = getThreads(commandLine.getOptionValue(OPTION_BATCH_THREADS));
+        if(threads < 1) {
+            logError(NLS.bind(Messages.BatchXMLProvider_3, commandLine.getOptionValue(OPTION_BATCH_THREADS)));
+            return;
+        }
+        
+        logMessage(NLS.bind(Messages.BatchXMLProvider_4, inputFiles.size(), threads));
+        
+        // One exporter or importer is used by all threads
+        XMLModelExporter exporter = new XMLModelExporter();
+        
+        XMLModelImporter importer = new XMLModelImporter();
+        importer.setValidating(true);
+        
+        long start = System.currentTimeMillis();
+        int failed = 0;
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        
+        try {
+            List<File> outputFiles = new ArrayList<>();
+            
+            for(Path inputPath : inputFiles) {
+                outputFiles.add(getOutputFile(inputFolder, inputPath, outputFolder, isExport));
+            }
+            
+            // Input files that would be written to the same output file at the same time are not converted
+            Set<Path> duplicateOutputPaths = getDuplicatePaths(outputFiles);
+            
+            // Null for an input file that is not converted
+            List<Future<?>> futures = new ArrayList<>();
+            
+            for(int i = 0; i < inputFiles.size(); i++) {
+                File inputFile = inputFiles.get(i).toFile();
+                File outputFile = outputFiles.get(i);
+                
+                if(duplicateOutputPaths.contains(getKey(outputFile))) {
+                    futures.add(null);
+                    continue;
+                }
+                
+                futures.add(executor.submit(() -> {
+                    if(isExport) {
+                        exportFile(exporter, inputFile, outputFile);
+                    }
+                    else {
+                        importFile(importer, inputFile, outputFile);
+                    }
+                    return null;
+                }));
+            }
+            
+            // Report in the order of the input files
+            for(int i = 0; i < futures.size(); i++) {
+                if(futures.get(i) == null) {
+                    failed++;
+                    logError(NLS.bind(Messages.BatchXMLProvider_6, inputFiles.get(i), NLS.bind(Messages.BatchXMLProvider_18, outputFiles.get(i).getPath())));
+                    continue;
+                }
+                
+                try {
+                    futures.get(i).get();
+                    logMessage(NLS.bind(Messages.BatchXMLProvider_5, inputFiles.get(i), outputFiles.get(i).getPath()));
+                }
+                catch(ExecutionException ex) {
+                    failed++;
+                    logError(NLS.bind(Messages.BatchXMLProvider_6, inputFiles.get(i), ex.getCause()));
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        
+        logMessage(NLS.bind(Messages.BatchXMLProvider_7, new Object[] {
+                inputFiles.size() - failed, inputFiles.size(), System.currentTimeMillis() - start, failed }));
+        
+        if(failed > 0) {
+            throw new IOException(NLS.bind(Messages.BatchXMLProvider_8, failed));
+        }
+    }
+    
+    /**
+     * Find the files in a folder that have one of the file extensions, or the files that match a glob
+     * @param files The files found are added to this in path order
+     * @return The folder that the files are in or below
+     */
+    private Path findFiles(String value, String[] extensions, List<Path> files) throws IOException {
+        // Folder. A glob can't be made into a Path on Windows.
+        Path folder = indexOfGlob(value) == -1 ? Paths.get(value) : null;
+        if(folder != null && Files.isDirectory(folder)) {
+            try(Stream<Path> paths = Files.list(folder)) {
+                files.addAll(paths.filter(path -> Files.isRegularFile(path) && hasExtension(path, extensions))
+                                  .sorted()
+                                  .collect(Collectors.toList()));
+            }
+            
+            return folder;
+        }
+        
+        // Glob, searched from the folder before the first glob character
+        folder = getGlobFolder(value);
+        if(!Files.isDirectory(folder)) {
+            return folder;
+        }
+        
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + value); //$NON-NLS-1$
+        
+        try(Stream<Path> paths = Files.walk(folder)) {
+            files.addAll(paths.filter(path -> Files.isRegularFile(path) && matcher.matches(path))
+                              .sorted()
+                              .collect(Collectors.toList()));
+        }
+        
+        return folder;
+    }
+    
+    /**
+     * @return The folder part of a glob before the first glob character, or the current folder if there is none
+     */
+    private Path getGlobFolder(String glob) {
+        int index = indexOfGlob(glob);
+        if(index == -1) {
+            index = glob.length();
+        }
+        
+        int separator = Math.max(glob.lastIndexOf('/', index), glob.lastIndexOf(File.separatorChar, index));
+        
+        // The root folder
+        if(separator == 0) {
+            return Paths.get(glob.substring(0, 1));
+        }
+        
+        return separator == -1 ? Paths.get("") : Paths.get(glob.substring(0, separator)); //$NON-NLS-1$
+    }
+    
+    /**
+     * @return The index of the first glob character in value, or -1 if there is none
+     */
+    private int indexOfGlob(String value) {
+        for(int i = 0; i < value.length(); i++) {
+            if("*?[{".indexOf(value.charAt(i)) != -1) { //$NON-NLS-1$
+                return i;
+            }
+        }
+        
+        return -1;
+    }
+    
+    private boolean hasExtension(Path path, String[] extensions) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        
+        for(String extension : extensions) {
+            if(name.endsWith(extension)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * @return The file to convert inputPath to, in outputFolder below the same folders as inputPath is below inputFolder,
+     *         or next to inputPath if outputFolder is null
+     */
+    private File getOutputFile(Path inputFolder, Path inputPath, File outputFolder, boolean isExport) {
+        String name = inputPath.getFileName().toString();
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        
+        for(String extension : isExport ? EXPORT_FILE_EXTENSIONS : IMPORT_FILE_EXTENSIONS) {
+            if(lowerCaseName.endsWith(extension)) {
+                name = name.substring(0, name.length() - extension.length());
+                break;
+            }
+        }
+        
+        // A zip file can be named model.xml.zip
+        if(!isExport && name.toLowerCase(Locale.ROOT).endsWith(IXMLExchangeGlobals.FILE_EXTENSION)) {
+            name = name.substring(0, name.length() - IXMLExchangeGlobals.FILE_EXTENSION.length());
+        }
+        
+        name += isExport ? IXMLExchangeGlobals.FILE_EXTENSION : ARCHIMATE_FILE_EXTENSION;
+        
+        if(outputFolder == null) {
+            return inputPath.resolveSibling(name).toFile();
+        }
+        
+        Path relativePath = inputFolder.relativize(inputPath).resolveSibling(name);
+        return outputFolder.toPath().resolve(relativePath).toFile();
+    }
+    
+    /**
+     * @return The paths of the files that are in files more than once
+     */
+    private Set<Path> getDuplicatePaths(List<File> files) {
+        Set<Path> paths = new HashSet<>();
+        Set<Path> duplicates = new HashSet<>();
+        
+        for(File file : files) {
+            Path path = getKey(file);
+            if(!paths.add(path)) {
+                duplicates.add(path);
+            }
+        }
+        
+        return duplicates;
+    }
+    
+    /**
+     * @return The absolute path of file without any "." or ".." so that two names for the same file are equal
+     */
+    private Path getKey(File file) {
+        return file.toPath().toAbsolutePath().normalize();
+    }
+    
+    /**
+     * @return The number of threads set in value, the number of processors if not set, or 0 if value is not a number
+     */
+    private int getThreads(String value) {
+        if(!StringUtils.isSet(value)) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        
+        try {
+            return Integer.parseInt(value);
+        }
+        catch(NumberFormatException ex) {
+            return 0;
+        }
+    }
+    
+    /**
+     * Export a model file to a validated XML file
+     * 
+     * The model is loaded on its own rather than through IEditorModelManager, which is not thread safe and keeps every
+     * model it loads open. Files are exported on many threads and the model is not needed after the export.
+     */
+    static void exportFile(XMLModelExporter exporter, File inputFile, File outputFile) throws Exception {
+        IArchimateModel model = IArchiveManager.FACTORY.loadModel(inputFile);
+        if(model == null) {
+            throw new IOException(Messages.BatchXMLProvider_9);
+        }
+        
+        exporter.exportModel(model, outputFile);
+        
+        new XMLValidator().validateXML(outputFile);
+    }
+    
+    /**
+     * Import an XML file, validating it as it is read, and save it as a model file
+     */
+    static void importFile(XMLModelImporter importer, File inputFile, File outputFile) throws Exception {
+        IArchimateModel model = importer.createArchiMateModel(inputFile);
+        
+        // Create parent folder if it doesn't exist
+        File parent = outputFile.getParentFile();
+        if(parent != null) {
+            parent.mkdirs();
+        }
+        
+        IArchiveManager archiveManager = IArchiveManager.FACTORY.createArchiveManager(model);
+        model.setAdapter(IArchiveManager.class, archiveManager);
+        model.setFile(outputFile);
+        archiveManager.saveModel();
+    }
+    
+    @Override
+    protected String getLogPrefix() {
+        return PREFIX;
+    }
+    
+    @Override
+    public int getPriority() {
+        return PRIORITY_REPORT_OR_EXPORT;
+    }
+    
+    @Override
+    public Options getOptions() {
+        Options options = new Options();
+        
+        Option option = Option.builder()
+                .longOpt(OPTION_BATCH_EXPORT)
+                .hasArg()
+                .argName(Messages.BatchXMLProvider_10)
+                .desc(Messages.BatchXMLProvider_11)
+                .build();
+        options.addOption(option);
+        
+        option = Option.builder()
+                .longOpt(OPTION_BATCH_IMPORT)
+                .hasArg()
+                .argName(Messages.BatchXMLProvider_12)
+                .desc(Messages.BatchXMLProvider_13)
+                .build();
+        options.addOption(option);
+        
+        option = Option.builder()
+                .longOpt(OPTION_BATCH_OUTPUT)
+                .hasArg()
+                .argName(Messages.BatchXMLProvider_14)
+                .desc(Messages.BatchXMLProvider_15)
+                .build();
+        options.addOption(option);
+        
+        option = Option.builder()
+                .longOpt(OPTION_BATCH_THREADS)
+                .hasArg()
+                .argName(Messages.BatchXMLProvider_16)
+                .desc(Messages.BatchXMLProvider_17)
+                .build();
+        options.addOption(option);
+        
+        return options;
+    }
+    
+    private boolean hasCorrectOptions(CommandLine commandLine) {
+        return commandLine.hasOption(OPTION_BATCH_EXPORT) || commandLine.hasOption(OPTION_BATCH_IMPORT);
+    }
+}
@@ -0,0 +1,259 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.xmlexchange.commandline;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.eclipse.osgi.util.NLS;
+import org.opengroup.archimate.xmlexchange.IXMLExchangeGlobals;
+import org.opengroup.archimate.xmlexchange.XMLModelExporter;
+import org.opengroup.archimate.xmlexchange.XMLModelImporter;
+import org.opengroup.archimate.xmlexchange.XMLValidator;
+
+import com.archimatetool.commandline.AbstractCommandLineProvider;
+
+/**
+ * Command Line interface for a long running process that converts files sent to it as jobs
+ * 
+ * Typical usage - (should be all on one line):
+ * 
+ * Archi -consoleLog -nosplash -application com.archimatetool.commandline.app
+   --xmlexchange.daemon
+ * 
+ * Jobs are read from standard input, one job per line, and a result line is written to standard output for each job.
+ * Only the process that started Archi can send jobs. Log messages are written to standard error.
+ * 
+ * Jobs are (a path with spaces is put in double quotes):
+ * 
+ * export "model.archimate" "model.xml"     - export a model file to a validated XML file
+ * import "model.xml" "model.archimate"     - import an XML file, validating it as it is read, and save it as a model file
+ * validate "model.xml"                     - validate an XML file
+ * roundtrip "model.archimate" ["copy.archimate"] - export a model file, validate it, import it and save it if a file is set
+ * ping                                     - check that the process is ready
+ * quit                                     - stop the process
+ * 
+ * The result of a job is "OK <job> <milliseconds>" or "ERROR <job> <message>".
+ * 
+ * Each job reads its files again and keeps no models after it has finished, so a changed file is picked up by the next job
+ * and a long running process does not hold on to the models it has converted.
+ */
+public class DaemonXMLProvider extends AbstractCommandLineProvider {
+    
+    static final String PREFIX = Messages.DaemonXMLProvider_0;
+    
+    static final String OPTION_DAEMON = "xmlexchange.daemon"; //$NON-NLS-1$
+    
+    static final String JOB_EXPORT = "export"; //$NON-NLS-1$
+    static final String JOB_IMPORT = "import"; //$NON-NLS-1$
+    static final String JOB_VALIDATE = "validate"; //$NON-NLS-1$
+    static final String JOB_ROUNDTRIP = "roundtrip"; //$NON-NLS-1$
+    static final String JOB_PING = "ping"; //$NON-NLS-1$
+    static final String JOB_QUIT = "quit"; //$NON-NLS-1$
+    
+    static final String RESULT_OK = "OK"; //$NON-NLS-1$
+    static final String RESULT_ERROR = "ERROR"; //$NON-NLS-1$
+    
+    // One exporter and importer are used by all jobs
+    private XMLModelExporter fExporter;
+    private XMLModelImporter fImporter;
+    
+    public DaemonXMLProvider() {
+    }
+    
+    @Override
+    public void run(CommandLine commandLine) throws Exception {
+        if(!hasCorrectOptions(commandLine)) {
+            return;
+        }
+        
+        // Do the one-off work now rather than in the first job
+        fExporter = new XMLModelExporter();
+        fImporter = new XMLModelImporter();
+        fImporter.setValidating(true);
+        XMLValidator.loadSchema();
+        
+        logMessage(Messages.DaemonXMLProvider_1);
+        
+        runJobs(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true));
+        
+        logMessage(Messages.DaemonXMLProvider_2);
+    }
+    
+    /**
+     * Run each job read from in and write its result to out, until the end of in or a quit job
+     */
+    private void runJobs(BufferedReader in, PrintWriter out) throws IOException {
+        String line;
+        
+        while((line = in.readLine()) != null) {
+            List<String> args = parseLine(line);
+            if(args.isEmpty()) {
+                continue;
+            }
+            
+            String job = args.get(0);
+            
+            if(JOB_QUIT.equals(job)) {
+                out.println(RESULT_OK + " " + job + " 0"); //$NON-NLS-1$ //$NON-NLS-2$
+                break;
+            }
+            
+            long start = System.currentTimeMillis();
+            
+            try {
+                runJob(job, args);
+                out.println(RESULT_OK + " " + job + " " + (System.currentTimeMillis() - start)); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            catch(Exception ex) {
+                // Keep the result on one line
+                String message = String.valueOf(ex).replaceAll("\\s+", " "); //$NON-NLS-1$ //$NON-NLS-2$
+                out.println(RESULT_ERROR + " " + job + " " + message); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+    }
+    
+    private void runJob(String job, List<String> args) throws Exception {
+        switch(job) {
+            case JOB_EXPORT:
+                checkArgs(args, 2, 2);
+                BatchXMLProvider.exportFile(fExporter, new File(args.get(1)), new File(args.get(2)));
+                break;
+            
+            case JOB_IMPORT:
+                checkArgs(args, 2, 2);
+                BatchXMLProvider.importFile(fImporter, new File(args.get(1)), new File(args.get(2)));
+                break;
+            
+            case JOB_VALIDATE:
+                checkArgs(args, 1, 1);
+                new XMLValidator().validateXML(new File(args.get(1)));
+                break;
+            
+            case JOB_ROUNDTRIP:
+                checkArgs(args, 1, 2);
+                roundTrip(new File(args.get(1)), args.size() > 2 ? new File(args.get(2)) : null);
+                break;
+            
+            case JOB_PING:
+                checkArgs(args, 0, 0);
+                break;
+            
+            default:
+                throw new IOException(NLS.bind(Messages.DaemonXMLProvider_3, job));
+        }
+    }
+    
+    /**
+     * Export a model file to a temporary XML file, validate it and import it, saving it to outputFile if set.
+     * The models loaded and imported are not kept.
+     */
+    private void roundTrip(File inputFile, File outputFile) throws Exception {
+        File tmpFile = File.createTempFile("roundtrip", IXMLExchangeGlobals.FILE_EXTENSION); //$NON-NLS-1$
+        
+        try {
+            BatchXMLProvider.exportFile(fExporter, inputFile, tmpFile);
+            
+            if(outputFile != null) {
+                BatchXMLProvider.importFile(fImporter, tmpFile, outputFile);
+            }
+            else {
+                fImporter.createArchiMateModel(tmpFile);
+            }
+        }
+        finally {
+            tmpFile.delete();
+        }
+    }
+    
+    private void checkArgs(List<String> args, int min, int max) throws IOException {
+        int count = args.size() - 1;
+        if(count < min || count > max) {
+            throw new IOException(NLS.bind(Messages.DaemonXMLProvider_4, args.get(0), count));
+        }
+    }
+    
+    /**
+     * @return The words in line, where a word in double quotes can have spaces
+     */
+    static List<String> parseLine(String line) {
+        List<String> args = new ArrayList<>();
+        StringBuilder sb = null;
+        boolean inQuotes = false;
+        
+        for(char c : line.toCharArray()) {
+            if(c == '"') {
+                inQuotes = !inQuotes;
+                if(sb == null) {
+                    sb = new StringBuilder();
+                }
+            }
+            else if(Character.isWhitespace(c) && !inQuotes) {
+                if(sb != null) {
+                    args.add(sb.toString());
+                    sb = null;
+                }
+            }
+            else {
+                if(sb == null) {
+                    sb = new StringBuilder();
+                }
+                sb.append(c);
+            }
+        }
+        
+        if(sb != null) {
+            args.add(sb.toString());
+        }
+        
+        return args;
+    }
+    
+    @Override
+    protected void logMessage(String message) {
+        // Keep standard output for the results
+        System.err.println(getLogPrefix() + " " + message); //$NON-NLS-1$
+    }
+    
+    @Override
+    protected String getLogPrefix() {
+        return PREFIX;
+    }
+    
+    @Override
+    public int getPriority() {
+        // Run after any other options
+        return PRIORITY_REPORT_OR_EXPORT + 1;
+    }
+    
+    @Override
+    public Options getOptions() {
+        Options options = new Options();
+        
+        Option option = Option.builder()
+                .longOpt(OPTION_DAEMON)
+                .desc(Messages.DaemonXMLProvider_5)
+                .build();
+        options.addOption(option);
+        
+        return options;
+    }
+    
+    private boolean hasCorrectOptions(CommandLine commandLine) {
+        return commandLine.hasOption(OPTION_DAEMON);
+    }
+}
@@ -7,11 +7,15 @@ package com.archimatetool.xmlexchange.commandline;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.eclipse.osgi.util.NLS;
+import org.opengroup.archimate.xmlexchange.Compression;
+import org.opengroup.archimate.xmlexchange.XMLExchangeStats;
 import org.opengroup.archimate.xmlexchange.XMLModelExporter;
 import org.opengroup.archimate.xmlexchange.XMLValidator;
 
@@ -29,6 +33,12 @@ import com.archimatetool.model.IArchimateModel;
    --loadModel "/pathToModel/model.archimate"
    --xmlexchange.export "/path/model.xml"
  * 
+ * Use --xmlexchange.export - to write the file to standard output, in which case messages are written to standard error
+ * 
+ * A path ending in .gz or .zip is compressed, or add --xmlexchange.exportCompression gzip|zip|none to choose the compression
+ * 
+ * Add --xmlexchange.exportStats to print the export timings and counters, or --xmlexchange.exportStats "path/stats.json" to write them as JSON
+ * 
  * @author Phillip Beauvoir
  */
 public class ExportXMLProvider extends AbstractCommandLineProvider {
@@ -38,6 +48,15 @@ public class ExportXMLProvider extends AbstractCommandLineProvider {
     static final String OPTION_EXPORT_XML = "xmlexchange.export"; //$NON-NLS-1$
     static final String OPTION_EXPORT_XML_FOLDERS = "xmlexchange.exportFolders"; //$NON-NLS-1$
     static final String OPTION_EXPORT_XML_LANGUAGE = "xmlexchange.exportLang"; //$NON-NLS-1$
+    static final String OPTION_EXPORT_STATS = "xmlexchange.exportStats"; //$NON-NLS-1$
+    static final String OPTION_EXPORT_COMPRESSION = "xmlexchange.exportCompression"; //$NON-NLS-1$
+    
+    static final String STANDARD_OUTPUT = "-"; //$NON-NLS-1$
+    
+    /**
+     * Whether the file is written to standard output, so messages are written to standard error
+     */
+    private boolean fIsStandardOutput;
 
     
     public ExportXMLProvider() {
@@ -61,6 +80,7 @@ public class ExportXMLProvider extends AbstractCommandLineProvider {
             logError(Messages.ExportXMLProvider_2);
             return;
         }
+        fIsStandardOutput = STANDARD_OUTPUT.equals(value);
         File outputFile = new File(value);
         
         XMLModelExporter exporter = new XMLModelExporter();
@@ -71,12 +91,36 @@ public class ExportXMLProvider extends AbstractCommandLineProvider {
         // Language
         exporter.setLanguageCode(commandLine.getOptionValue(OPTION_EXPORT_XML_LANGUAGE));
         
-        logMessage(NLS.bind(Messages.ExportXMLProvider_3, model.getName(), outputFile.getPath()));
-
-        exporter.exportModel(model, outputFile);
+        // Compression
+        Compression compression = getCompression(commandLine.getOptionValue(OPTION_EXPORT_COMPRESSION), outputFile);
+        if(compression == null) {
+            logError(NLS.bind(Messages.ExportXMLProvider_18, commandLine.getOptionValue(OPTION_EXPORT_COMPRESSION)));
+            return;
+        }
+        exporter.setCompression(compression);
+        
+        if(fIsStandardOutput) {
+            logMessage(NLS.bind(Messages.ExportXMLProvider_3, model.getName(), Messages.ExportXMLProvider_19));
+            exporter.exportModel(model, System.out);
+        }
+        else {
+            logMessage(NLS.bind(Messages.ExportXMLProvider_3, model.getName(), outputFile.getPath()));
+            exporter.exportModel(model, outputFile);
+        }
         
         logMessage(Messages.ExportXMLProvider_4);
         
+        // Stats
+        if(commandLine.hasOption(OPTION_EXPORT_STATS)) {
+            writeStats(exporter.getStats(), commandLine.getOptionValue(OPTION_EXPORT_STATS));
+        }
+        
+        // Standard output can't be read back
+        if(fIsStandardOutput) {
+            logMessage(Messages.ExportXMLProvider_20);
+            return;
+        }
+        
         // Validate file
         logMessage(Messages.ExportXMLProvider_5);
         
@@ -86,6 +130,51 @@ public class ExportXMLProvider extends AbstractCommandLineProvider {
         logMessage(Messages.ExportXMLProvider_6);
     }
     
+    /**
+     * @return The compression named by value, or from the file name if value is not set, or null if value is not known
+     */
+    private Compression getCompression(String value, File outputFile) {
+        if(!StringUtils.isSet(value)) {
+            return Compression.fromFileName(outputFile.getName());
+        }
+        
+        for(Compression compression : Compression.values()) {
+            if(compression.name().equalsIgnoreCase(value)) {
+                return compression;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Print the stats, or write them as JSON to path if set
+     */
+    private void writeStats(XMLExchangeStats stats, String path) throws IOException {
+        if(StringUtils.isSet(path)) {
+            File file = new File(path);
+            Files.write(file.toPath(), stats.toJSON().getBytes(StandardCharsets.UTF_8));
+            logMessage(NLS.bind(Messages.ExportXMLProvider_15, file.getPath()));
+        }
+        else {
+            logMessage(Messages.ExportXMLProvider_14);
+            for(String line : stats.toString().split("\n")) { //$NON-NLS-1$
+                logMessage(line);
+            }
+        }
+    }
+    
+    @Override
+    protected void logMessage(String message) {
+        // Keep standard output for the XML
+        if(fIsStandardOutput) {
+            System.err.println(getLogPrefix() + " " + message); //$NON-NLS-1$
+        }
+        else {
+            super.logMessage(message);
+        }
+    }
+    
     @Override
     protected String getLogPrefix() {
         return PREFIX;
@@ -116,6 +205,23 @@ public class ExportXMLProvider extends AbstractCommandLineProvider {
                 .desc(Messages.ExportXMLProvider_11)
                 .build();
         options.addOption(option);
+        
+        option = Option.builder()
+                .longOpt(OPTION_EXPORT_STATS)
+                .hasArg()
+                .optionalArg(true)
+                .argName(Messages.ExportXMLProvider_12)
+                .desc(Messages.ExportXMLProvider_13)
+                .build();
+        options.addOption(option);
+        
+        option = Option.builder()
+                .longOpt(OPTION_EXPORT_COMPRESSION)
+                .hasArg()
+                .argName(Messages.ExportXMLProvider_16)
+                .desc(Messages.ExportXMLProvider_17)
+                .build();
+        options.addOption(option);
 
         return options;
     }
@@ -7,14 +7,16 @@ package com.archimatetool.xmlexchange.commandline;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.eclipse.gef.commands.CommandStack;
 import org.eclipse.osgi.util.NLS;
+import org.opengroup.archimate.xmlexchange.XMLExchangeStats;
 import org.opengroup.archimate.xmlexchange.XMLModelImporter;
-import org.opengroup.archimate.xmlexchange.XMLValidator;
 
 import com.archimatetool.commandline.AbstractCommandLineProvider;
 import com.archimatetool.commandline.CommandLineState;
@@ -30,6 +32,12 @@ import com.archimatetool.model.IArchimateModel;
  * Archi -consoleLog -nosplash -application com.archimatetool.commandline.app
    --xmlexchange.import "path/model.xml"
  * 
+ * Use --xmlexchange.import - to read the file from standard input
+ * 
+ * The file can also be a gzip or zip file, which is detected and decompressed as it is read
+ * 
+ * Add --xmlexchange.importStats to print the import timings and counters, or --xmlexchange.importStats "path/stats.json" to write them as JSON
+ * 
  * @author Phillip Beauvoir
  */
 public class ImportXMLProvider extends AbstractCommandLineProvider {
@@ -37,6 +45,9 @@ public class ImportXMLProvider extends AbstractCommandLineProvider {
     static final String PREFIX = Messages.ImportXMLProvider_0;
     
     static final String OPTION_IMPORT_XML = "xmlexchange.import"; //$NON-NLS-1$
+    static final String OPTION_IMPORT_STATS = "xmlexchange.importStats"; //$NON-NLS-1$
+    
+    static final String STANDARD_INPUT = "-"; //$NON-NLS-1$
     
     public ImportXMLProvider() {
     }
@@ -54,29 +65,32 @@ public class ImportXMLProvider extends AbstractCommandLineProvider {
             logError(Messages.ImportXMLProvider_1);
             return;
         }
+        boolean isStandardInput = STANDARD_INPUT.equals(value);
         File importFile = new File(value);
-        if(!importFile.exists()) {
+        if(!isStandardInput && !importFile.exists()) {
             logError(NLS.bind(Messages.ImportXMLProvider_2, value));
             return;
         }
         
-        // Validate file
+        // Validate and import the file in one read
         logMessage(Messages.ImportXMLProvider_3);
-        
-        XMLValidator validator = new XMLValidator();
-        validator.validateXML(importFile);
-
-        logMessage(Messages.ImportXMLProvider_4);
-        
-        logMessage(NLS.bind(Messages.ImportXMLProvider_5, importFile.getPath()));
+        logMessage(NLS.bind(Messages.ImportXMLProvider_5, isStandardInput ? Messages.ImportXMLProvider_14 : importFile.getPath()));
         
         XMLModelImporter importer = new XMLModelImporter();
-        IArchimateModel model = importer.createArchiMateModel(importFile);
+        importer.setValidating(true);
+        IArchimateModel model = isStandardInput ? importer.createArchiMateModel(System.in) : importer.createArchiMateModel(importFile);
 
         if(model == null) {
             throw new IOException(Messages.ImportXMLProvider_6);
         }
         
+        logMessage(Messages.ImportXMLProvider_4);
+        
+        // Stats
+        if(commandLine.hasOption(OPTION_IMPORT_STATS)) {
+            writeStats(importer.getStats(), commandLine.getOptionValue(OPTION_IMPORT_STATS));
+        }
+        
         // Add an Archive Manager
         IArchiveManager archiveManager = IArchiveManager.FACTORY.createArchiveManager(model);
         model.setAdapter(IArchiveManager.class, archiveManager);
@@ -90,6 +104,23 @@ public class ImportXMLProvider extends AbstractCommandLineProvider {
         logMessage(Messages.ImportXMLProvider_7);
     }
     
+    /**
+     * Print the stats, or write them as JSON to path if set
+     */
+    private void writeStats(XMLExchangeStats stats, String path) throws IOException {
+        if(StringUtils.isSet(path)) {
+            File file = new File(path);
+            Files.write(file.toPath(), stats.toJSON().getBytes(StandardCharsets.UTF_8));
+            logMessage(NLS.bind(Messages.ImportXMLProvider_13, file.getPath()));
+        }
+        else {
+            logMessage(Messages.ImportXMLProvider_12);
+            for(String line : stats.toString().split("\n")) { //$NON-NLS-1$
+                logMessage(line);
+            }
+        }
+    }
+    
     @Override
     protected String getLogPrefix() {
         return PREFIX;
@@ -111,6 +142,13 @@ public class ImportXMLProvider extends AbstractCommandLineProvider {
                 .build();
         options.addOption(option);
         
+        option = Option.builder()
+                .longOpt(OPTION_IMPORT_STATS)
+                .hasArg().optionalArg(true).argName(Messages.ImportXMLProvider_10)
+                .desc(Messages.ImportXMLProvider_11)
+                .build();
+        options.addOption(option);
+        
         return options;
     }
     
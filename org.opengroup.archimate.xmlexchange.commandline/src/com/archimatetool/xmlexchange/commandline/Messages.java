@@ -6,6 +6,56 @@ public class Messages extends NLS {
 
     private static final String BUNDLE_NAME = "com.archimatetool.xmlexchange.commandline.messages"; //$NON-NLS-1$
 
+    public static String BatchXMLProvider_0;
+
+    public static String BatchXMLProvider_1;
+
+    public static String BatchXMLProvider_10;
+
+    public static String BatchXMLProvider_11;
+
+    public static String BatchXMLProvider_12;
+
+    public static String BatchXMLProvider_13;
+
+    public static String BatchXMLProvider_14;
+
+    public static String BatchXMLProvider_15;
+
+    public static String BatchXMLProvider_16;
+
+    public static String BatchXMLProvider_17;
+
+    public static String BatchXMLProvider_18;
+
+    public static String BatchXMLProvider_2;
+
+    public static String BatchXMLProvider_3;
+
+    public static String BatchXMLProvider_4;
+
+    public static String BatchXMLProvider_5;
+
+    public static String BatchXMLProvider_6;
+
+    public static String BatchXMLProvider_7;
+
+    public static String BatchXMLProvider_8;
+
+    public static String BatchXMLProvider_9;
+
+    public static String DaemonXMLProvider_0;
+
+    public static String DaemonXMLProvider_1;
+
+    public static String DaemonXMLProvider_2;
+
+    public static String DaemonXMLProvider_3;
+
+    public static String DaemonXMLProvider_4;
+
+    public static String DaemonXMLProvider_5;
+
     public static String ExportXMLProvider_0;
 
     public static String ExportXMLProvider_1;
@@ -14,8 +64,26 @@ public class Messages extends NLS {
 
     public static String ExportXMLProvider_11;
 
+    public static String ExportXMLProvider_12;
+
+    public static String ExportXMLProvider_13;
+
+    public static String ExportXMLProvider_14;
+
+    public static String ExportXMLProvider_15;
+
+    public static String ExportXMLProvider_16;
+
+    public static String ExportXMLProvider_17;
+
+    public static String ExportXMLProvider_18;
+
+    public static String ExportXMLProvider_19;
+
     public static String ExportXMLProvider_2;
 
+    public static String ExportXMLProvider_20;
+
     public static String ExportXMLProvider_3;
 
     public static String ExportXMLProvider_4;
@@ -34,6 +102,16 @@ public class Messages extends NLS {
 
     public static String ImportXMLProvider_1;
 
+    public static String ImportXMLProvider_10;
+
+    public static String ImportXMLProvider_11;
+
+    public static String ImportXMLProvider_12;
+
+    public static String ImportXMLProvider_13;
+
+    public static String ImportXMLProvider_14;
+
     public static String ImportXMLProvider_2;
 
     public static String ImportXMLProvider_3;
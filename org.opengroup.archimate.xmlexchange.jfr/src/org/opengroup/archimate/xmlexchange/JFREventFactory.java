@@ -0,0 +1,186 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import org.opengroup.archimate.xmlexchange.XMLExchangeEvents.IEvent;
+import org.opengroup.archimate.xmlexchange.XMLExchangeEvents.IEventFactory;
+import org.opengroup.archimate.xmlexchange.XMLExchangeEvents.Type;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Java Flight Recorder events for XMLExchangeEvents
+ *
+ * This is created by XMLExchangeEvents when this fragment is resolved.
+ * The events are enabled by default with no threshold, so they are in any recording that has this fragment.
+ */
+@SuppressWarnings("nls")
+public class JFREventFactory implements IEventFactory {
+    
+    @Override
+    public IEvent createEvent(Type type) {
+        switch(type) {
+            case PARSE:
+                return new ParseEvent();
+            
+            case SECTION:
+                return new SectionEvent();
+            
+            case VIEW:
+                return new ViewEvent();
+            
+            case VALIDATE:
+                return new ValidateEvent();
+            
+            default:
+                return new WriteEvent();
+        }
+    }
+    
+    @Name("org.opengroup.archimate.xmlexchange.Parse")
+    @Label("Parse")
+    @Category({ "Archi", "XML Exchange" })
+    @Description("Reading an exchange file")
+    public static class ParseEvent extends Event implements IEvent {
+        @Label("File")
+        String file;
+        
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        
+        @Override
+        public void setFile(String file) {
+            this.file = file;
+        }
+        
+        @Override
+        public void setBytes(long bytes) {
+            this.bytes = bytes;
+        }
+    }
+    
+    @Name("org.opengroup.archimate.xmlexchange.Section")
+    @Label("Section")
+    @Category({ "Archi", "XML Exchange" })
+    @Description("Importing or exporting a top-level section of an exchange file")
+    public static class SectionEvent extends Event implements IEvent {
+        @Label("Operation")
+        String operation;
+        
+        @Label("Section")
+        String section;
+        
+        @Label("Count")
+        @Description("The number of objects in the section")
+        long count;
+        
+        @Override
+        public void setOperation(String operation) {
+            this.operation = operation;
+        }
+        
+        @Override
+        public void setSection(String section) {
+            this.section = section;
+        }
+        
+        @Override
+        public void setCount(long count) {
+            this.count = count;
+        }
+    }
+    
+    @Name("org.opengroup.archimate.xmlexchange.View")
+    @Label("View")
+    @Category({ "Archi", "XML Exchange" })
+    @Description("Importing or exporting a view")
+    public static class ViewEvent extends Event implements IEvent {
+        @Label("Operation")
+        String operation;
+        
+        @Label("View ID")
+        String viewID;
+        
+        @Label("Nodes")
+        int nodeCount;
+        
+        @Label("Connections")
+        int connectionCount;
+        
+        @Override
+        public void setOperation(String operation) {
+            this.operation = operation;
+        }
+        
+        @Override
+        public void setViewID(String viewID) {
+            this.viewID = viewID;
+        }
+        
+        @Override
+        public void setNodeCount(int nodeCount) {
+            this.nodeCount = nodeCount;
+        }
+        
+        @Override
+        public void setConnectionCount(int connectionCount) {
+            this.connectionCount = connectionCount;
+        }
+    }
+    
+    @Name("org.opengroup.archimate.xmlexchange.Validate")
+    @Label("Validate")
+    @Category({ "Archi", "XML Exchange" })
+    @Description("Validating an exchange file against the XSD Schema")
+    public static class ValidateEvent extends Event implements IEvent {
+        @Label("File")
+        String file;
+        
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        
+        @Override
+        public void setFile(String file) {
+            this.file = file;
+        }
+        
+        @Override
+        public void setBytes(long bytes) {
+            this.bytes = bytes;
+        }
+    }
+    
+    @Name("org.opengroup.archimate.xmlexchange.Write")
+    @Label("Write")
+    @Category({ "Archi", "XML Exchange" })
+    @Description("Writing an exchange file")
+    public static class WriteEvent extends Event implements IEvent {
+        @Label("File")
+        String file;
+        
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        
+        @Override
+        public void setFile(String file) {
+            this.file = file;
+        }
+        
+        @Override
+        public void setBytes(long bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
@@ -14,9 +14,14 @@ public class AllTests {
     public static junit.framework.Test suite() {
 		TestSuite suite = new TestSuite("com.archimatetool.xmlexchange");
 
+        suite.addTest(CompressionTests.suite());
+        suite.addTest(DiagramGeometryTests.suite());
+        suite.addTest(XMLExchangeEventsTests.suite());
+        suite.addTest(XMLExchangeStatsTests.suite());
         suite.addTest(XMLExchangeUtilsTests.suite());
 		suite.addTest(XMLModelExporterTests.suite());
         suite.addTest(XMLModelImporterTests.suite());
+        suite.addTest(XMLTypeMapperTests.suite());
         suite.addTest(XMLValidatorTests.suite());
 		
         return suite;
@@ -0,0 +1,124 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+
+/**
+ * Compression Tests
+ */
+@SuppressWarnings("nls")
+public class CompressionTests {
+    
+    private static final byte[] XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<model />\n".getBytes(StandardCharsets.UTF_8);
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(CompressionTests.class);
+    }
+    
+    @Test
+    public void testFromFileName() {
+        assertEquals(Compression.NONE, Compression.fromFileName("model.xml"));
+        assertEquals(Compression.GZIP, Compression.fromFileName("model.xml.gz"));
+        assertEquals(Compression.GZIP, Compression.fromFileName("MODEL.GZ"));
+        assertEquals(Compression.ZIP, Compression.fromFileName("model.zip"));
+    }
+    
+    @Test
+    public void testGetEntryName() {
+        assertEquals("model.xml", Compression.getEntryName(new File("model.zip")));
+        assertEquals("model.xml", Compression.getEntryName(new File("model.xml.zip")));
+        assertEquals("model.xml", Compression.getEntryName(new File("model.xml")));
+    }
+    
+    @Test
+    public void testCompressAndDecompress() throws IOException {
+        for(Compression compression : Compression.values()) {
+            byte[] bytes = compress(compression);
+            assertEquals(compression, Compression.detect(new ByteArrayInputStream(bytes)));
+            
+            try(InputStream in = Compression.decompress(new ByteArrayInputStream(bytes))) {
+                assertArrayEquals(XML, readAllBytes(in));
+            }
+        }
+    }
+    
+    @Test
+    public void testDetectResetsStream() throws IOException {
+        InputStream in = Compression.decompress(new ByteArrayInputStream(XML));
+        assertEquals(Compression.NONE, Compression.detect(in));
+        assertArrayEquals(XML, readAllBytes(in));
+    }
+    
+    @Test
+    public void testNewOutputStreamAndNewInputStream() throws IOException {
+        for(Compression compression : Compression.values()) {
+            File file = File.createTempFile("model", ".xml");
+            file.deleteOnExit();
+            
+            try(OutputStream out = compression.newOutputStream(file)) {
+                out.write(XML);
+            }
+            
+            assertEquals(compression, Compression.detect(file));
+            
+            try(InputStream in = Compression.newInputStream(file)) {
+                assertArrayEquals(XML, readAllBytes(in));
+            }
+        }
+    }
+    
+    @Test(expected = IOException.class)
+    public void testEmptyZipThrowsIOException() throws IOException {
+        File file = File.createTempFile("empty", ".zip");
+        file.deleteOnExit();
+        
+        // A zip file with only a directory entry
+        try(ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(file.toPath()))) {
+            out.putNextEntry(new ZipEntry("folder/"));
+        }
+        
+        Compression.newInputStream(file).close();
+    }
+    
+    private byte[] compress(Compression compression) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        
+        try(OutputStream out = compression.compress(bytes, "model.xml")) {
+            out.write(XML);
+        }
+        
+        return bytes.toByteArray();
+    }
+    
+    private byte[] readAllBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        
+        for(int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+            bytes.write(buffer, 0, read);
+        }
+        
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.eclipse.draw2d.geometry.Point;
+import org.junit.Test;
+
+import com.archimatetool.model.IArchimateDiagramModel;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IDiagramModelBendpoint;
+import com.archimatetool.model.IDiagramModelConnection;
+import com.archimatetool.model.IDiagramModelGroup;
+import com.archimatetool.model.IDiagramModelNote;
+
+
+/**
+ * Diagram Geometry Tests
+ */
+public class DiagramGeometryTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(DiagramGeometryTests.class);
+    }
+    
+    @Test
+    public void testAbsoluteBounds() {
+        IArchimateDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        
+        IDiagramModelGroup dmo1 = IArchimateFactory.eINSTANCE.createDiagramModelGroup();
+        dmo1.setBounds(10, 15, 500, 400);
+        dm.getChildren().add(dmo1);
+        
+        IDiagramModelGroup dmo2 = IArchimateFactory.eINSTANCE.createDiagramModelGroup();
+        dmo2.setBounds(10, 15, 300, 200);
+        dmo1.getChildren().add(dmo2);
+        
+        DiagramGeometry geometry = new DiagramGeometry(dm);
+        
+        int index = geometry.getNodeIndex(dmo1);
+        assertEquals(10, geometry.getX(index));
+        assertEquals(15, geometry.getY(index));
+        assertEquals(500, geometry.getWidth(index));
+        assertEquals(400, geometry.getHeight(index));
+        
+        index = geometry.getNodeIndex(dmo2);
+        assertEquals(20, geometry.getX(index));
+        assertEquals(30, geometry.getY(index));
+        assertEquals(300, geometry.getWidth(index));
+        assertEquals(200, geometry.getHeight(index));
+        
+        assertEquals(-1, geometry.getNodeIndex(IArchimateFactory.eINSTANCE.createDiagramModelNote()));
+    }
+    
+    @Test
+    public void testBendpointsAreSameAsXMLExchangeUtils() {
+        IArchimateDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        
+        IDiagramModelGroup group = IArchimateFactory.eINSTANCE.createDiagramModelGroup();
+        group.setBounds(100, 100, 400, 400);
+        dm.getChildren().add(group);
+        
+        IDiagramModelNote note1 = IArchimateFactory.eINSTANCE.createDiagramModelNote();
+        note1.setBounds(20, 30, 100, 50);
+        group.getChildren().add(note1);
+        
+        IDiagramModelNote note2 = IArchimateFactory.eINSTANCE.createDiagramModelNote();
+        note2.setBounds(600, 40, 120, 60);
+        dm.getChildren().add(note2);
+        
+        IDiagramModelConnection connection = IArchimateFactory.eINSTANCE.createDiagramModelConnection();
+        connection.connect(note1, note2);
+        
+        for(int i = 0; i < 3; i++) {
+            IDiagramModelBendpoint bendpoint = IArchimateFactory.eINSTANCE.createDiagramModelBendpoint();
+            bendpoint.setStartX(i * 50);
+            bendpoint.setStartY(-i * 40);
+            bendpoint.setEndX(-i * 30);
+            bendpoint.setEndY(i * 20);
+            connection.getBendpoints().add(bendpoint);
+        }
+        
+        DiagramGeometry geometry = new DiagramGeometry(dm);
+        int index = geometry.getConnectionIndex(connection);
+        
+        List<Point> points = XMLExchangeUtils.getActualBendpointPositions(connection);
+        assertEquals(points.size(), geometry.getBendpointCount(index));
+        
+        for(int i = 0; i < points.size(); i++) {
+            assertEquals(points.get(i).x, geometry.getBendpointX(index, i));
+            assertEquals(points.get(i).y, geometry.getBendpointY(index, i));
+        }
+    }
+    
+    @Test
+    public void testConnectionToConnectionHasNoBendpoints() {
+        IArchimateDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        
+        IDiagramModelNote note1 = IArchimateFactory.eINSTANCE.createDiagramModelNote();
+        dm.getChildren().add(note1);
+        
+        IDiagramModelNote note2 = IArchimateFactory.eINSTANCE.createDiagramModelNote();
+        dm.getChildren().add(note2);
+        
+        IDiagramModelConnection connection1 = IArchimateFactory.eINSTANCE.createDiagramModelConnection();
+        connection1.connect(note1, note2);
+        
+        IDiagramModelConnection connection2 = IArchimateFactory.eINSTANCE.createDiagramModelConnection();
+        connection2.connect(note1, connection1);
+        connection2.getBendpoints().add(IArchimateFactory.eINSTANCE.createDiagramModelBendpoint());
+        
+        DiagramGeometry geometry = new DiagramGeometry(dm);
+        assertEquals(0, geometry.getBendpointCount(geometry.getConnectionIndex(connection2)));
+    }
+    
+    @Test
+    public void testNegativeOffsetIncludesBendpoints() {
+        IArchimateDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        
+        IDiagramModelNote note1 = IArchimateFactory.eINSTANCE.createDiagramModelNote();
+        note1.setBounds(-10, 0, 100, 100);
+        dm.getChildren().add(note1);
+        
+        IDiagramModelNote note2 = IArchimateFactory.eINSTANCE.createDiagramModelNote();
+        note2.setBounds(200, 0, 100, 100);
+        dm.getChildren().add(note2);
+        
+        IDiagramModelConnection connection = IArchimateFactory.eINSTANCE.createDiagramModelConnection();
+        connection.connect(note1, note2);
+        
+        IDiagramModelBendpoint bendpoint = IArchimateFactory.eINSTANCE.createDiagramModelBendpoint();
+        bendpoint.setStartY(-500);
+        bendpoint.setEndY(-500);
+        connection.getBendpoints().add(bendpoint);
+        
+        DiagramGeometry geometry = new DiagramGeometry(dm);
+        assertEquals(-10, geometry.getOffsetX());
+        assertEquals(-450, geometry.getOffsetY());
+    }
+    
+}
@@ -25,6 +25,10 @@ public class TestSupport {
     
     public static File xmlFile1 = new File(testFolder, "sample1.xml");
     public static File xmlFile2 = new File(testFolder, "archisurance.xml");
+    public static File xmlFile3 = new File(testFolder, "nested1.xml");
+    
+    // Metadata with no local XSD and a later schema error, which is accepted as validating stops at the metadata
+    public static File xmlFile4 = new File(testFolder, "unknown_metadata.xml");
     
     public static File archiFile1 = new File(testFolder, "archisurance.archimate");
     
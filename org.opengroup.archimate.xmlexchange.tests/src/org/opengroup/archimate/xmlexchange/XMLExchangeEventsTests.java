@@ -0,0 +1,56 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+import org.opengroup.archimate.xmlexchange.XMLExchangeEvents.IEvent;
+import org.opengroup.archimate.xmlexchange.XMLExchangeEvents.Section;
+import org.opengroup.archimate.xmlexchange.XMLExchangeEvents.Type;
+
+
+/**
+ * XML Exchange Events Tests
+ */
+@SuppressWarnings("nls")
+public class XMLExchangeEventsTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(XMLExchangeEventsTests.class);
+    }
+    
+    @Test
+    public void testSection_AddsPhaseTime() throws Exception {
+        XMLExchangeStats stats = new XMLExchangeStats();
+        
+        Section section = XMLExchangeEvents.beginSection(stats, XMLExchangeEvents.OPERATION_IMPORT, XMLExchangeStats.PHASE_ELEMENTS);
+        stats.addObject("BusinessActor");
+        Thread.sleep(2);
+        section.end();
+        
+        assertTrue(stats.getPhaseTime(XMLExchangeStats.PHASE_ELEMENTS) >= 2000000);
+        assertEquals(1, stats.getObjectCount());
+    }
+    
+    @Test
+    public void testEventsCommitWithOrWithoutRecorder() {
+        // Whether or not the jfr fragment is present these must not throw
+        for(Type type : Type.values()) {
+            IEvent event = XMLExchangeEvents.begin(type);
+            XMLExchangeEvents.commitFile(event, XMLExchangeEvents.OPERATION_IMPORT, new File("none.xml"));
+        }
+        
+        IEvent event = XMLExchangeEvents.begin(Type.SECTION);
+        XMLExchangeEvents.commitSection(event, XMLExchangeEvents.OPERATION_EXPORT, XMLExchangeStats.PHASE_VIEWS, 0);
+    }
+    
+}
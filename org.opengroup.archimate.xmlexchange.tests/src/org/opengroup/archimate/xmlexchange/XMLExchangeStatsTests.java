@@ -0,0 +1,98 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+
+/**
+ * XML Exchange Stats Tests
+ */
+@SuppressWarnings("nls")
+public class XMLExchangeStatsTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(XMLExchangeStatsTests.class);
+    }
+    
+    @Test
+    public void testAddPhaseTime_Accumulates() {
+        XMLExchangeStats stats = new XMLExchangeStats();
+        
+        stats.addPhaseTime("b", System.nanoTime() - 1000);
+        stats.addPhaseTime("a", System.nanoTime() - 2000);
+        stats.addPhaseTime("b", System.nanoTime() - 1000);
+        
+        assertTrue(stats.getPhaseTime("b") >= 2000);
+        assertEquals(0, stats.getPhaseTime("c"));
+        
+        // In the order first timed
+        assertEquals(Arrays.asList("b", "a"), new ArrayList<>(stats.getPhaseTimes().keySet()));
+    }
+    
+    @Test
+    public void testAddObject_FromManyThreads() {
+        XMLExchangeStats stats = new XMLExchangeStats();
+        
+        IntStream.range(0, 10000).parallel().forEach(i -> stats.addObject(i % 2 == 0 ? "Even" : "Odd"));
+        
+        assertEquals(5000, stats.getObjectCount("Even"));
+        assertEquals(5000, stats.getObjectCount("Odd"));
+        assertEquals(0, stats.getObjectCount("None"));
+    }
+    
+    @Test
+    public void testSetLookupSize_KeepsPeak() {
+        XMLExchangeStats stats = new XMLExchangeStats();
+        
+        stats.setLookupSize("view", 10);
+        stats.setLookupSize("view", 30);
+        stats.setLookupSize("view", 20);
+        
+        assertEquals(30, stats.getLookupSize("view"));
+        assertEquals(0, stats.getLookupSize("none"));
+    }
+    
+    @Test
+    public void testToJSON() {
+        XMLExchangeStats stats = new XMLExchangeStats();
+        stats.addObject("Business\"Actor");
+        stats.addObject("Business\"Actor");
+        stats.addBytesRead(100);
+        stats.setLookupSize("concepts", 7);
+        
+        String json = stats.toJSON();
+        
+        assertTrue(json.startsWith("{"));
+        assertTrue(json.contains("\"phaseTimesMillis\": {}"));
+        assertTrue(json.contains("\"Business\\\"Actor\": 2"));
+        assertTrue(json.contains("\"bytesRead\": 100,"));
+        assertTrue(json.contains("\"bytesWritten\": 0,"));
+        assertTrue(json.contains("\"concepts\": 7\n"));
+    }
+    
+    @Test
+    public void testToString() {
+        XMLExchangeStats stats = new XMLExchangeStats();
+        stats.addObject("BusinessActor");
+        stats.addBytesWritten(50);
+        
+        List<String> lines = Arrays.asList(stats.toString().split("\n"));
+        assertTrue(lines.contains("Objects BusinessActor: 1"));
+        assertTrue(lines.contains("Bytes written: 50"));
+    }
+    
+}
@@ -5,7 +5,9 @@
  */
 package org.opengroup.archimate.xmlexchange;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import junit.framework.JUnit4TestAdapter;
 
 import org.eclipse.draw2d.geometry.Point;
@@ -14,6 +16,8 @@ import org.junit.Test;
 import com.archimatetool.model.IArchimateDiagramModel;
 import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IBounds;
+import com.archimatetool.model.IDiagramModelBendpoint;
+import com.archimatetool.model.IDiagramModelConnection;
 import com.archimatetool.model.IDiagramModelGroup;
 import com.archimatetool.model.IDiagramModelObject;
 
@@ -89,6 +93,58 @@ public class XMLExchangeUtilsTests {
         dmo3.setBounds(relativebounds);
     }
     
+    @Test
+    public void testGetAbsoluteAndRelativeBounds_IntArray() {
+        IArchimateDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        
+        IDiagramModelGroup dmo1 = IArchimateFactory.eINSTANCE.createDiagramModelGroup();
+        dmo1.setBounds(10, 15, 500, 500);
+        dm.getChildren().add(dmo1);
+        
+        IDiagramModelGroup dmo2 = IArchimateFactory.eINSTANCE.createDiagramModelGroup();
+        dmo2.setBounds(10, 15, 400, 300);
+        dmo1.getChildren().add(dmo2);
+        
+        int[] bounds = new int[4];
+        assertSame(bounds, XMLExchangeUtils.getAbsoluteBounds(dmo2, bounds));
+        assertArrayEquals(new int[] { 20, 30, 400, 300 }, bounds);
+        
+        // Relative bounds into the same array
+        bounds = new int[] { 50, 60, 100, 80 };
+        assertSame(bounds, XMLExchangeUtils.getRelativeBounds(bounds, dmo2, bounds));
+        assertArrayEquals(new int[] { 30, 30, 100, 80 }, bounds);
+    }
+    
+    @Test
+    public void testGetActualBendpointPositions_IntArray() {
+        IArchimateDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        
+        IDiagramModelObject dmo1 = IArchimateFactory.eINSTANCE.createDiagramModelNote();
+        dmo1.setBounds(0, 0, 100, 100);
+        dm.getChildren().add(dmo1);
+        
+        IDiagramModelObject dmo2 = IArchimateFactory.eINSTANCE.createDiagramModelNote();
+        dmo2.setBounds(300, 0, 100, 100);
+        dm.getChildren().add(dmo2);
+        
+        IDiagramModelConnection connection = IArchimateFactory.eINSTANCE.createDiagramModelConnection();
+        connection.connect(dmo1, dmo2);
+        
+        IDiagramModelBendpoint bendpoint = IArchimateFactory.eINSTANCE.createDiagramModelBendpoint();
+        bendpoint.setStartY(100);
+        bendpoint.setEndY(100);
+        connection.getBendpoints().add(bendpoint);
+        
+        int[] points = new int[2];
+        assertEquals(1, XMLExchangeUtils.getActualBendpointPositions(connection, points));
+        assertArrayEquals(new int[] { 200, 150 }, points);
+        
+        // Same as the List version
+        Point pt = XMLExchangeUtils.getActualBendpointPositions(connection).get(0);
+        assertEquals(200, pt.x);
+        assertEquals(150, pt.y);
+    }
+    
     @Test
     public void testGetNegativeOffsetForDiagram() {
         IArchimateDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
@@ -5,17 +5,45 @@
  */
 package org.opengroup.archimate.xmlexchange;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import junit.framework.JUnit4TestAdapter;
 
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.junit.Test;
 
+import com.archimatetool.model.IArchimateDiagramModel;
 import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimateRelationship;
+import com.archimatetool.model.IConnectable;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDiagramModelArchimateConnection;
+import com.archimatetool.model.IDiagramModelArchimateObject;
+import com.archimatetool.model.IDiagramModelConnection;
+import com.archimatetool.model.IProperty;
 import com.archimatetool.model.util.ArchimateResourceFactory;
 import com.archimatetool.tests.TestUtils;
 
@@ -34,13 +62,337 @@ public class XMLModelExporterTests {
 
     @Test
     public void testExportModel() throws IOException {
+        IArchimateModel model = loadModel();
+        XMLModelExporter exporter = createExporter();
+        
+        File outputFile = new File(TestSupport.testFolder, "archisurance.xml");
+        exporter.exportModel(model, outputFile);
+    }
+    
+    @Test
+    public void testExportModelStreaming_SameAsDocument() throws IOException {
+        IArchimateModel model = loadModel();
+        
+        File documentFile = File.createTempFile("archisurance", ".xml");
+        documentFile.deleteOnExit();
+        createExporter().exportModel(model, documentFile);
+        
+        File streamFile = File.createTempFile("archisurance", ".xml");
+        streamFile.deleteOnExit();
+        XMLModelExporter exporter = createExporter();
+        exporter.setStreaming(true);
+        exporter.exportModel(model, streamFile);
+        
+        assertArrayEquals(Files.readAllBytes(documentFile.toPath()), Files.readAllBytes(streamFile.toPath()));
+    }
+    
+    @Test
+    public void testExportModelToStream_SameAsFile() throws IOException {
+        IArchimateModel model = loadModel();
+        
+        File file = File.createTempFile("archisurance", ".xml");
+        file.deleteOnExit();
+        createExporter().exportModel(model, file);
+        byte[] expected = Files.readAllBytes(file.toPath());
+        
+        for(boolean streaming : new boolean[] { false, true }) {
+            XMLModelExporter exporter = createExporter();
+            exporter.setStreaming(streaming);
+            
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            exporter.exportModel(model, out);
+            assertArrayEquals(expected, out.toByteArray());
+            assertEquals(expected.length, exporter.getStats().getBytesWritten());
+            
+            out = new ByteArrayOutputStream();
+            try(WritableByteChannel channel = Channels.newChannel(out)) {
+                exporter.exportModel(model, channel);
+                assertTrue(channel.isOpen());
+            }
+            assertArrayEquals(expected, out.toByteArray());
+        }
+    }
+    
+    @Test
+    public void testExportModelWithProgress_SameAsFile() throws Exception {
+        IArchimateModel model = loadModel();
+        
+        File file = File.createTempFile("archisurance", ".xml");
+        file.deleteOnExit();
+        createExporter().exportModel(model, file);
+        byte[] expected = Files.readAllBytes(file.toPath());
+        
+        for(boolean streaming : new boolean[] { false, true }) {
+            XMLModelExporter exporter = createExporter();
+            exporter.setStreaming(streaming);
+            
+            // Validating the temporary file does not change what replaces the file
+            exporter.setValidating(streaming);
+            
+            TestProgressMonitor monitor = new TestProgressMonitor();
+            File progressFile = File.createTempFile("archisurance", ".xml");
+            progressFile.deleteOnExit();
+            exporter.exportModel(model, progressFile, monitor);
+            
+            assertArrayEquals(expected, Files.readAllBytes(progressFile.toPath()));
+            assertTrue(monitor.totalWork > 0);
+            assertEquals(monitor.totalWork, monitor.worked);
+            assertTrue(monitor.isDone);
+            
+            // No temporary file left behind
+            assertEquals(0, progressFile.getParentFile().listFiles((dir, name) -> name.startsWith("." + progressFile.getName())).length);
+        }
+    }
+    
+    @Test
+    public void testExportModelWithNullProgressMonitor() throws Exception {
+        IArchimateModel model = loadModel();
+        
+        File file = File.createTempFile("archisurance", ".xml");
+        file.deleteOnExit();
+        createExporter().exportModel(model, file);
+        byte[] expected = Files.readAllBytes(file.toPath());
+        
+        XMLModelExporter exporter = createExporter();
+        exporter.setValidating(true);
+        exporter.exportModel(model, file, null);
+        
+        assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+    }
+    
+    @Test
+    public void testCancelledExportDoesNotChangeFile() throws Exception {
+        IArchimateModel model = loadModel();
+        
+        File file = File.createTempFile("archisurance", ".xml");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "original".getBytes());
+        
+        TestProgressMonitor monitor = new TestProgressMonitor();
+        monitor.setCanceled(true);
+        
+        try {
+            createExporter().exportModel(model, file, monitor);
+            fail("Should have been cancelled");
+        }
+        catch(OperationCanceledException ex) {
+        }
+        
+        assertArrayEquals("original".getBytes(), Files.readAllBytes(file.toPath()));
+        assertEquals(0, file.getParentFile().listFiles((dir, name) -> name.startsWith("." + file.getName())).length);
+    }
+    
+    private static class TestProgressMonitor extends NullProgressMonitor {
+        int totalWork;
+        int worked;
+        boolean isDone;
+        
+        @Override
+        public void beginTask(String name, int totalWork) {
+            this.totalWork = totalWork;
+        }
+        
+        @Override
+        public void worked(int work) {
+            worked += work;
+        }
+        
+        @Override
+        public void done() {
+            isDone = true;
+        }
+    }
+    
+    @Test
+    public void testOneExporterOnManyThreads() throws Exception {
+        IArchimateModel model = loadModel();
+        
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        createExporter().exportModel(model, expected);
+        
+        // One exporter shared by all threads, exporting the same model and copies of it
+        XMLModelExporter sharedExporter = createExporter();
+        sharedExporter.setStreaming(true);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        
+        try {
+            List<Future<byte[]>> futures = new ArrayList<>();
+            
+            for(int i = 0; i < 64; i++) {
+                IArchimateModel copy = i % 2 == 0 ? model : loadModel();
+                futures.add(executor.submit(() -> {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    sharedExporter.exportModel(copy, out);
+                    return out.toByteArray();
+                }));
+            }
+            
+            // Rethrows any export exception
+            for(Future<byte[]> future : futures) {
+                assertArrayEquals(expected.toByteArray(), future.get());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        
+        assertEquals(expected.size(), sharedExporter.getStats().getBytesWritten());
+    }
+    
+    @Test
+    public void testExportModelCompressed_SameAsUncompressed() throws Exception {
+        IArchimateModel model = loadModel();
+        
+        File plainFile = File.createTempFile("archisurance", ".xml");
+        plainFile.deleteOnExit();
+        createExporter().exportModel(model, plainFile);
+        byte[] expected = Files.readAllBytes(plainFile.toPath());
+        
+        for(Compression compression : new Compression[] { Compression.GZIP, Compression.ZIP }) {
+            for(boolean streaming : new boolean[] { false, true }) {
+                File file = File.createTempFile("archisurance", compression == Compression.ZIP ? ".zip" : ".xml.gz");
+                file.deleteOnExit();
+                
+                XMLModelExporter exporter = createExporter();
+                exporter.setStreaming(streaming);
+                exporter.setCompression(compression);
+                exporter.exportModel(model, file);
+                
+                assertEquals(compression, Compression.detect(file));
+                
+                try(InputStream in = Compression.newInputStream(file)) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[8192];
+                    for(int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                        out.write(buffer, 0, read);
+                    }
+                    assertArrayEquals(expected, out.toByteArray());
+                }
+                
+                // Can be validated and imported
+                new XMLValidator().validateXML(file);
+                new XMLModelImporter().createArchiMateModel(file);
+            }
+        }
+    }
+    
+    @Test
+    public void testExportModel_Stats() throws IOException {
+        IArchimateModel model = loadModel();
+        
+        for(boolean streaming : new boolean[] { false, true }) {
+            File file = File.createTempFile("archisurance", ".xml");
+            file.deleteOnExit();
+            
+            XMLModelExporter exporter = createExporter();
+            exporter.setStreaming(streaming);
+            exporter.exportModel(model, file);
+            
+            XMLExchangeStats stats = exporter.getStats();
+            assertEquals(file.length(), stats.getBytesWritten());
+            assertEquals(model.getDiagramModels().size(), stats.getObjectCount("ArchimateDiagramModel"));
+            assertEquals(countRelationships(model), countRelationships(stats));
+            assertTrue(stats.getPhaseTime(XMLExchangeStats.PHASE_WRITE) > 0);
+        }
+    }
+    
+    @Test
+    public void testExportModel_NestedConnectionsNotWritten() throws IOException {
+        IArchimateModel model = loadModel();
+        
+        // Connections in the model that are not nested, found the slow way
+        long expected = 0;
+        
+        for(IDiagramModel dm : model.getDiagramModels()) {
+            if(!(dm instanceof IArchimateDiagramModel)) {
+                continue;
+            }
+            
+            for(Iterator<EObject> iter = dm.eAllContents(); iter.hasNext();) {
+                EObject eObject = iter.next();
+                if(eObject instanceof IDiagramModelArchimateConnection) {
+                    IConnectable source = ((IDiagramModelConnection)eObject).getSource();
+                    IConnectable target = ((IDiagramModelConnection)eObject).getTarget();
+                    boolean nested = source instanceof IDiagramModelArchimateObject && target instanceof IDiagramModelArchimateObject
+                            && (((IDiagramModelArchimateObject)source).getChildren().contains(target)
+                                    || ((IDiagramModelArchimateObject)target).getChildren().contains(source));
+                    if(!nested) {
+                        expected++;
+                    }
+                }
+                else if(eObject instanceof IDiagramModelConnection) {
+                    expected++;
+                }
+            }
+        }
+        
+        File file = File.createTempFile("archisurance", ".xml");
+        file.deleteOnExit();
+        
+        XMLModelExporter exporter = createExporter();
+        exporter.exportModel(model, file);
+        
+        XMLExchangeStats stats = exporter.getStats();
+        assertEquals(expected, stats.getObjectCount("DiagramModelArchimateConnection") + stats.getObjectCount("DiagramModelConnection"));
+    }
+    
+    @Test
+    public void testGetAllUniquePropertyKeysForModel_SameAsAllContents() throws IOException {
+        IArchimateModel model = loadModel();
+        
+        // Property definition IDs numbered in the order found in all contents
+        Map<String, String> expected = new TreeMap<>();
+        
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject instanceof IProperty) {
+                String name = ((IProperty)eObject).getKey();
+                if(name != null && !expected.containsKey(name)) {
+                    expected.put(name, "propid-" + (expected.size() + 1));
+                }
+            }
+        }
+        
+        File file = File.createTempFile("archisurance", ".xml");
+        file.deleteOnExit();
+        
+        XMLModelExporter exporter = createExporter();
+        exporter.exportModel(model, file);
+        
+        assertTrue(!expected.isEmpty());
+        assertEquals(expected, exporter.getAllUniquePropertyKeysForModel(model));
+    }
+    
+    private long countRelationships(IArchimateModel model) {
+        long count = 0;
+        
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            if(iter.next() instanceof IArchimateRelationship) {
+                count++;
+            }
+        }
+        
+        return count;
+    }
+    
+    private long countRelationships(XMLExchangeStats stats) {
+        return stats.getObjectCounts().entrySet().stream()
+                .filter(entry -> entry.getKey().endsWith("Relationship"))
+                .mapToLong(entry -> entry.getValue())
+                .sum();
+    }
+    
+    private IArchimateModel loadModel() throws IOException {
         TestUtils.ensureDefaultDisplay(); // Need to do this if running only these tests
         
         Resource resource = ArchimateResourceFactory.createNewResource(TestSupport.archiFile1);
         resource.load(null);
         
-        IArchimateModel model = (IArchimateModel)resource.getContents().get(0);
-        
+        return (IArchimateModel)resource.getContents().get(0);
+    }
+    
+    private XMLModelExporter createExporter() {
         XMLModelExporter exporter = new XMLModelExporter();
         
         // Language code
@@ -59,8 +411,7 @@ public class XMLModelExporterTests {
         // Organization
         exporter.setSaveOrganisation(true);
         
-        File outputFile = new File(TestSupport.testFolder, "archisurance.xml");
-        exporter.exportModel(model, outputFile);
+        return exporter;
     }
 
 }
@@ -6,18 +6,54 @@
 package org.opengroup.archimate.xmlexchange;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.jdom2.input.JDOMParseException;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateDiagramModel;
 import com.archimatetool.model.IArchimateElement;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IArchimateRelationship;
+import com.archimatetool.model.IBounds;
+import com.archimatetool.model.IDiagramModelArchimateConnection;
+import com.archimatetool.model.IDiagramModelArchimateObject;
+import com.archimatetool.model.IDiagramModelBendpoint;
+import com.archimatetool.model.IDiagramModelConnection;
+import com.archimatetool.model.IDiagramModelGroup;
+import com.archimatetool.model.IDiagramModelObject;
+import com.archimatetool.model.IDiagramModelReference;
 import com.archimatetool.model.IFolder;
 import com.archimatetool.tests.TestUtils;
 
@@ -81,4 +117,428 @@ public class XMLModelImporterTests {
         assertEquals(element1, relation.getSource());
         assertEquals(element2, relation.getTarget());
     }
+    
+    @Test
+    public void testStreamingArchimateModelHasCorrectElementsAndRelations() throws Exception {
+        importer.setStreaming(true);
+        IArchimateModel model = importer.createArchiMateModel(TestSupport.xmlFile1);
+        
+        IFolder businessFolder = model.getFolder(FolderType.BUSINESS);
+        IFolder relationsFolder = model.getFolder(FolderType.RELATIONS);
+        
+        assertEquals(2, businessFolder.getElements().size());
+        assertEquals(1, relationsFolder.getElements().size());
+        
+        IArchimateRelationship relation = (IArchimateRelationship)relationsFolder.getElements().get(0);
+        assertEquals(businessFolder.getElements().get(0), relation.getSource());
+        assertEquals(businessFolder.getElements().get(1), relation.getTarget());
+    }
+    
+    @Test
+    public void testStreamingImportIsSameAsDocumentImport() throws Exception {
+        IArchimateModel model1 = importer.createArchiMateModel(TestSupport.xmlFile2);
+        
+        XMLModelImporter streamingImporter = new XMLModelImporter();
+        streamingImporter.setStreaming(true);
+        IArchimateModel model2 = streamingImporter.createArchiMateModel(TestSupport.xmlFile2);
+        
+        assertModelsEqual(model1, model2);
+    }
+    
+    @Test
+    public void testValidatingImportIsSameAsDocumentImport() throws Exception {
+        IArchimateModel model1 = importer.createArchiMateModel(TestSupport.xmlFile2);
+        
+        XMLModelImporter validatingImporter = new XMLModelImporter();
+        validatingImporter.setValidating(true);
+        assertModelsEqual(model1, validatingImporter.createArchiMateModel(TestSupport.xmlFile2));
+        
+        validatingImporter.setStreaming(true);
+        assertModelsEqual(model1, validatingImporter.createArchiMateModel(TestSupport.xmlFile2));
+    }
+    
+    @Test
+    public void testParallelImportIsSameAsSerialImport() throws Exception {
+        IArchimateModel model1 = importer.createArchiMateModel(TestSupport.xmlFile2);
+        
+        XMLModelImporter parallelImporter = new XMLModelImporter();
+        parallelImporter.setParallel(true);
+        assertModelsEqual(model1, parallelImporter.createArchiMateModel(TestSupport.xmlFile2));
+        
+        parallelImporter.setStreaming(true);
+        assertModelsEqual(model1, parallelImporter.createArchiMateModel(TestSupport.xmlFile2));
+    }
+    
+    @Test
+    public void testStreamImportIsSameAsFileImport() throws Exception {
+        IArchimateModel model1 = importer.createArchiMateModel(TestSupport.xmlFile2);
+        byte[] bytes = Files.readAllBytes(TestSupport.xmlFile2.toPath());
+        
+        for(boolean streaming : new boolean[] { false, true }) {
+            XMLModelImporter streamImporter = new XMLModelImporter();
+            streamImporter.setStreaming(streaming);
+            
+            try(InputStream in = new ByteArrayInputStream(bytes)) {
+                assertModelsEqual(model1, streamImporter.createArchiMateModel(in));
+            }
+            
+            assertEquals(bytes.length, streamImporter.getStats().getBytesRead());
+            
+            try(ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(bytes))) {
+                assertModelsEqual(model1, streamImporter.createArchiMateModel(channel));
+                assertTrue(channel.isOpen());
+            }
+        }
+    }
+    
+    @Test
+    public void testProgressImportIsSameAsFileImport() throws Exception {
+        IArchimateModel model1 = importer.createArchiMateModel(TestSupport.xmlFile2);
+        
+        for(boolean streaming : new boolean[] { false, true }) {
+            XMLModelImporter progressImporter = new XMLModelImporter();
+            progressImporter.setStreaming(streaming);
+            
+            TestProgressMonitor monitor = new TestProgressMonitor();
+            assertModelsEqual(model1, progressImporter.createArchiMateModel(TestSupport.xmlFile2, monitor));
+            
+            // The monitor is wrapped in a SubMonitor, which scales the work
+            assertTrue(monitor.totalWork > 0);
+            assertEquals(monitor.totalWork, monitor.worked);
+            assertTrue(monitor.subTasks.contains(Messages.XMLModelImporter_16));
+            assertTrue(monitor.subTasks.contains(Messages.XMLModelImporter_17));
+            assertTrue(monitor.subTasks.contains(Messages.XMLModelImporter_18));
+            assertTrue(monitor.isDone);
+        }
+    }
+    
+    @Test
+    public void testImportWithNullProgressMonitor() throws Exception {
+        IArchimateModel model1 = importer.createArchiMateModel(TestSupport.xmlFile2);
+        assertModelsEqual(model1, new XMLModelImporter().createArchiMateModel(TestSupport.xmlFile2, null));
+    }
+    
+    @Test(expected = OperationCanceledException.class)
+    public void testCancelledImportThrowsOperationCanceledException() throws Exception {
+        TestProgressMonitor monitor = new TestProgressMonitor();
+        monitor.setCanceled(true);
+        importer.createArchiMateModel(TestSupport.xmlFile2, monitor);
+    }
+    
+    private static class TestProgressMonitor extends NullProgressMonitor {
+        int totalWork;
+        int worked;
+        List<String> subTasks = new ArrayList<>();
+        boolean isDone;
+        
+        @Override
+        public void beginTask(String name, int totalWork) {
+            this.totalWork = totalWork;
+        }
+        
+        @Override
+        public void worked(int work) {
+            worked += work;
+        }
+        
+        @Override
+        public void subTask(String name) {
+            subTasks.add(name);
+        }
+        
+        @Override
+        public void done() {
+            isDone = true;
+        }
+    }
+    
+    @Test
+    public void testOneImporterOnManyThreads() throws Exception {
+        IArchimateModel expected = importer.createArchiMateModel(TestSupport.xmlFile2);
+        byte[] bytes = Files.readAllBytes(TestSupport.xmlFile2.toPath());
+        
+        // One importer shared by all threads, mixing file and stream imports
+        XMLModelImporter sharedImporter = new XMLModelImporter();
+        sharedImporter.setStreaming(true);
+        sharedImporter.setValidating(true);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        
+        try {
+            List<Future<IArchimateModel>> futures = new ArrayList<>();
+            
+            for(int i = 0; i < 64; i++) {
+                boolean fromFile = i % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    return fromFile ? sharedImporter.createArchiMateModel(TestSupport.xmlFile2)
+                                    : sharedImporter.createArchiMateModel(new ByteArrayInputStream(bytes));
+                }));
+            }
+            
+            // Rethrows any import exception
+            for(Future<IArchimateModel> future : futures) {
+                assertModelsEqual(expected, future.get());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        
+        assertNotNull(sharedImporter.getStats());
+    }
+    
+    @Test
+    public void testValidatingImportRejectsInvalidFile() throws Exception {
+        // Duplicate identifier
+        String xml = new String(Files.readAllBytes(TestSupport.xmlFile3.toPath()), StandardCharsets.UTF_8);
+        File file = File.createTempFile("invalid", ".xml"); //$NON-NLS-1$ //$NON-NLS-2$
+        file.deleteOnExit();
+        Files.write(file.toPath(), xml.replace("id-node2", "id-node1").getBytes(StandardCharsets.UTF_8)); //$NON-NLS-1$ //$NON-NLS-2$
+        
+        importer.setValidating(true);
+        
+        try {
+            importer.createArchiMateModel(file);
+            fail("Should have thrown JDOMParseException"); //$NON-NLS-1$
+        }
+        catch(JDOMParseException ex) {
+        }
+        
+        importer.setStreaming(true);
+        
+        try {
+            importer.createArchiMateModel(file);
+            fail("Should have thrown JDOMParseException"); //$NON-NLS-1$
+        }
+        catch(JDOMParseException ex) {
+        }
+    }
+    
+    @Test
+    public void testValidatingImportStopsAtUnknownMetadata() throws Exception {
+        // The file is accepted by XMLValidator.validateXML() so it is accepted when validating as it is read
+        new XMLValidator().validateXML(TestSupport.xmlFile4);
+        
+        importer.setValidating(true);
+        IArchimateModel model = importer.createArchiMateModel(TestSupport.xmlFile4);
+        assertEquals("Sales Person", ((IArchimateElement)model.getFolder(FolderType.BUSINESS).getElements().get(0)).getName()); //$NON-NLS-1$
+    }
+    
+    /**
+     * Default folders and nested connections are given new identifiers so ignore their identifiers when comparing
+     */
+    private void assertModelsEqual(IArchimateModel model1, IArchimateModel model2) {
+        @SuppressWarnings("serial")
+        EcoreUtil.EqualityHelper helper = new EcoreUtil.EqualityHelper() {
+            @Override
+            protected boolean haveEqualAttribute(EObject eObject1, EObject eObject2, EAttribute attribute) {
+                if(attribute == IArchimatePackage.Literals.IDENTIFIER__ID && hasNewIdentifier(eObject1) && hasNewIdentifier(eObject2)) {
+                    return true;
+                }
+                return super.haveEqualAttribute(eObject1, eObject2, attribute);
+            }
+        };
+        
+        assertTrue(helper.equals(model1, model2));
+    }
+    
+    /**
+     * @return true if eObject is a folder or a connection between a node and a node nested in it
+     */
+    private boolean hasNewIdentifier(EObject eObject) {
+        if(eObject instanceof IFolder) {
+            return true;
+        }
+        
+        if(eObject instanceof IDiagramModelConnection) {
+            EObject source = ((IDiagramModelConnection)eObject).getSource();
+            EObject target = ((IDiagramModelConnection)eObject).getTarget();
+            return source instanceof IDiagramModelObject && target instanceof IDiagramModelObject
+                    && (EcoreUtil.isAncestor(source, target) || EcoreUtil.isAncestor(target, source));
+        }
+        
+        return false;
+    }
+    
+    @Test
+    public void testViewReferencesAreResolved() throws Exception {
+        IArchimateModel model = importer.createArchiMateModel(TestSupport.xmlFile2);
+        
+        int count = 0;
+        
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject instanceof IDiagramModelReference) {
+                IDiagramModelReference ref = (IDiagramModelReference)eObject;
+                if("id-3657".equals(ref.getId())) { //$NON-NLS-1$
+                    assertNotNull(ref.getReferencedModel());
+                    assertEquals("id-3944", ref.getReferencedModel().getId()); //$NON-NLS-1$
+                    assertSame(model, ref.getReferencedModel().getArchimateModel());
+                }
+                
+                // No temporary data left on the reference
+                assertNull(ref.getAdapter(IXMLExchangeGlobals.ATTRIBUTE_REF));
+                count++;
+            }
+        }
+        
+        assertTrue(count > 0);
+    }
+    
+    @Test
+    public void testNestedConnectionsAreAdded() throws Exception {
+        IArchimateModel model = importer.createArchiMateModel(TestSupport.xmlFile3);
+        IArchimateDiagramModel dm = (IArchimateDiagramModel)model.getFolder(FolderType.DIAGRAMS).getElements().get(0);
+        
+        IDiagramModelObject parent = dm.getChildren().get(0);
+        IDiagramModelObject child = ((IDiagramModelArchimateObject)parent).getChildren().get(0);
+        
+        // Parent -> Child
+        assertEquals(1, parent.getSourceConnections().size());
+        IDiagramModelArchimateConnection connection = (IDiagramModelArchimateConnection)parent.getSourceConnections().get(0);
+        assertSame(child, connection.getTarget());
+        assertEquals("id-assignment", connection.getArchimateRelationship().getId());
+        
+        // Child -> Parent
+        assertEquals(1, child.getSourceConnections().size());
+        connection = (IDiagramModelArchimateConnection)child.getSourceConnections().get(0);
+        assertSame(parent, connection.getTarget());
+        assertEquals("id-association", connection.getArchimateRelationship().getId());
+    }
+    
+    @Test
+    public void testNestedConnectionsAreNotDuplicated() throws Exception {
+        IArchimateModel model = importer.createArchiMateModel(TestSupport.xmlFile3);
+        IArchimateDiagramModel dm = (IArchimateDiagramModel)model.getFolder(FolderType.DIAGRAMS).getElements().get(1);
+        
+        IDiagramModelObject parent = dm.getChildren().get(0);
+        
+        // The connection in the file is used and no other is added
+        assertEquals(1, parent.getSourceConnections().size());
+        assertEquals("id-conn1", parent.getSourceConnections().get(0).getId());
+    }
+    
+    @Test
+    public void testNestedNodeBoundsAndBendpoints() throws Exception {
+        IArchimateModel model = importer.createArchiMateModel(TestSupport.xmlFile3);
+        IArchimateDiagramModel dm = (IArchimateDiagramModel)model.getFolder(FolderType.DIAGRAMS).getElements().get(2);
+        
+        IDiagramModelGroup group = (IDiagramModelGroup)dm.getChildren().get(0);
+        IDiagramModelArchimateObject parent = (IDiagramModelArchimateObject)group.getChildren().get(0);
+        IDiagramModelArchimateObject child = (IDiagramModelArchimateObject)parent.getChildren().get(0);
+        
+        // Bounds are relative to the parent
+        assertBounds(group.getBounds(), 10, 10, 400, 300);
+        assertBounds(parent.getBounds(), 20, 30, 300, 200);
+        assertBounds(child.getBounds(), 20, 30, 120, 60);
+        
+        // Bendpoint is relative to the centres of the source and target absolute bounds
+        IDiagramModelBendpoint bendpoint = parent.getSourceConnections().get(0).getBendpoints().get(0);
+        assertEquals(70, bendpoint.getStartX());
+        assertEquals(140, bendpoint.getStartY());
+        assertEquals(140, bendpoint.getEndX());
+        assertEquals(180, bendpoint.getEndY());
+    }
+    
+    private void assertBounds(IBounds bounds, int x, int y, int width, int height) {
+        assertEquals(x, bounds.getX());
+        assertEquals(y, bounds.getY());
+        assertEquals(width, bounds.getWidth());
+        assertEquals(height, bounds.getHeight());
+    }
+    
+    @Test
+    public void testImportTimeIsLinearInViewCount() throws Exception {
+        File smallFile = createNestedViewsFile(200);
+        File largeFile = createNestedViewsFile(800);
+        
+        // Warm up
+        new XMLModelImporter().createArchiMateModel(smallFile);
+        new XMLModelImporter().createArchiMateModel(largeFile);
+        
+        long smallTime = timeImport(smallFile);
+        long largeTime = timeImport(largeFile);
+        
+        // Four times the views should take about four times as long. Quadratic growth would be sixteen times.
+        // This is lenient to allow for timer resolution and machine noise.
+        assertTrue("Import time not linear: " + smallTime + "ms, " + largeTime + "ms", largeTime <= Math.max(smallTime, 10) * 10);
+    }
+    
+    @SuppressWarnings("nls")
+    @Test
+    public void testStatsCountObjectsAndLookups() throws Exception {
+        File file = createNestedViewsFile(5);
+        
+        for(boolean streaming : new boolean[] { false, true }) {
+            importer.setStreaming(streaming);
+            importer.createArchiMateModel(file);
+            
+            XMLExchangeStats stats = importer.getStats();
+            assertEquals(file.length(), stats.getBytesRead());
+            
+            assertEquals(5, stats.getObjectCount("BusinessActor"));
+            assertEquals(5, stats.getObjectCount("BusinessRole"));
+            assertEquals(5, stats.getObjectCount("AssignmentRelationship"));
+            assertEquals(5, stats.getObjectCount("ArchimateDiagramModel"));
+            assertEquals(5 * 20, stats.getObjectCount("DiagramModelArchimateObject"));
+            assertEquals(5 * 10, stats.getObjectCount("DiagramModelArchimateConnection"));
+            
+            assertEquals(15, stats.getLookupSize(XMLExchangeStats.LOOKUP_CONCEPTS));
+            assertEquals(20, stats.getLookupSize(XMLExchangeStats.LOOKUP_VIEW_NODES));
+            
+            assertTrue(stats.getPhaseTimes().containsKey(XMLExchangeStats.PHASE_ELEMENTS));
+            assertTrue(stats.getPhaseTimes().containsKey(XMLExchangeStats.PHASE_VIEWS));
+            assertTrue(stats.getPhaseTimes().containsKey(XMLExchangeStats.PHASE_NESTED_CONNECTIONS));
+        }
+    }
+    
+    private long timeImport(File file) throws Exception {
+        long start = System.currentTimeMillis();
+        new XMLModelImporter().createArchiMateModel(file);
+        return System.currentTimeMillis() - start;
+    }
+    
+    /**
+     * Create a temporary file with the given number of views, each with a nested pair of nodes
+     */
+    @SuppressWarnings("nls")
+    private File createNestedViewsFile(int viewCount) throws Exception {
+        File file = File.createTempFile("nested", ".xml");
+        file.deleteOnExit();
+        
+        try(Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<model xmlns=\"http://www.opengroup.org/xsd/archimate/3.0/\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" identifier=\"id-model\">\n");
+            writer.write("<name>Nested</name>\n");
+            
+            writer.write("<elements>\n");
+            for(int i = 0; i < viewCount; i++) {
+                writer.write("<element identifier=\"id-actor" + i + "\" xsi:type=\"BusinessActor\"><name>Actor</name></element>\n");
+                writer.write("<element identifier=\"id-role" + i + "\" xsi:type=\"BusinessRole\"><name>Role</name></element>\n");
+            }
+            writer.write("</elements>\n");
+            
+            writer.write("<relationships>\n");
+            for(int i = 0; i < viewCount; i++) {
+                writer.write("<relationship identifier=\"id-rel" + i + "\" source=\"id-actor" + i + "\" target=\"id-role" + i + "\" xsi:type=\"Assignment\" />\n");
+            }
+            writer.write("</relationships>\n");
+            
+            writer.write("<views><diagrams>\n");
+            for(int i = 0; i < viewCount; i++) {
+                writer.write("<view identifier=\"id-view" + i + "\" xsi:type=\"Diagram\"><name>View</name>\n");
+                for(int j = 0; j < 10; j++) {
+                    writer.write("<node identifier=\"id-parent" + i + "-" + j + "\" elementRef=\"id-actor" + i + "\" xsi:type=\"Element\" x=\"20\" y=\"20\" w=\"300\" h=\"200\">");
+                    writer.write("<node identifier=\"id-child" + i + "-" + j + "\" elementRef=\"id-role" + i + "\" xsi:type=\"Element\" x=\"60\" y=\"60\" w=\"120\" h=\"55\" />");
+                    writer.write("</node>\n");
+                }
+                writer.write("</view>\n");
+            }
+            writer.write("</diagrams></views>\n");
+            
+            writer.write("</model>\n");
+        }
+        
+        return file;
+    }
 }
@@ -0,0 +1,76 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.junit.Test;
+
+import com.archimatetool.model.IArchimateConcept;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IJunction;
+
+
+/**
+ * XML Type Mapper Tests
+ */
+@SuppressWarnings("nls")
+public class XMLTypeMapperTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(XMLTypeMapperTests.class);
+    }
+    
+    @Test
+    public void testConceptNameRoundTrip() {
+        for(EClassifier eClassifier : IArchimatePackage.eINSTANCE.getEClassifiers()) {
+            if(eClassifier instanceof EClass && !((EClass)eClassifier).isAbstract()
+                    && IArchimatePackage.eINSTANCE.getArchimateConcept().isSuperTypeOf((EClass)eClassifier)) {
+                IArchimateConcept concept = (IArchimateConcept)IArchimateFactory.eINSTANCE.create((EClass)eClassifier);
+                
+                String name = XMLTypeMapper.getArchimateConceptName(concept);
+                assertNotNull(eClassifier.getName(), name);
+                assertEquals(eClassifier, XMLTypeMapper.createArchimateConcept(name).eClass());
+            }
+        }
+    }
+    
+    @Test
+    public void testJunctionNames() {
+        IJunction junction = IArchimateFactory.eINSTANCE.createJunction();
+        assertEquals("AndJunction", XMLTypeMapper.getArchimateConceptName(junction));
+        
+        junction.setType(IJunction.OR_JUNCTION_TYPE);
+        assertEquals("OrJunction", XMLTypeMapper.getArchimateConceptName(junction));
+        
+        IJunction orJunction = (IJunction)XMLTypeMapper.createArchimateConcept("OrJunction");
+        assertEquals(IJunction.OR_JUNCTION_TYPE, orJunction.getType());
+    }
+    
+    @Test
+    public void testCreateArchimateConcept_Unknown() {
+        assertNull(XMLTypeMapper.createArchimateConcept("Bogus"));
+    }
+    
+    @Test
+    public void testViewpointRoundTrip() {
+        assertEquals("Layered", XMLTypeMapper.getViewpointName("layered"));
+        assertEquals("layered", XMLTypeMapper.getViewpointID("Layered"));
+        assertEquals("capability", XMLTypeMapper.getViewpointID(XMLTypeMapper.getViewpointName("capability")));
+        
+        assertEquals("", XMLTypeMapper.getViewpointID(""));
+        assertEquals("", XMLTypeMapper.getViewpointID("Bogus"));
+        assertEquals("", XMLTypeMapper.getViewpointID(null));
+    }
+    
+}
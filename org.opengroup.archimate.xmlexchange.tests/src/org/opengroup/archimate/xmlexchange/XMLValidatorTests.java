@@ -5,8 +5,23 @@
  */
 package org.opengroup.archimate.xmlexchange;
 
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.xml.sax.SAXException;
 
 import com.archimatetool.tests.TestUtils;
 
@@ -35,4 +50,64 @@ public class XMLValidatorTests {
         validator.validateXML(TestSupport.xmlFile2);
     }
     
+    @Test
+    public void testValidateStopsAtUnknownMetadata() throws Exception {
+        new XMLValidator().validateXML(TestSupport.xmlFile4);
+    }
+    
+    @Test(expected = OperationCanceledException.class)
+    public void testCancelledValidateThrowsOperationCanceledException() throws Exception {
+        NullProgressMonitor monitor = new NullProgressMonitor();
+        monitor.setCanceled(true);
+        new XMLValidator().validateXML(TestSupport.xmlFile2, monitor);
+    }
+    
+    @Test
+    public void testSchemaIsCompiledOnce() throws Exception {
+        assertSame(XMLValidator.getSchema(), XMLValidator.getSchema());
+    }
+    
+    @Test
+    public void testValidateAfterInvalidFile() throws Exception {
+        File file = File.createTempFile("invalid", ".xml"); //$NON-NLS-1$ //$NON-NLS-2$
+        file.deleteOnExit();
+        Files.write(file.toPath(), "<model xmlns=\"http://www.opengroup.org/xsd/archimate/3.0/\"><bogus /></model>".getBytes(StandardCharsets.UTF_8)); //$NON-NLS-1$
+        
+        XMLValidator validator = new XMLValidator();
+        
+        try {
+            validator.validateXML(file);
+            fail("Should have thrown SAXException"); //$NON-NLS-1$
+        }
+        catch(SAXException ex) {
+        }
+        
+        // The same thread's Validator is used again
+        validator.validateXML(TestSupport.xmlFile2);
+    }
+    
+    @Test
+    public void testValidateOnManyThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            
+            for(int i = 0; i < 20; i++) {
+                futures.add(executor.submit(() -> {
+                    new XMLValidator().validateXML(TestSupport.xmlFile2);
+                    return null;
+                }));
+            }
+            
+            // Rethrows any validation exception
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+    
 }
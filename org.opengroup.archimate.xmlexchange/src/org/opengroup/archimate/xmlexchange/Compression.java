@@ -0,0 +1,208 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+
+/**
+ * Compression of an exchange file
+ * 
+ * Compressed input is detected from the first bytes of the file so that a file of any name can be imported or validated.
+ * A zip file is read from its first file entry and is written with one entry named after the zip file.
+ * Files are compressed and decompressed as they are read and written, nothing is written to disk first.
+ */
+public enum Compression {
+    
+    /**
+     * A plain XML file
+     */
+    NONE,
+    
+    /**
+     * A gzip file
+     */
+    GZIP,
+    
+    /**
+     * A zip file with one XML file entry
+     */
+    ZIP;
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    /**
+     * @return The compression for a file name ending in ".gz" or ".zip", else NONE
+     */
+    public static Compression fromFileName(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        
+        if(name.endsWith(".gz")) { //$NON-NLS-1$
+            return GZIP;
+        }
+        
+        if(name.endsWith(IXMLExchangeGlobals.ZIP_FILE_EXTENSION)) {
+            return ZIP;
+        }
+        
+        return NONE;
+    }
+    
+    /**
+     * @return The compression of a file from its first bytes
+     */
+    public static Compression detect(File file) throws IOException {
+        try(InputStream in = new FileInputStream(file)) {
+            return detect(in);
+        }
+    }
+    
+    /**
+     * @return The compression from the first bytes of in. If in supports mark it is reset to where it was.
+     */
+    static Compression detect(InputStream in) throws IOException {
+        if(in.markSupported()) {
+            in.mark(4);
+        }
+        
+        int b1 = in.read();
+        int b2 = in.read();
+        int b3 = in.read();
+        int b4 = in.read();
+        
+        if(in.markSupported()) {
+            in.reset();
+        }
+        
+        // gzip magic number
+        if(b1 == 0x1f && b2 == 0x8b) {
+            return GZIP;
+        }
+        
+        // zip local file header signature
+        if(b1 == 'P' && b2 == 'K' && b3 == 3 && b4 == 4) {
+            return ZIP;
+        }
+        
+        return NONE;
+    }
+    
+    /**
+     * @return A buffered InputStream of the XML in a plain, gzip or zip file
+     */
+    public static InputStream newInputStream(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        
+        try {
+            return decompress(in);
+        }
+        catch(IOException ex) {
+            in.close();
+            throw ex;
+        }
+    }
+    
+    /**
+     * @return A buffered InputStream of the XML in in, which is plain, gzip or zip
+     */
+    static InputStream decompress(InputStream in) throws IOException {
+        if(!in.markSupported()) {
+            in = new BufferedInputStream(in, BUFFER_SIZE);
+        }
+        
+        switch(detect(in)) {
+            case GZIP:
+                return new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+            
+            case ZIP:
+                ZipInputStream zipIn = new ZipInputStream(in);
+                
+                // First file entry
+                for(ZipEntry entry = zipIn.getNextEntry(); entry != null; entry = zipIn.getNextEntry()) {
+                    if(!entry.isDirectory()) {
+                        return new BufferedInputStream(zipIn, BUFFER_SIZE);
+                    }
+                }
+                
+                throw new IOException(Messages.Compression_0);
+            
+            default:
+                return in;
+        }
+    }
+    
+    /**
+     * @return A buffered OutputStream that writes to file with this compression. It must be closed to finish the file.
+     */
+    public OutputStream newOutputStream(File file) throws IOException {
+        return newOutputStream(file, getEntryName(file));
+    }
+    
+    /**
+     * @param entryName The name of the zip file entry
+     * @return A buffered OutputStream that writes to file with this compression. It must be closed to finish the file.
+     */
+    OutputStream newOutputStream(File file, String entryName) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        
+        try {
+            return compress(out, entryName);
+        }
+        catch(IOException ex) {
+            out.close();
+            throw ex;
+        }
+    }
+    
+    /**
+     * @param entryName The name of the zip file entry
+     * @return A buffered OutputStream that writes to out with this compression. It must be closed to finish the output.
+     */
+    OutputStream compress(OutputStream out, String entryName) throws IOException {
+        switch(this) {
+            case GZIP:
+                return new BufferedOutputStream(new GZIPOutputStream(out, BUFFER_SIZE), BUFFER_SIZE);
+            
+            case ZIP:
+                ZipOutputStream zipOut = new ZipOutputStream(out);
+                zipOut.putNextEntry(new ZipEntry(entryName));
+                return new BufferedOutputStream(zipOut, BUFFER_SIZE);
+            
+            default:
+                return new BufferedOutputStream(out, BUFFER_SIZE);
+        }
+    }
+    
+    /**
+     * @return The name of the XML file in a zip file, for example "model.xml" for "model.zip"
+     */
+    static String getEntryName(File file) {
+        String name = file.getName();
+        
+        if(name.toLowerCase(Locale.ROOT).endsWith(IXMLExchangeGlobals.ZIP_FILE_EXTENSION)) {
+            name = name.substring(0, name.length() - IXMLExchangeGlobals.ZIP_FILE_EXTENSION.length());
+        }
+        
+        if(!name.toLowerCase(Locale.ROOT).endsWith(IXMLExchangeGlobals.FILE_EXTENSION)) {
+            name += IXMLExchangeGlobals.FILE_EXTENSION;
+        }
+        
+        return name;
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * An InputStream that counts the bytes read from a caller's stream and does not close it
+ */
+final class CountingInputStream extends FilterInputStream {
+    
+    private long fCount;
+    
+    CountingInputStream(InputStream in) {
+        super(in);
+    }
+    
+    /**
+     * @return The number of bytes read
+     */
+    long getCount() {
+        return fCount;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if(b != -1) {
+            fCount++;
+        }
+        return b;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if(read > 0) {
+            fCount += read;
+        }
+        return read;
+    }
+    
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        fCount += skipped;
+        return skipped;
+    }
+    
+    // Mark and reset would count bytes twice
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+    
+    // The stream belongs to the caller
+    @Override
+    public void close() {
+    }
+}
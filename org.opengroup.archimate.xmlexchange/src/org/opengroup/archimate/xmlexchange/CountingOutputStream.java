@@ -0,0 +1,49 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * An OutputStream that counts the bytes written to a caller's stream and flushes it instead of closing it
+ */
+final class CountingOutputStream extends FilterOutputStream {
+    
+    private long fCount;
+    
+    CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+    
+    /**
+     * @return The number of bytes written
+     */
+    long getCount() {
+        return fCount;
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        fCount++;
+    }
+    
+    // FilterOutputStream writes one byte at a time
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        fCount += len;
+    }
+    
+    // The stream belongs to the caller
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.EList;
+
+import com.archimatetool.model.IBounds;
+import com.archimatetool.model.IConnectable;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDiagramModelBendpoint;
+import com.archimatetool.model.IDiagramModelConnection;
+import com.archimatetool.model.IDiagramModelContainer;
+import com.archimatetool.model.IDiagramModelObject;
+
+
+/**
+ * The absolute bounds of the nodes, the actual bendpoint positions of the connections and the negative offset of a diagram
+ *
+ * These are calculated once in one walk of the diagram and kept in int arrays,
+ * so that writing a view does not walk the container chain again for every node and bendpoint.
+ */
+final class DiagramGeometry {
+    
+    // x, y, width and height of each node
+    private int[] fBounds = new int[64];
+    
+    // Node mapped to its index
+    private Map<IDiagramModelObject, Integer> fNodeIndexes = new HashMap<>();
+    
+    // Connections in the order found
+    private List<IDiagramModelConnection> fConnections = new ArrayList<>();
+    
+    // Connection mapped to its index
+    private Map<IDiagramModelConnection, Integer> fConnectionIndexes = new HashMap<>();
+    
+    // Start of the bendpoints of each connection in fBendpoints. The last value is the end of the bendpoints.
+    private int[] fBendpointStarts;
+    
+    // x and y of each bendpoint
+    private int[] fBendpoints = new int[64];
+    
+    private int fOffsetX, fOffsetY;
+    
+    DiagramGeometry(IDiagramModel dm) {
+        for(IDiagramModelObject dmo : dm.getChildren()) {
+            addNode(dmo, 0, 0);
+            
+            // Node bounds
+            fOffsetX = Math.min(fOffsetX, dmo.getBounds().getX());
+            fOffsetY = Math.min(fOffsetY, dmo.getBounds().getY());
+        }
+        
+        addBendpoints();
+    }
+    
+    private void addNode(IDiagramModelObject dmo, int parentX, int parentY) {
+        int index = fNodeIndexes.size();
+        fNodeIndexes.put(dmo, index);
+        
+        IBounds bounds = dmo.getBounds();
+        int x = parentX + bounds.getX();
+        int y = parentY + bounds.getY();
+        
+        fBounds = ensureCapacity(fBounds, (index + 1) * 4);
+        fBounds[index * 4] = x;
+        fBounds[index * 4 + 1] = y;
+        fBounds[index * 4 + 2] = bounds.getWidth();
+        fBounds[index * 4 + 3] = bounds.getHeight();
+        
+        addConnections(dmo);
+        
+        if(dmo instanceof IDiagramModelContainer) {
+            for(IDiagramModelObject child : ((IDiagramModelContainer)dmo).getChildren()) {
+                addNode(child, x, y);
+            }
+        }
+    }
+    
+    private void addConnections(IConnectable connectable) {
+        for(IDiagramModelConnection connection : connectable.getSourceConnections()) {
+            fConnectionIndexes.put(connection, fConnections.size());
+            fConnections.add(connection);
+            
+            // Connections to connections
+            addConnections(connection);
+        }
+    }
+    
+    /**
+     * Calculate the bendpoints after all nodes so that the bounds of the source and target are known
+     */
+    private void addBendpoints() {
+        fBendpointStarts = new int[fConnections.size() + 1];
+        int size = 0;
+        
+        for(int i = 0; i < fConnections.size(); i++) {
+            fBendpointStarts[i] = size;
+            
+            IDiagramModelConnection connection = fConnections.get(i);
+            
+            // TODO: Doesn't work for connection->connection
+            Integer source = fNodeIndexes.get(connection.getSource());
+            Integer target = fNodeIndexes.get(connection.getTarget());
+            if(source == null || target == null) {
+                continue;
+            }
+            
+            EList<IDiagramModelBendpoint> bendpoints = connection.getBendpoints();
+            fBendpoints = ensureCapacity(fBendpoints, size + bendpoints.size() * 2);
+            
+            // From the centres of source and target nodes
+            int count = XMLExchangeUtils.getActualBendpointPositions(bendpoints,
+                    getX(source) + (getWidth(source) / 2), getY(source) + (getHeight(source) / 2),
+                    getX(target) + (getWidth(target) / 2), getY(target) + (getHeight(target) / 2),
+                    fBendpoints, size);
+            
+            // Bendpoint bounds
+            for(int j = 0; j < count; j++) {
+                fOffsetX = Math.min(fOffsetX, fBendpoints[size++]);
+                fOffsetY = Math.min(fOffsetY, fBendpoints[size++]);
+            }
+        }
+        
+        fBendpointStarts[fConnections.size()] = size;
+    }
+    
+    private static int[] ensureCapacity(int[] array, int size) {
+        return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+    
+    /**
+     * @return The x offset to apply to nodes and bendpoints so that there are no negative coordinates. This is 0 or less.
+     */
+    int getOffsetX() {
+        return fOffsetX;
+    }
+    
+    /**
+     * @return The y offset to apply to nodes and bendpoints so that there are no negative coordinates. This is 0 or less.
+     */
+    int getOffsetY() {
+        return fOffsetY;
+    }
+    
+    /**
+     * @return The index of a node, or -1 if the node is not in the diagram
+     */
+    int getNodeIndex(IDiagramModelObject dmo) {
+        Integer index = fNodeIndexes.get(dmo);
+        return index == null ? -1 : index;
+    }
+    
+    /**
+     * @return The absolute x of the node at index
+     */
+    int getX(int node) {
+        return fBounds[node * 4];
+    }
+    
+    /**
+     * @return The absolute y of the node at index
+     */
+    int getY(int node) {
+        return fBounds[node * 4 + 1];
+    }
+    
+    int getWidth(int node) {
+        return fBounds[node * 4 + 2];
+    }
+    
+    int getHeight(int node) {
+        return fBounds[node * 4 + 3];
+    }
+    
+    /**
+     * @return The connections in the diagram in the order found, each node's source connections before its children's
+     */
+    List<IDiagramModelConnection> getConnections() {
+        return Collections.unmodifiableList(fConnections);
+    }
+    
+    /**
+     * @return The index of a connection, or -1 if the connection is not in the diagram
+     */
+    int getConnectionIndex(IDiagramModelConnection connection) {
+        Integer index = fConnectionIndexes.get(connection);
+        return index == null ? -1 : index;
+    }
+    
+    /**
+     * @return The number of bendpoints of the connection at index. This is 0 for a connection to or from a connection.
+     */
+    int getBendpointCount(int connection) {
+        return (fBendpointStarts[connection + 1] - fBendpointStarts[connection]) / 2;
+    }
+    
+    /**
+     * @return The actual x of a bendpoint of the connection at index
+     */
+    int getBendpointX(int connection, int bendpoint) {
+        return fBendpoints[fBendpointStarts[connection] + bendpoint * 2];
+    }
+    
+    /**
+     * @return The actual y of a bendpoint of the connection at index
+     */
+    int getBendpointY(int connection, int bendpoint) {
+        return fBendpoints[fBendpointStarts[connection] + bendpoint * 2 + 1];
+    }
+}
@@ -19,6 +19,11 @@ public interface IXMLExchangeGlobals {
     String FILE_EXTENSION = ".xml";
     String FILE_EXTENSION_WILDCARD = "*.xml";
     
+    String GZIP_FILE_EXTENSION = ".xml.gz";
+    String GZIP_FILE_EXTENSION_WILDCARD = "*.xml.gz";
+    String ZIP_FILE_EXTENSION = ".zip";
+    String ZIP_FILE_EXTENSION_WILDCARD = "*.zip";
+    
     String ARCHIMATE_NAMESPACE_PREFIX = "archimate";
     
     Namespace ARCHIMATE3_NAMESPACE = Namespace.getNamespace("http://www.opengroup.org/xsd/archimate/3.0/");
@@ -6,8 +6,24 @@ public class Messages extends NLS {
 
     private static final String BUNDLE_NAME = "org.opengroup.archimate.xmlexchange.messages"; //$NON-NLS-1$
 
+    public static String Compression_0;
+
     public static String XMLExchangeExportProvider_0;
 
+    public static String XMLExchangeImportProvider_0;
+
+    public static String XMLExchangeImportProvider_1;
+
+    public static String XMLModelExporter_0;
+
+    public static String XMLModelExporter_1;
+
+    public static String XMLModelExporter_2;
+
+    public static String XMLModelExporter_3;
+
+    public static String XMLModelExporter_4;
+
     public static String XMLModelImporter_0;
 
     public static String XMLModelImporter_1;
@@ -22,6 +38,14 @@ public class Messages extends NLS {
 
     public static String XMLModelImporter_14;
 
+    public static String XMLModelImporter_15;
+
+    public static String XMLModelImporter_16;
+
+    public static String XMLModelImporter_17;
+
+    public static String XMLModelImporter_18;
+
     public static String XMLModelImporter_2;
 
     public static String XMLModelImporter_3;
@@ -39,6 +63,8 @@ public class Messages extends NLS {
     public static String XMLModelImporter_9;
 
     public static String XMLModelParserException_0;
+
+    public static String XMLValidator_0;
     static {
         // initialize resource bundle
         NLS.initializeMessages(BUNDLE_NAME, Messages.class);
@@ -0,0 +1,191 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import javax.xml.validation.ValidatorHandler;
+
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+
+/**
+ * XMLStreamReader that passes each event it reads on to a Schema ValidatorHandler as a SAX event
+ * so that a document can be validated and read in the same parse.
+ * 
+ * A validation error is thrown from next() as an XMLStreamException with the SAXException as its nested exception.
+ * After an error that XMLValidator.isIgnoredError() accepts the rest of the document is read without being validated,
+ * in the same way that XMLValidator.validateXML() stops at that error and accepts the file.
+ */
+final class ValidatingStreamReader extends StreamReaderDelegate {
+    
+    private ValidatorHandler handler;
+    private AttributesImpl attributes = new AttributesImpl();
+    
+    ValidatingStreamReader(XMLStreamReader reader, ValidatorHandler handler) throws XMLStreamException {
+        super(reader);
+        this.handler = handler;
+        
+        handler.setDocumentLocator(new StreamLocator());
+        
+        try {
+            handler.startDocument();
+        }
+        catch(SAXException ex) {
+            handleError(ex);
+        }
+    }
+    
+    @Override
+    public int next() throws XMLStreamException {
+        int event = super.next();
+        
+        try {
+            validate(event);
+        }
+        catch(SAXException ex) {
+            handleError(ex);
+        }
+        
+        return event;
+    }
+    
+    /**
+     * Stop validating after an ignored error, otherwise throw the error
+     */
+    private void handleError(SAXException ex) throws XMLStreamException {
+        if(!XMLValidator.isIgnoredError(ex)) {
+            throw new XMLStreamException(ex.getMessage(), getLocation(), ex);
+        }
+        
+        handler = null;
+    }
+    
+    // The parent reader's versions of these would read events without passing them on
+    
+    @Override
+    public int nextTag() throws XMLStreamException {
+        int event = next();
+        
+        while((event == CHARACTERS && isWhiteSpace()) || event == SPACE || event == COMMENT || event == PROCESSING_INSTRUCTION) {
+            event = next();
+        }
+        
+        if(event != START_ELEMENT && event != END_ELEMENT) {
+            throw new XMLStreamException("Expected start or end tag", getLocation()); //$NON-NLS-1$
+        }
+        
+        return event;
+    }
+    
+    @Override
+    public String getElementText() throws XMLStreamException {
+        StringBuilder sb = new StringBuilder();
+        
+        int event;
+        while((event = next()) != END_ELEMENT) {
+            if(event == CHARACTERS || event == CDATA || event == SPACE) {
+                sb.append(getText());
+            }
+            else if(event == START_ELEMENT || event == END_DOCUMENT) {
+                throw new XMLStreamException("Expected text only", getLocation()); //$NON-NLS-1$
+            }
+        }
+        
+        return sb.toString();
+    }
+    
+    private void validate(int event) throws SAXException {
+        if(handler == null) {
+            return;
+        }
+        
+        switch(event) {
+            case START_ELEMENT:
+                for(int i = 0; i < getNamespaceCount(); i++) {
+                    handler.startPrefixMapping(nonNull(getNamespacePrefix(i)), nonNull(getNamespaceURI(i)));
+                }
+                
+                attributes.clear();
+                for(int i = 0; i < getAttributeCount(); i++) {
+                    attributes.addAttribute(nonNull(getAttributeNamespace(i)), getAttributeLocalName(i),
+                            getQName(getAttributePrefix(i), getAttributeLocalName(i)), getAttributeType(i), getAttributeValue(i));
+                }
+                
+                handler.startElement(nonNull(getNamespaceURI()), getLocalName(), getQName(getPrefix(), getLocalName()), attributes);
+                break;
+                
+            case END_ELEMENT:
+                handler.endElement(nonNull(getNamespaceURI()), getLocalName(), getQName(getPrefix(), getLocalName()));
+                
+                for(int i = 0; i < getNamespaceCount(); i++) {
+                    handler.endPrefixMapping(nonNull(getNamespacePrefix(i)));
+                }
+                break;
+                
+            case CHARACTERS:
+            case CDATA:
+                handler.characters(getTextCharacters(), getTextStart(), getTextLength());
+                break;
+                
+            case SPACE:
+                handler.ignorableWhitespace(getTextCharacters(), getTextStart(), getTextLength());
+                break;
+                
+            case PROCESSING_INSTRUCTION:
+                handler.processingInstruction(getPITarget(), getPIData());
+                break;
+                
+            case END_DOCUMENT:
+                handler.endDocument();
+                break;
+                
+            default:
+                break;
+        }
+    }
+    
+    private String getQName(String prefix, String localName) {
+        return (prefix == null || prefix.isEmpty()) ? localName : prefix + ":" + localName; //$NON-NLS-1$
+    }
+    
+    private String nonNull(String s) {
+        return s == null ? "" : s; //$NON-NLS-1$
+    }
+    
+    /**
+     * Reports the reader's position so that validation errors have line numbers
+     */
+    private class StreamLocator implements Locator {
+        @Override
+        public String getPublicId() {
+            Location location = getLocation();
+            return location != null ? location.getPublicId() : null;
+        }
+
+        @Override
+        public String getSystemId() {
+            Location location = getLocation();
+            return location != null ? location.getSystemId() : null;
+        }
+
+        @Override
+        public int getLineNumber() {
+            Location location = getLocation();
+            return location != null ? location.getLineNumber() : -1;
+        }
+
+        @Override
+        public int getColumnNumber() {
+            Location location = getLocation();
+            return location != null ? location.getColumnNumber() : -1;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.function.LongSupplier;
+
+import org.eclipse.emf.ecore.EObject;
+
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDiagramModelConnection;
+import com.archimatetool.model.IDiagramModelObject;
+
+
+/**
+ * Profiling events for parsing, each top-level section, each view, validation and writing
+ *
+ * The events are Java Flight Recorder events if the org.opengroup.archimate.xmlexchange.jfr fragment is installed and resolved,
+ * which needs Java 11 or later. Otherwise they do nothing.
+ * Event fields are only set after shouldCommit() returns true, so counting nodes and connections costs nothing when not recording.
+ */
+final class XMLExchangeEvents {
+    
+    static final String OPERATION_IMPORT = "import"; //$NON-NLS-1$
+    static final String OPERATION_EXPORT = "export"; //$NON-NLS-1$
+    
+    enum Type {
+        PARSE, SECTION, VIEW, VALIDATE, WRITE
+    }
+    
+    /**
+     * An event. The begin, end, shouldCommit and commit methods are the same as those of jdk.jfr.Event.
+     * Setters for fields that an event type does not have do nothing.
+     */
+    interface IEvent {
+        void begin();
+        void end();
+        boolean shouldCommit();
+        void commit();
+        
+        default void setOperation(String operation) {
+        }
+        
+        default void setFile(String file) {
+        }
+        
+        default void setSection(String section) {
+        }
+        
+        default void setViewID(String viewID) {
+        }
+        
+        default void setCount(long count) {
+        }
+        
+        default void setNodeCount(int nodeCount) {
+        }
+        
+        default void setConnectionCount(int connectionCount) {
+        }
+        
+        default void setBytes(long bytes) {
+        }
+    }
+    
+    /**
+     * A section of an import or export that is timed as a phase in the stats and recorded as a section event
+     */
+    static final class Section {
+        private XMLExchangeStats stats;
+        private String operation;
+        private String phase;
+        private IEvent event;
+        private long start;
+        private long objectCount;
+        
+        private Section(XMLExchangeStats stats, String operation, String phase) {
+            this.stats = stats;
+            this.operation = operation;
+            this.phase = phase;
+            objectCount = stats.getObjectCount();
+            event = begin(Type.SECTION);
+            start = System.nanoTime();
+        }
+        
+        /**
+         * End the section. The count is the number of objects counted in the stats during the section.
+         */
+        void end() {
+            end(stats.getObjectCount() - objectCount);
+        }
+        
+        /**
+         * End the section with the number of objects in the section
+         */
+        void end(long count) {
+            stats.addPhaseTime(phase, start);
+            commitSection(event, operation, phase, count);
+        }
+    }
+    
+    /**
+     * Creates events of a type
+     */
+    interface IEventFactory {
+        IEvent createEvent(Type type);
+    }
+    
+    /**
+     * The class in the jfr fragment
+     */
+    private static final String JFR_EVENT_FACTORY = "org.opengroup.archimate.xmlexchange.JFREventFactory"; //$NON-NLS-1$
+    
+    private static final IEvent NO_EVENT = new IEvent() {
+        @Override
+        public void begin() {
+        }
+        
+        @Override
+        public void end() {
+        }
+        
+        @Override
+        public boolean shouldCommit() {
+            return false;
+        }
+        
+        @Override
+        public void commit() {
+        }
+    };
+    
+    private static final IEventFactory FACTORY = createFactory();
+    
+    private XMLExchangeEvents() {
+    }
+    
+    private static IEventFactory createFactory() {
+        try {
+            return (IEventFactory)Class.forName(JFR_EVENT_FACTORY).getDeclaredConstructor().newInstance();
+        }
+        // Fragment not installed, or not resolved as this is Java 8
+        catch(ReflectiveOperationException | LinkageError | ClassCastException ex) {
+            return type -> NO_EVENT;
+        }
+    }
+    
+    /**
+     * @return A new event of type that has begun
+     */
+    static IEvent begin(Type type) {
+        IEvent event = FACTORY.createEvent(type);
+        event.begin();
+        return event;
+    }
+    
+    /**
+     * @return A new section that has begun
+     */
+    static Section beginSection(XMLExchangeStats stats, String operation, String phase) {
+        return new Section(stats, operation, phase);
+    }
+    
+    /**
+     * Commit a parse, validate or write event for a file
+     */
+    static void commitFile(IEvent event, String operation, File file) {
+        commitFile(event, operation, file.getPath(), file::length);
+    }
+    
+    /**
+     * Commit a parse, validate or write event for a file or stream
+     * @param path The path of the file, or null for a stream
+     * @param bytes The number of bytes read or written
+     */
+    static void commitFile(IEvent event, String operation, String path, LongSupplier bytes) {
+        event.end();
+        
+        if(event.shouldCommit()) {
+            event.setOperation(operation);
+            event.setFile(path);
+            event.setBytes(bytes.getAsLong());
+            event.commit();
+        }
+    }
+    
+    /**
+     * Commit a section event
+     * @param count The number of objects in the section
+     */
+    static void commitSection(IEvent event, String operation, String section, long count) {
+        event.end();
+        
+        if(event.shouldCommit()) {
+            event.setOperation(operation);
+            event.setSection(section);
+            event.setCount(count);
+            event.commit();
+        }
+    }
+    
+    /**
+     * Commit a view event with the number of nodes and connections in the view
+     */
+    static void commitView(IEvent event, String operation, IDiagramModel dm) {
+        event.end();
+        
+        if(event.shouldCommit()) {
+            int nodeCount = 0;
+            int connectionCount = 0;
+            
+            for(Iterator<EObject> iter = dm.eAllContents(); iter.hasNext();) {
+                EObject eObject = iter.next();
+                if(eObject instanceof IDiagramModelObject) {
+                    nodeCount++;
+                }
+                else if(eObject instanceof IDiagramModelConnection) {
+                    connectionCount++;
+                }
+            }
+            
+            event.setOperation(operation);
+            event.setViewID(dm.getId());
+            event.setNodeCount(nodeCount);
+            event.setConnectionCount(connectionCount);
+            event.commit();
+        }
+    }
+}
@@ -8,10 +8,15 @@ package org.opengroup.archimate.xmlexchange;
 import java.io.File;
 import java.io.IOException;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.FileDialog;
-import org.xml.sax.SAXException;
 
 import com.archimatetool.editor.model.IEditorModelManager;
 import com.archimatetool.editor.model.IModelImporter;
@@ -23,6 +28,8 @@ import com.archimatetool.model.IArchimateModel;
 /**
  * Import Open Exchange XML Format to Archi Model
  * 
+ * The file is imported in a Job that shows its progress and can be cancelled, and the model is opened on the UI thread.
+ * 
  * @author Phillip Beauvoir
  */
 public class XMLExchangeImportProvider implements IModelImporter, IXMLExchangeGlobals {
@@ -34,37 +41,44 @@ public class XMLExchangeImportProvider implements IModelImporter, IXMLExchangeGl
             return;
         }
         
-        // Validate file
-        try {
-            XMLValidator validator = new XMLValidator();
-            validator.validateXML(file);
-        }
-        catch(SAXException ex) {
-            ex.printStackTrace();
-            throw new IOException(ex);
-        }
-        
-        // Create a model
-        IArchimateModel model = null;
+        // Import in the background so that a large file does not block the UI
+        Job job = new Job(NLS.bind(Messages.XMLExchangeImportProvider_0, file.getName())) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                // Create a model, validating the file as it is read
+                IArchimateModel model;
+                
+                try {
+                    XMLModelImporter xmlModelImporter = new XMLModelImporter();
+                    xmlModelImporter.setValidating(true);
+                    
+                    // Progress by bytes read follows the sections, and only one view at a time is held as XML
+                    xmlModelImporter.setStreaming(true);
+                    
+                    model = xmlModelImporter.createArchiMateModel(file, monitor);
+                }
+                catch(OperationCanceledException ex) {
+                    return Status.CANCEL_STATUS;
+                }
+                catch(Exception ex) {
+                    ex.printStackTrace();
+                    return new Status(IStatus.ERROR, XMLExchangePlugin.PLUGIN_ID, NLS.bind(Messages.XMLExchangeImportProvider_1, file.getName()), ex);
+                }
+                
+                // And open the Model in the Editor on the UI thread
+                Display.getDefault().asyncExec(() -> IEditorModelManager.INSTANCE.openModel(model));
+                
+                return Status.OK_STATUS;
+            }
+        };
         
-        try {
-            XMLModelImporter xmlModelImporter = new XMLModelImporter();
-            model = xmlModelImporter.createArchiMateModel(file);
-        }
-        catch(Exception ex) {
-            ex.printStackTrace();
-            throw new IOException(ex);
-        }
-
-        // And open the Model in the Editor
-        if(model != null) {
-            IEditorModelManager.INSTANCE.openModel(model);
-        }
+        job.setUser(true);
+        job.schedule();
     }
     
     private File askOpenFile() {
         FileDialog dialog = new FileDialog(Display.getCurrent().getActiveShell(), SWT.OPEN);
-        dialog.setFilterExtensions(new String[] { FILE_EXTENSION_WILDCARD, "*.*" } ); //$NON-NLS-1$
+        dialog.setFilterExtensions(new String[] { FILE_EXTENSION_WILDCARD + ";" + GZIP_FILE_EXTENSION_WILDCARD + ";" + ZIP_FILE_EXTENSION_WILDCARD, "*.*" } ); //$NON-NLS-1$ //$NON-NLS-2$
         String path = dialog.open();
         
         // TODO: Bug on Mac 10.12 and newer - Open dialog does not close straight away
@@ -0,0 +1,255 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Timings and counters for one import or export
+ *
+ * Wall time per phase, the number of objects created or written per type, the number of bytes read or written
+ * and the peak size of each lookup table. Views may be built in parallel so counters can be updated from any thread.
+ */
+@SuppressWarnings("nls")
+public class XMLExchangeStats {
+    
+    // Phases
+    public static final String PHASE_PARSE = "parse";
+    public static final String PHASE_PROPERTY_DEFINITIONS = "propertyDefinitions";
+    public static final String PHASE_MODEL = "model";
+    public static final String PHASE_ELEMENTS = "elements";
+    public static final String PHASE_RELATIONSHIPS = "relationships";
+    public static final String PHASE_ORGANIZATIONS = "organizations";
+    public static final String PHASE_VIEWS = "views";
+    public static final String PHASE_NESTED_CONNECTIONS = "nestedConnections";
+    public static final String PHASE_WRITE = "write";
+    
+    // Lookup tables
+    public static final String LOOKUP_CONCEPTS = "concepts";
+    public static final String LOOKUP_RELATIONS = "relations";
+    public static final String LOOKUP_PROPERTY_DEFINITIONS = "propertyDefinitions";
+    public static final String LOOKUP_PENDING_PROPERTIES = "pendingProperties";
+    public static final String LOOKUP_PENDING_VIEW_REFERENCES = "pendingViewReferences";
+    public static final String LOOKUP_VIEW_NODES = "viewNodes";
+    public static final String LOOKUP_VIEW_BOUNDS = "viewBounds";
+    
+    // Phase name mapped to nanoseconds, in the order that the phases were first timed
+    private Map<String, Long> fPhaseTimes = new LinkedHashMap<>();
+    
+    // Type name mapped to count
+    private Map<String, LongAdder> fObjectCounts = new ConcurrentHashMap<>();
+    
+    // Lookup table name mapped to peak size
+    private Map<String, Integer> fLookupSizes = new ConcurrentHashMap<>();
+    
+    private AtomicLong fBytesRead = new AtomicLong();
+    private AtomicLong fBytesWritten = new AtomicLong();
+    
+    /**
+     * Add the time since startNanos to a phase
+     * @param phase The phase name
+     * @param startNanos The value of System.nanoTime() when the phase started
+     */
+    public void addPhaseTime(String phase, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        
+        synchronized(fPhaseTimes) {
+            fPhaseTimes.merge(phase, nanos, Long::sum);
+        }
+    }
+    
+    /**
+     * @return The time in nanoseconds of a phase, or 0 if the phase was not timed
+     */
+    public long getPhaseTime(String phase) {
+        synchronized(fPhaseTimes) {
+            return fPhaseTimes.getOrDefault(phase, 0L);
+        }
+    }
+    
+    /**
+     * @return A copy of the phase times in nanoseconds, in the order that the phases were first timed
+     */
+    public Map<String, Long> getPhaseTimes() {
+        synchronized(fPhaseTimes) {
+            return new LinkedHashMap<>(fPhaseTimes);
+        }
+    }
+    
+    /**
+     * Count an object of a type
+     * @param type The type name, for example the EClass name
+     */
+    public void addObject(String type) {
+        fObjectCounts.computeIfAbsent(type, key -> new LongAdder()).increment();
+    }
+    
+    /**
+     * @return The number of objects of a type
+     */
+    public long getObjectCount(String type) {
+        LongAdder count = fObjectCounts.get(type);
+        return count == null ? 0 : count.sum();
+    }
+    
+    /**
+     * @return The number of objects of all types
+     */
+    public long getObjectCount() {
+        long total = 0;
+        
+        for(LongAdder count : fObjectCounts.values()) {
+            total += count.sum();
+        }
+        
+        return total;
+    }
+    
+    /**
+     * @return A copy of the object counts sorted by type name
+     */
+    public Map<String, Long> getObjectCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        
+        for(Entry<String, LongAdder> entry : fObjectCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        
+        return counts;
+    }
+    
+    /**
+     * Set the current size of a lookup table. Only the peak size is kept.
+     */
+    public void setLookupSize(String lookup, int size) {
+        fLookupSizes.merge(lookup, size, Math::max);
+    }
+    
+    /**
+     * @return The peak size of a lookup table, or 0 if not set
+     */
+    public int getLookupSize(String lookup) {
+        return fLookupSizes.getOrDefault(lookup, 0);
+    }
+    
+    /**
+     * @return A copy of the peak lookup table sizes sorted by name
+     */
+    public Map<String, Integer> getLookupSizes() {
+        return new TreeMap<>(fLookupSizes);
+    }
+    
+    public void addBytesRead(long bytes) {
+        fBytesRead.addAndGet(bytes);
+    }
+    
+    public long getBytesRead() {
+        return fBytesRead.get();
+    }
+    
+    public void addBytesWritten(long bytes) {
+        fBytesWritten.addAndGet(bytes);
+    }
+    
+    public long getBytesWritten() {
+        return fBytesWritten.get();
+    }
+    
+    /**
+     * @return The stats as a JSON object
+     */
+    public String toJSON() {
+        StringBuilder sb = new StringBuilder();
+        
+        sb.append("{\n");
+        
+        sb.append("  \"phaseTimesMillis\": {");
+        appendJSONMembers(sb, getPhaseTimes(), true);
+        sb.append("},\n");
+        
+        sb.append("  \"objectCounts\": {");
+        appendJSONMembers(sb, getObjectCounts(), false);
+        sb.append("},\n");
+        
+        sb.append("  \"bytesRead\": ").append(getBytesRead()).append(",\n");
+        sb.append("  \"bytesWritten\": ").append(getBytesWritten()).append(",\n");
+        
+        sb.append("  \"peakLookupSizes\": {");
+        appendJSONMembers(sb, getLookupSizes(), false);
+        sb.append("}\n");
+        
+        sb.append("}\n");
+        
+        return sb.toString();
+    }
+    
+    private void appendJSONMembers(StringBuilder sb, Map<String, ? extends Number> map, boolean nanosToMillis) {
+        String separator = "\n";
+        
+        for(Entry<String, ? extends Number> entry : map.entrySet()) {
+            sb.append(separator).append("    \"");
+            appendJSONString(sb, entry.getKey());
+            sb.append("\": ");
+            sb.append(nanosToMillis ? toMillis(entry.getValue().longValue()) : entry.getValue());
+            separator = ",\n";
+        }
+        
+        if(!map.isEmpty()) {
+            sb.append("\n  ");
+        }
+    }
+    
+    private void appendJSONString(StringBuilder sb, String s) {
+        for(char c : s.toCharArray()) {
+            if(c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            }
+            else if(c < 0x20) {
+                sb.append(String.format("\\u%04x", (int)c));
+            }
+            else {
+                sb.append(c);
+            }
+        }
+    }
+    
+    private String toMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+    
+    /**
+     * @return The stats as lines of text
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        
+        for(Entry<String, Long> entry : getPhaseTimes().entrySet()) {
+            sb.append("Phase ").append(entry.getKey()).append(": ").append(toMillis(entry.getValue())).append(" ms\n");
+        }
+        
+        for(Entry<String, Long> entry : getObjectCounts().entrySet()) {
+            sb.append("Objects ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        
+        sb.append("Bytes read: ").append(getBytesRead()).append("\n");
+        sb.append("Bytes written: ").append(getBytesWritten()).append("\n");
+        
+        for(Entry<String, Integer> entry : getLookupSizes().entrySet()) {
+            sb.append("Peak lookup ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        
+        return sb.toString();
+    }
+}
@@ -6,12 +6,12 @@
 package org.opengroup.archimate.xmlexchange;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import org.eclipse.draw2d.geometry.Point;
 import org.eclipse.emf.ecore.EObject;
 
+import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IBounds;
 import com.archimatetool.model.IDiagramModel;
 import com.archimatetool.model.IDiagramModelBendpoint;
@@ -27,6 +27,12 @@ import com.archimatetool.model.IDiagramModelObject;
  */
 public final class XMLExchangeUtils {
     
+    /**
+     * ArchimateDiagramModelFactory, ColorFactory and FontFactory read preferences and shared colour and font registries
+     * that are not thread safe, so imports and exports on many threads use them one thread at a time
+     */
+    static final Object FACTORY_LOCK = new Object();
+    
     /**
      * 
      * TODO for connections
@@ -52,88 +58,163 @@ public final class XMLExchangeUtils {
      * @return The absolute bounds of a diagram model object
      */
     public static final IBounds getAbsoluteBounds(IDiagramModelObject dmo) {
-        IBounds bounds = dmo.getBounds().getCopy();
+        int[] bounds = getAbsoluteBounds(dmo, new int[4]);
+        return IArchimateFactory.eINSTANCE.createBounds(bounds[0], bounds[1], bounds[2], bounds[3]);
+    }
+    
+    /**
+     * Convert the given absolute bounds to the relative bounds in relation to a parent IDiagramModelObject
+     * @param absoluteBounds The absolute bounds
+     * @param dmo The DiagramModelObject that is the parent into which we want to get the relative bounds for
+     * @return the relative bounds of a diagram model object
+     */
+    public static final IBounds getRelativeBounds(IBounds absoluteBounds, IDiagramModelObject parent) {
+        int[] bounds = { absoluteBounds.getX(), absoluteBounds.getY(), absoluteBounds.getWidth(), absoluteBounds.getHeight() };
+        getRelativeBounds(bounds, parent, bounds);
+        return IArchimateFactory.eINSTANCE.createBounds(bounds[0], bounds[1], bounds[2], bounds[3]);
+    }
+    
+    /**
+     * For exporting get the actual bendpoint positions
+     * @param connection
+     * @return
+     */
+    public static List<Point> getActualBendpointPositions(IDiagramModelConnection connection) {
+        int[] positions = new int[connection.getBendpoints().size() * 2];
+        int count = getActualBendpointPositions(connection, positions);
+        
+        List<Point> points = new ArrayList<Point>(count);
+        
+        for(int i = 0; i < count; i++) {
+            points.add(new Point(positions[i * 2], positions[i * 2 + 1]));
+        }
+        
+        return points;
+    }
+    
+    // ========================================= Allocation free =========================================
+    
+    // Bounds are int[] { x, y, width, height } and points are int[] { x1, y1, x2, y2, ... }
+    
+    /**
+     * Scratch bounds of the source and target of a connection, one pair for each thread
+     */
+    private static final ThreadLocal<int[][]> SCRATCH_BOUNDS = ThreadLocal.withInitial(() -> new int[2][4]);
+    
+    /**
+     * Put the absolute bounds of a diagram model object into bounds
+     * @param dmo The DiagramModelObject
+     * @param bounds An int[4] for the x, y, width and height
+     * @return bounds
+     */
+    public static final int[] getAbsoluteBounds(IDiagramModelObject dmo, int[] bounds) {
+        IBounds dmoBounds = dmo.getBounds();
+        int x = dmoBounds.getX();
+        int y = dmoBounds.getY();
         
         EObject container = dmo.eContainer();
         while(container instanceof IDiagramModelObject) {
-            IDiagramModelObject parent = (IDiagramModelObject)container;
-            IBounds parentBounds = parent.getBounds().getCopy();
+            IBounds parentBounds = ((IDiagramModelObject)container).getBounds();
             
-            bounds.setX(bounds.getX() + parentBounds.getX());
-            bounds.setY(bounds.getY() + parentBounds.getY());
+            x += parentBounds.getX();
+            y += parentBounds.getY();
             
             container = container.eContainer();
         }
-
+        
+        bounds[0] = x;
+        bounds[1] = y;
+        bounds[2] = dmoBounds.getWidth();
+        bounds[3] = dmoBounds.getHeight();
+        
         return bounds;
     }
-
+    
     /**
-     * Convert the given absolute bounds to the relative bounds in relation to a parent IDiagramModelObject
-     * @param absoluteBounds The absolute bounds
-     * @param dmo The DiagramModelObject that is the parent into which we want to get the relative bounds for
-     * @return the relative bounds of a diagram model object
+     * Put the given absolute bounds converted to relative bounds in relation to a parent IDiagramModelObject into bounds
+     * @param absoluteBounds An int[4] of the absolute bounds
+     * @param parent The DiagramModelObject that is the parent into which we want to get the relative bounds for
+     * @param bounds An int[4] for the relative bounds. This can be absoluteBounds.
+     * @return bounds
      */
-    public static final IBounds getRelativeBounds(IBounds absoluteBounds, IDiagramModelObject parent) {
-        IBounds bounds = absoluteBounds.getCopy();
+    public static final int[] getRelativeBounds(int[] absoluteBounds, IDiagramModelObject parent, int[] bounds) {
+        int x = absoluteBounds[0];
+        int y = absoluteBounds[1];
         
+        EObject container = parent;
         do {
-            IBounds parentBounds = parent.getBounds();
+            IBounds parentBounds = ((IDiagramModelObject)container).getBounds();
             
-            bounds.setX(bounds.getX() - parentBounds.getX());
-            bounds.setY(bounds.getY() - parentBounds.getY());
+            x -= parentBounds.getX();
+            y -= parentBounds.getY();
             
-            parent = (parent.eContainer() instanceof IDiagramModelObject) ? (IDiagramModelObject)parent.eContainer() : null;
+            container = container.eContainer();
         }
-        while(parent != null);
-
+        while(container instanceof IDiagramModelObject);
+        
+        bounds[0] = x;
+        bounds[1] = y;
+        bounds[2] = absoluteBounds[2];
+        bounds[3] = absoluteBounds[3];
+        
         return bounds;
     }
     
     /**
-     * For exporting get the actual bendpoint positions
-     * @param connection
-     * @return
+     * For exporting put the actual bendpoint positions into points
+     * @param connection The connection
+     * @param points An int[] with room for the x and y of each bendpoint
+     * @return The number of bendpoints put into points. This is 0 for a connection to or from a connection.
      */
-    public static List<Point> getActualBendpointPositions(IDiagramModelConnection connection) {
-        List<Point> points = new ArrayList<Point>();
-        
+    public static int getActualBendpointPositions(IDiagramModelConnection connection, int[] points) {
         // TODO: Doesn't work for connection->connection
-        if(connection.getSource() instanceof IDiagramModelConnection || connection.getTarget() instanceof IDiagramModelConnection) {
-            return points;
+        if(!(connection.getSource() instanceof IDiagramModelObject) || !(connection.getTarget() instanceof IDiagramModelObject)) {
+            return 0;
         }
         
-        double bpindex = 1; // index count + 1
-        double bpcount = connection.getBendpoints().size() + 1; // number of bendpoints + 1
+        int[][] scratch = SCRATCH_BOUNDS.get();
+        int[] srcBounds = getAbsoluteBounds((IDiagramModelObject)connection.getSource(), scratch[0]); // get bounds of source node
+        int[] tgtBounds = getAbsoluteBounds((IDiagramModelObject)connection.getTarget(), scratch[1]); // get bounds of target node
         
-        for(IDiagramModelBendpoint bendpoint : connection.getBendpoints()) {
+        return getActualBendpointPositions(connection.getBendpoints(), srcBounds[0] + (srcBounds[2] / 2), srcBounds[1] + (srcBounds[3] / 2),
+                tgtBounds[0] + (tgtBounds[2] / 2), tgtBounds[1] + (tgtBounds[3] / 2), points, 0);
+    }
+    
+    /**
+     * Put the actual positions of bendpoints into points from offset
+     * @param bendpoints The bendpoints of a connection
+     * @param srcX The absolute x of the centre of the source node
+     * @param srcY The absolute y of the centre of the source node
+     * @param tgtX The absolute x of the centre of the target node
+     * @param tgtY The absolute y of the centre of the target node
+     * @param points An int[] with room for the x and y of each bendpoint from offset
+     * @param offset The index in points of the x of the first bendpoint
+     * @return The number of bendpoints
+     */
+    static int getActualBendpointPositions(List<IDiagramModelBendpoint> bendpoints, int srcX, int srcY, int tgtX, int tgtY, int[] points, int offset) {
+        int count = bendpoints.size();
+        double bpcount = count + 1; // number of bendpoints + 1
+        
+        for(int i = 0; i < count; i++) {
+            IDiagramModelBendpoint bendpoint = bendpoints.get(i);
+            
             // The weight of this Bendpoint should use to calculate its location.
             // The weight should be between 0.0 and 1.0. A weight of 0.0 will
             // cause the Bendpoint to follow the start point, while a weight
             // of 1.0 will cause the Bendpoint to follow the end point
-            double bpweight = bpindex / bpcount;
+            double bpweight = (i + 1) / bpcount;
             
-            IBounds srcBounds = XMLExchangeUtils.getAbsoluteBounds(connection.getSource()); // get bounds of source node
-            double startX = (srcBounds.getX() + (srcBounds.getWidth() / 2)) + bendpoint.getStartX();
-            startX *= (1.0 - bpweight);
-            double startY = (srcBounds.getY() + (srcBounds.getHeight() / 2)) + bendpoint.getStartY();
-            startY *= (1.0 - bpweight);
+            double startX = (srcX + bendpoint.getStartX()) * (1.0 - bpweight);
+            double startY = (srcY + bendpoint.getStartY()) * (1.0 - bpweight);
             
-            IBounds tgtBounds = XMLExchangeUtils.getAbsoluteBounds(connection.getTarget()); // get bounds of target node
-            double endX = (tgtBounds.getX() + (tgtBounds.getWidth() / 2)) + bendpoint.getEndX();
-            endX *= bpweight;
-            double endY = (tgtBounds.getY() + (tgtBounds.getHeight() / 2)) + bendpoint.getEndY();
-            endY *= bpweight;
+            double endX = (tgtX + bendpoint.getEndX()) * bpweight;
+            double endY = (tgtY + bendpoint.getEndY()) * bpweight;
             
-            int x = (int)(startX + endX);
-            int y = (int)(startY + endY);
-            
-            points.add(new Point(x, y));
-            
-            bpindex++;
+            points[offset + i * 2] = (int)(startX + endX);
+            points[offset + i * 2 + 1] = (int)(startY + endY);
         }
         
-        return points;
+        return count;
     }
     
     /**
@@ -144,31 +225,7 @@ public final class XMLExchangeUtils {
      * @return The Point offset
      */
     public static final Point getNegativeOffsetForDiagram(IDiagramModel dm) {
-        Point extremePoint = new Point();
-        
-        for(IDiagramModelObject dmo : dm.getChildren()) {
-            // Node bounds
-            IBounds bounds = dmo.getBounds().getCopy();
-            
-            extremePoint.x = Math.min(bounds.getX(), extremePoint.x);
-            extremePoint.y = Math.min(bounds.getY(), extremePoint.y);
-            
-            // Bendpoint bounds
-            for(Iterator<EObject> iter = dmo.eAllContents(); iter.hasNext();) {
-                EObject eObject = iter.next();
-                // Connection
-                if(eObject instanceof IDiagramModelConnection) {
-                    IDiagramModelConnection connection = (IDiagramModelConnection)eObject;
-                    
-                    List<Point> points = getActualBendpointPositions(connection);
-                    for(Point pt : points) {
-                        extremePoint.x = Math.min(extremePoint.x, pt.x);
-                        extremePoint.y = Math.min(extremePoint.y, pt.y);
-                    }
-                }
-            }
-        }
-        
-        return extremePoint;
+        DiagramGeometry geometry = new DiagramGeometry(dm);
+        return new Point(geometry.getOffsetX(), geometry.getOffsetY());
     }
 }
@@ -0,0 +1,151 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.jdom2.Attribute;
+import org.jdom2.Element;
+import org.jdom2.Namespace;
+import org.jdom2.output.Format;
+import org.jdom2.output.support.AbstractXMLOutputProcessor;
+import org.jdom2.output.support.FormatStack;
+import org.jdom2.util.NamespaceStack;
+
+
+/**
+ * Writes a JDOM document to a Writer one fragment at a time
+ *
+ * Start and end tags of the outer elements are written as they are opened and closed,
+ * and child elements are written and then removed from their parent so that only one fragment is held in memory.
+ * The output is the same as XMLOutputter writing the complete document with the same Format.
+ */
+final class XMLFragmentOutputter extends AbstractXMLOutputProcessor {
+    
+    private final Writer fWriter;
+    private final FormatStack fFormatStack;
+    private final NamespaceStack fNamespaceStack = new NamespaceStack();
+    
+    // Elements whose start tag has been written but not their end tag
+    private final Deque<Element> fOpenElements = new ArrayDeque<>();
+    
+    XMLFragmentOutputter(Writer writer, Format format) {
+        fWriter = writer;
+        fFormatStack = new FormatStack(format);
+    }
+    
+    /**
+     * Write the XML declaration
+     */
+    void startDocument() throws IOException {
+        printDeclaration(fWriter, fFormatStack);
+    }
+    
+    /**
+     * Close any open elements and finish the document
+     */
+    void endDocument() throws IOException {
+        while(!fOpenElements.isEmpty()) {
+            endElement(fOpenElements.peek());
+        }
+        
+        if(fFormatStack.getLineSeparator() != null) {
+            write(fWriter, fFormatStack.getLineSeparator());
+        }
+        
+        fWriter.flush();
+    }
+    
+    /**
+     * Write the child elements of element and then remove them from it.
+     * The start tag of element is written first if it is not already open.
+     * Nothing is written if element has no children so that it can still be written as an empty element.
+     */
+    void writeContent(Element element) throws IOException {
+        if(element.getChildren().isEmpty()) {
+            return;
+        }
+        
+        startElement(element);
+        
+        for(Element child : element.getChildren()) {
+            writeElement(child);
+        }
+        
+        element.removeContent();
+    }
+    
+    /**
+     * Write the end tag of element if it is open.
+     * If it was never opened but is attached to an open element it is written complete, as XMLOutputter would.
+     * A detached element that was never opened has no content and is not written.
+     */
+    void endElement(Element element) throws IOException {
+        if(fOpenElements.peek() == element) {
+            fOpenElements.pop();
+            
+            write(fWriter, fFormatStack.getPadLast());
+            fFormatStack.pop();
+            fNamespaceStack.pop();
+            
+            write(fWriter, "</"); //$NON-NLS-1$
+            write(fWriter, element.getQualifiedName());
+            write(fWriter, ">"); //$NON-NLS-1$
+        }
+        else if(element.getParentElement() != null) {
+            startElement(element.getParentElement());
+            writeElement(element);
+            element.detach();
+        }
+    }
+    
+    /**
+     * Write the start tag of element, opening any of its ancestors first.
+     * A detached element is opened inside the current open element.
+     */
+    private void startElement(Element element) throws IOException {
+        if(fOpenElements.contains(element)) {
+            return;
+        }
+        
+        if(element.getParentElement() != null) {
+            startElement(element.getParentElement());
+        }
+        
+        if(!fOpenElements.isEmpty()) {
+            write(fWriter, fFormatStack.getPadBetween());
+        }
+        
+        fNamespaceStack.push(element);
+        
+        write(fWriter, "<"); //$NON-NLS-1$
+        write(fWriter, element.getQualifiedName());
+        
+        for(Namespace ns : fNamespaceStack.addedForward()) {
+            printNamespace(fWriter, fFormatStack, ns);
+        }
+        
+        for(Attribute attribute : element.getAttributes()) {
+            printAttribute(fWriter, fFormatStack, attribute);
+        }
+        
+        write(fWriter, ">"); //$NON-NLS-1$
+        
+        fFormatStack.push();
+        fOpenElements.push(element);
+    }
+    
+    /**
+     * Write a complete child element of the current open element
+     */
+    private void writeElement(Element element) throws IOException {
+        write(fWriter, fFormatStack.getPadBetween());
+        printElement(fWriter, fFormatStack, fNamespaceStack, element);
+    }
+}
@@ -5,18 +5,33 @@
  */
 package org.opengroup.archimate.xmlexchange;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.function.LongSupplier;
 
-import org.eclipse.draw2d.geometry.Point;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.FontData;
@@ -24,6 +39,13 @@ import org.eclipse.swt.graphics.RGB;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.Namespace;
+import org.jdom2.output.Format;
+import org.jdom2.output.LineSeparator;
+import org.jdom2.output.XMLOutputter;
+import org.opengroup.archimate.xmlexchange.XMLExchangeEvents.IEvent;
+import org.opengroup.archimate.xmlexchange.XMLExchangeEvents.Section;
+import org.opengroup.archimate.xmlexchange.XMLExchangeEvents.Type;
+import org.xml.sax.SAXException;
 
 import com.archimatetool.editor.ui.ColorFactory;
 import com.archimatetool.editor.ui.FontFactory;
@@ -40,6 +62,7 @@ import com.archimatetool.model.IBounds;
 import com.archimatetool.model.IDiagramModel;
 import com.archimatetool.model.IDiagramModelArchimateConnection;
 import com.archimatetool.model.IDiagramModelArchimateObject;
+import com.archimatetool.model.IDiagramModelBendpoint;
 import com.archimatetool.model.IDiagramModelConnection;
 import com.archimatetool.model.IDiagramModelGroup;
 import com.archimatetool.model.IDiagramModelNote;
@@ -58,16 +81,16 @@ import com.archimatetool.model.IProperty;
 /**
  * Export Archi Model to Open Exchange XML Format using JDOM
  * 
+ * The state of each export is held in its own ExportContext, so one instance can export on many threads at the same time.
+ * Set the options before the instance is shared between threads.
+ * 
  * @author Phillip Beauvoir
  */
 public class XMLModelExporter implements IXMLExchangeGlobals {
     
-    // ArchiMate model
-    private IArchimateModel fModel;
+    // Name of the XML file in a zip file written to a stream
+    private static final String STREAM_ENTRY_NAME = "model" + FILE_EXTENSION; //$NON-NLS-1$
     
-    // Properties
-    private Map<String, String> fPropertyDefsList;
-
     /**
      * A map of DC metadata element tags mapped to values
      */
@@ -87,33 +110,225 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
      * The language code
      */
     private String fLanguageCode;
-
-    public void exportModel(IArchimateModel model, File outputFile) throws IOException {
-        fModel = model;
+    
+    /**
+     * Whether to write each fragment to the file as it is created instead of building the whole Document first
+     */
+    private boolean fStreaming;
+    
+    /**
+     * Whether to validate a file exported with a progress monitor before it replaces the output file
+     */
+    private boolean fValidating;
+    
+    /**
+     * The compression of the output file
+     */
+    private Compression fCompression = Compression.NONE;
+    
+    /**
+     * Timings and counters of the last export to finish
+     */
+    private volatile XMLExchangeStats fStats;
+    
+    /**
+     * The state of one export
+     */
+    private static class ExportContext {
+        // ArchiMate model
+        IArchimateModel model;
         
-        // JDOM Document
-        Document doc = createDocument();
+        // Properties
+        Map<String, String> propertyDefsList;
         
-        // Root Element
-        Element rootElement = createRootElement(doc);
+        /**
+         * The absolute bounds, bendpoint positions and negative offset for the current diagram.
+         * The exchange format diagram starts at origin 0,0 with no negative coordinates allowed.
+         * Archi diagram nodes can have negative coordinates, so the offset is applied to nodes and bendpoints.
+         * We calculate it once for each diagram.
+         */
+        DiagramGeometry currentDiagramGeometry;
+        
+        /**
+         * The outputter used when streaming, otherwise null
+         */
+        XMLFragmentOutputter outputter;
+        
+        // Timings and counters
+        XMLExchangeStats stats = new XMLExchangeStats();
+        
+        // Progress and cancellation
+        IProgressMonitor monitor = new NullProgressMonitor();
+        
+        ExportContext(IArchimateModel model) {
+            this.model = model;
+        }
+    }
 
-        // Persist model
-        writeModel(rootElement);
+    /**
+     * Export the model to a file with the compression that is set
+     */
+    public void exportModel(IArchimateModel model, File outputFile) throws IOException {
+        // Create parent folder if it doesn't exist
+        File parent = outputFile.getParentFile();
+        if(parent != null) {
+            parent.mkdirs();
+        }
         
-        // Save
-        JDOMUtils.write2XMLFile(doc, outputFile);
+        writeExchangeFile(new ExportContext(model), fCompression.newOutputStream(outputFile), outputFile.getPath(), outputFile::length);
         
         // XSD
         if(fIncludeXSD) {
-            File file1 = new File(outputFile.getParentFile(), XMLExchangePlugin.ARCHIMATE3_MODEL_XSD);
-            XMLExchangePlugin.INSTANCE.copyXSDFile(XMLExchangePlugin.ARCHIMATE3_MODEL_XSD, file1);
+            copyXSDFiles(outputFile);
+        }
+    }
+    
+    /**
+     * Export the model to a file with the compression that is set, reporting progress to monitor for each element, relationship and view.
+     * The model is written to a temporary file next to outputFile that replaces outputFile when it is complete and, if set, valid,
+     * so outputFile is not touched if the export fails, is cancelled or is not valid.
+     * The monitor can be null.
+     * @throws OperationCanceledException if the monitor is cancelled
+     * @throws SAXException if validating and the exported file is not valid
+     */
+    public void exportModel(IArchimateModel model, File outputFile, IProgressMonitor monitor) throws IOException, SAXException {
+        // Create parent folder if it doesn't exist
+        File parent = outputFile.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        
+        SubMonitor progress = SubMonitor.convert(monitor, NLS.bind(Messages.XMLModelExporter_0, outputFile.getName()), 10);
+        
+        ExportContext context = new ExportContext(model);
+        context.monitor = SubMonitor.convert(progress.split(fValidating ? 9 : 10), countProgressWork(model.getFolders()));
+        
+        // A hidden file on Linux and Mac
+        File tmpFile = File.createTempFile("." + outputFile.getName() + "-", ".tmp", parent); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        
+        try {
+            // The zip entry is named from outputFile
+            OutputStream out = fCompression.newOutputStream(tmpFile, Compression.getEntryName(outputFile));
+            writeExchangeFile(context, out, outputFile.getPath(), tmpFile::length);
             
-            File file2 = new File(outputFile.getParentFile(), XMLExchangePlugin.ARCHIMATE3_VIEW_XSD);
-            XMLExchangePlugin.INSTANCE.copyXSDFile(XMLExchangePlugin.ARCHIMATE3_VIEW_XSD, file2);
+            // Validate before the file is replaced
+            if(fValidating) {
+                progress.subTask(Messages.XMLModelExporter_4);
+                new XMLValidator().validateXML(tmpFile, progress.split(1));
+            }
             
-            File file3 = new File(outputFile.getParentFile(), XMLExchangePlugin.ARCHIMATE3_DIAGRAM_XSD);
-            XMLExchangePlugin.INSTANCE.copyXSDFile(XMLExchangePlugin.ARCHIMATE3_DIAGRAM_XSD, file3);
+            moveFile(tmpFile, outputFile);
+        }
+        finally {
+            // Does nothing if it was moved
+            tmpFile.delete();
         }
+        
+        // XSD
+        if(fIncludeXSD) {
+            copyXSDFiles(outputFile);
+        }
+        
+        progress.done();
+    }
+    
+    /**
+     * Move tmpFile to outputFile, replacing it, in one step if the file system can
+     */
+    private void moveFile(File tmpFile, File outputFile) throws IOException {
+        try {
+            Files.move(tmpFile.toPath(), outputFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch(AtomicMoveNotSupportedException ex) {
+            Files.move(tmpFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Copy the XSD files to the folder of outputFile
+     */
+    private void copyXSDFiles(File outputFile) throws IOException {
+        File file1 = new File(outputFile.getParentFile(), XMLExchangePlugin.ARCHIMATE3_MODEL_XSD);
+        XMLExchangePlugin.INSTANCE.copyXSDFile(XMLExchangePlugin.ARCHIMATE3_MODEL_XSD, file1);
+        
+        File file2 = new File(outputFile.getParentFile(), XMLExchangePlugin.ARCHIMATE3_VIEW_XSD);
+        XMLExchangePlugin.INSTANCE.copyXSDFile(XMLExchangePlugin.ARCHIMATE3_VIEW_XSD, file2);
+        
+        File file3 = new File(outputFile.getParentFile(), XMLExchangePlugin.ARCHIMATE3_DIAGRAM_XSD);
+        XMLExchangePlugin.INSTANCE.copyXSDFile(XMLExchangePlugin.ARCHIMATE3_DIAGRAM_XSD, file3);
+    }
+    
+    /**
+     * @return The number of elements, relationships and views in folders and their sub-folders, which is the work of an export
+     */
+    private int countProgressWork(List<IFolder> folders) {
+        int count = 0;
+        
+        for(IFolder folder : folders) {
+            for(EObject eObject : folder.getElements()) {
+                if(eObject instanceof IArchimateElement || eObject instanceof IArchimateRelationship || eObject instanceof IArchimateDiagramModel) {
+                    count++;
+                }
+            }
+            
+            count += countProgressWork(folder.getFolders());
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Export the model to a stream with the compression that is set, for example to another process or to memory.
+     * The stream is flushed but is not closed. The XSD files are not included.
+     */
+    public void exportModel(IArchimateModel model, OutputStream out) throws IOException {
+        CountingOutputStream countingOut = new CountingOutputStream(out);
+        writeExchangeFile(new ExportContext(model), fCompression.compress(countingOut, STREAM_ENTRY_NAME), null, countingOut::getCount);
+    }
+    
+    /**
+     * Export the model to a channel with the compression that is set.
+     * The channel is not closed. The XSD files are not included.
+     */
+    public void exportModel(IArchimateModel model, WritableByteChannel channel) throws IOException {
+        exportModel(model, Channels.newOutputStream(channel));
+    }
+    
+    /**
+     * Write the model to out, which is closed when done, and commit the write event
+     * @param path The path of the file, or null for a stream
+     * @param bytesWritten The number of bytes written to the file or stream
+     */
+    private void writeExchangeFile(ExportContext context, OutputStream out, String path, LongSupplier bytesWritten) throws IOException {
+        // JDOM Document
+        Document doc = createDocument();
+        
+        // Root Element
+        Element rootElement = createRootElement(context, doc);
+        
+        IEvent event;
+        
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            if(fStreaming) {
+                // Persist and save model as we go
+                // The file is written as the model is persisted so the write event includes the section events
+                event = XMLExchangeEvents.begin(Type.WRITE);
+                writeModelStream(context, rootElement, writer);
+            }
+            else {
+                // Persist model
+                writeModel(context, rootElement);
+                
+                // Save
+                event = XMLExchangeEvents.begin(Type.WRITE);
+                long start = System.nanoTime();
+                new XMLOutputter(createFormat()).output(doc, writer);
+                context.stats.addPhaseTime(XMLExchangeStats.PHASE_WRITE, start);
+            }
+        }
+        
+        context.stats.addBytesWritten(bytesWritten.getAsLong());
+        XMLExchangeEvents.commitFile(event, XMLExchangeEvents.OPERATION_EXPORT, path, bytesWritten);
+        
+        fStats = context.stats;
     }
     
     /**
@@ -159,7 +374,41 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     public void setLanguageCode(String languageCode) {
         fLanguageCode = languageCode;
     }
+    
+    /**
+     * Set whether to write the model to file as it is exported rather than building the whole XML Document in memory first.
+     * The file is the same either way.
+     * @param set
+     */
+    public void setStreaming(boolean set) {
+        fStreaming = set;
+    }
+    
+    /**
+     * Set whether exportModel() with a progress monitor validates the exported file against the XSD Schema before it replaces the output file.
+     * This is the same as calling XMLValidator.validateXML() afterwards but an invalid file does not replace the output file.
+     * @param set
+     */
+    public void setValidating(boolean set) {
+        fValidating = set;
+    }
+    
+    /**
+     * Set the compression of the output file. The default is no compression.
+     * @param compression
+     */
+    public void setCompression(Compression compression) {
+        fCompression = compression;
+    }
 
+    /**
+     * @return The timings and counters of the last export to finish on any thread, or null if nothing has been exported.
+     * When streaming, the write phase is the time spent writing to file during the other phases.
+     */
+    public XMLExchangeStats getStats() {
+        return fStats;
+    }
+    
     /**
      * @return A JDOM Document
      */
@@ -171,7 +420,7 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
      * @param doc
      * @return The Root JDOM Element
      */
-    Element createRootElement(Document doc) {
+    Element createRootElement(ExportContext context, Document doc) {
         Element rootElement = new Element(ELEMENT_MODEL, ARCHIMATE3_NAMESPACE);
         doc.setRootElement(rootElement);
 
@@ -209,40 +458,169 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     /**
      * Write the model
      */
-    private void writeModel(Element rootElement) {
-        rootElement.setAttribute(ATTRIBUTE_IDENTIFIER, createID(fModel));
+    private void writeModel(ExportContext context, Element rootElement) {
+        rootElement.setAttribute(ATTRIBUTE_IDENTIFIER, createID(context.model));
         
         // Gather all properties now
-        fPropertyDefsList = getAllUniquePropertyKeysForModel();
+        Section section = beginSection(context, XMLExchangeStats.PHASE_PROPERTY_DEFINITIONS);
+        context.propertyDefsList = getAllUniquePropertyKeysForModel(context.model);
+        section.end(context.propertyDefsList.size());
+        context.stats.setLookupSize(XMLExchangeStats.LOOKUP_PROPERTY_DEFINITIONS, context.propertyDefsList.size());
+        
+        section = beginSection(context, XMLExchangeStats.PHASE_MODEL);
         
         // Name
-        writeTextToElement(fModel.getName(), rootElement, ELEMENT_NAME, true);
+        writeTextToElement(context.model.getName(), rootElement, ELEMENT_NAME, true);
         
         // Documentation (Purpose) - optional
-        writeTextToElement(fModel.getPurpose(), rootElement, ELEMENT_DOCUMENTATION, false);
+        writeTextToElement(context.model.getPurpose(), rootElement, ELEMENT_DOCUMENTATION, false);
 
         // Model Properties
-        writeProperties(fModel, rootElement);
+        writeProperties(context, context.model, rootElement);
         
         // Metadata
         writeMetadata(rootElement);
         
+        flushElement(context, rootElement);
+        
+        section.end();
+        
         // Model Elements
-        writeModelElements(rootElement);
+        section = beginSection(context, XMLExchangeStats.PHASE_ELEMENTS);
+        writeModelElements(context, rootElement);
+        section.end();
         
         // Relationships
-        writeModelRelationships(rootElement);
+        section = beginSection(context, XMLExchangeStats.PHASE_RELATIONSHIPS);
+        writeModelRelationships(context, rootElement);
+        section.end();
         
         // Organizations
         if(fDoSaveOrganisation) {
-            writeOrganizations(rootElement);
+            section = beginSection(context, XMLExchangeStats.PHASE_ORGANIZATIONS);
+            writeOrganizations(context, rootElement);
+            section.end();
         }
         
         // Properties Definitions
-        writeModelPropertiesDefinitions(rootElement);
+        section = beginSection(context, XMLExchangeStats.PHASE_PROPERTY_DEFINITIONS);
+        writeModelPropertiesDefinitions(context, rootElement);
+        flushElement(context, rootElement);
+        section.end(context.propertyDefsList.size());
         
         // Views
-        writeViews(rootElement);
+        section = beginSection(context, XMLExchangeStats.PHASE_VIEWS);
+        writeViews(context, rootElement);
+        section.end();
+    }
+    
+    /**
+     * @return A new section of the export that has begun
+     */
+    private Section beginSection(ExportContext context, String phase) {
+        String name = getSectionName(phase);
+        if(name != null) {
+            context.monitor.subTask(name);
+        }
+        
+        return XMLExchangeEvents.beginSection(context.stats, XMLExchangeEvents.OPERATION_EXPORT, phase);
+    }
+    
+    /**
+     * @return The name of a section to show as progress, or null if it is not shown
+     */
+    private String getSectionName(String phase) {
+        switch(phase) {
+            case XMLExchangeStats.PHASE_ELEMENTS:
+                return Messages.XMLModelExporter_1;
+            
+            case XMLExchangeStats.PHASE_RELATIONSHIPS:
+                return Messages.XMLModelExporter_2;
+            
+            case XMLExchangeStats.PHASE_VIEWS:
+                return Messages.XMLModelExporter_3;
+            
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Throw an OperationCanceledException if the monitor is cancelled, else report one element, relationship or view as done
+     */
+    private void updateProgress(ExportContext context) {
+        if(context.monitor.isCanceled()) {
+            throw new OperationCanceledException();
+        }
+        
+        context.monitor.worked(1);
+    }
+    
+    // ========================================= Streaming ======================================
+    
+    /**
+     * Write the model to writer, writing each element, relationship, organization folder and view as soon as it is created
+     */
+    private void writeModelStream(ExportContext context, Element rootElement, Writer writer) throws IOException {
+        try {
+            context.outputter = new XMLFragmentOutputter(writer, createFormat());
+            context.outputter.startDocument();
+            writeModel(context, rootElement);
+            
+            long start = System.nanoTime();
+            context.outputter.endElement(rootElement);
+            context.outputter.endDocument();
+            context.stats.addPhaseTime(XMLExchangeStats.PHASE_WRITE, start);
+        }
+        catch(UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        finally {
+            context.outputter = null;
+        }
+    }
+    
+    /**
+     * @return The same Format as JDOMUtils.write2XMLFile()
+     */
+    private Format createFormat() {
+        Format format = Format.getPrettyFormat();
+        format.setLineSeparator(LineSeparator.NL);
+        return format;
+    }
+    
+    /**
+     * If streaming, write the child elements of element to file and remove them
+     */
+    private void flushElement(ExportContext context, Element element) {
+        if(context.outputter != null) {
+            long start = System.nanoTime();
+            
+            try {
+                context.outputter.writeContent(element);
+                context.stats.addPhaseTime(XMLExchangeStats.PHASE_WRITE, start);
+            }
+            catch(IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+    
+    /**
+     * If streaming, write the end of element to file
+     */
+    private void endElement(ExportContext context, Element element) {
+        if(context.outputter != null) {
+            long start = System.nanoTime();
+            
+            try {
+                context.outputter.endElement(element);
+                context.stats.addPhaseTime(XMLExchangeStats.PHASE_WRITE, start);
+            }
+            catch(IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
     }
     
     // ========================================= Metadata ======================================
@@ -282,16 +660,18 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     /**
      * Write the elements from the layers and extensions
      */
-    Element writeModelElements(Element rootElement) {
+    Element writeModelElements(ExportContext context, Element rootElement) {
         Element elementsElement = new Element(ELEMENT_ELEMENTS, ARCHIMATE3_NAMESPACE);
         
-        writeModelElementsFolder(fModel.getFolder(FolderType.STRATEGY), elementsElement);
-        writeModelElementsFolder(fModel.getFolder(FolderType.BUSINESS), elementsElement);
-        writeModelElementsFolder(fModel.getFolder(FolderType.APPLICATION), elementsElement);
-        writeModelElementsFolder(fModel.getFolder(FolderType.TECHNOLOGY), elementsElement);
-        writeModelElementsFolder(fModel.getFolder(FolderType.MOTIVATION), elementsElement);
-        writeModelElementsFolder(fModel.getFolder(FolderType.IMPLEMENTATION_MIGRATION), elementsElement);
-        writeModelElementsFolder(fModel.getFolder(FolderType.OTHER), elementsElement);
+        writeModelElementsFolder(context, context.model.getFolder(FolderType.STRATEGY), elementsElement);
+        writeModelElementsFolder(context, context.model.getFolder(FolderType.BUSINESS), elementsElement);
+        writeModelElementsFolder(context, context.model.getFolder(FolderType.APPLICATION), elementsElement);
+        writeModelElementsFolder(context, context.model.getFolder(FolderType.TECHNOLOGY), elementsElement);
+        writeModelElementsFolder(context, context.model.getFolder(FolderType.MOTIVATION), elementsElement);
+        writeModelElementsFolder(context, context.model.getFolder(FolderType.IMPLEMENTATION_MIGRATION), elementsElement);
+        writeModelElementsFolder(context, context.model.getFolder(FolderType.OTHER), elementsElement);
+        
+        endElement(context, elementsElement);
         
         // If there are elements
         if(!elementsElement.getChildren().isEmpty()) {
@@ -306,7 +686,7 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     /**
      * Write the elements from an Archi folder
      */
-    private void writeModelElementsFolder(IFolder folder, Element elementsElement) {
+    private void writeModelElementsFolder(ExportContext context, IFolder folder, Element elementsElement) {
         if(folder == null) {
             return;
         }
@@ -315,7 +695,9 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         getElements(folder, list);
         for(EObject eObject : list) {
             if(eObject instanceof IArchimateElement) {
-                writeModelElement((IArchimateElement)eObject, elementsElement);
+                updateProgress(context);
+                writeModelElement(context, (IArchimateElement)eObject, elementsElement);
+                flushElement(context, elementsElement);
              }
         }
     }
@@ -323,7 +705,7 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     /**
      * Write an element
      */
-    Element writeModelElement(IArchimateElement element, Element elementsElement) { 
+    Element writeModelElement(ExportContext context, IArchimateElement element, Element elementsElement) {
         Element elementElement = new Element(ELEMENT_ELEMENT, ARCHIMATE3_NAMESPACE);
         elementsElement.addContent(elementElement);
         
@@ -340,7 +722,9 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         writeTextToElement(element.getDocumentation(), elementElement, ELEMENT_DOCUMENTATION, false);
         
         // Properties
-        writeProperties(element, elementElement);
+        writeProperties(context, element, elementElement);
+        
+        addObject(context, element);
         
         return elementElement;
     }
@@ -367,10 +751,12 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     /**
      * Write the relationships
      */
-    Element writeModelRelationships(Element rootElement) {
+    Element writeModelRelationships(ExportContext context, Element rootElement) {
         Element relationshipsElement = new Element(ELEMENT_RELATIONSHIPS, ARCHIMATE3_NAMESPACE);
         
-        writeModelRelationshipsFolder(fModel.getFolder(FolderType.RELATIONS), relationshipsElement);
+        writeModelRelationshipsFolder(context, context.model.getFolder(FolderType.RELATIONS), relationshipsElement);
+        
+        endElement(context, relationshipsElement);
         
         // If there are relationships
         if(!relationshipsElement.getChildren().isEmpty()) {
@@ -385,7 +771,7 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     /**
      * Write the relationships from an Archi folder
      */
-    private void writeModelRelationshipsFolder(IFolder folder, Element relationshipsElement) {
+    private void writeModelRelationshipsFolder(ExportContext context, IFolder folder, Element relationshipsElement) {
         if(folder == null) {
             return;
         }
@@ -394,7 +780,9 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         getElements(folder, list);
         for(EObject eObject : list) {
             if(eObject instanceof IArchimateRelationship) {
-                writeModelRelationship((IArchimateRelationship)eObject, relationshipsElement);
+                updateProgress(context);
+                writeModelRelationship(context, (IArchimateRelationship)eObject, relationshipsElement);
+                flushElement(context, relationshipsElement);
              }
         }
     }
@@ -402,7 +790,7 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     /**
      * Write a relationship
      */
-    Element writeModelRelationship(IArchimateRelationship relationship, Element relationshipsElement) { 
+    Element writeModelRelationship(ExportContext context, IArchimateRelationship relationship, Element relationshipsElement) { 
         Element relationshipElement = new Element(ELEMENT_RELATIONSHIP, ARCHIMATE3_NAMESPACE);
         relationshipsElement.addContent(relationshipElement);
         
@@ -456,20 +844,25 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         writeTextToElement(relationship.getDocumentation(), relationshipElement, ELEMENT_DOCUMENTATION, false);
         
         // Properties
-        writeProperties(relationship, relationshipElement);
+        writeProperties(context, relationship, relationshipElement);
+        
+        addObject(context, relationship);
 
         return relationshipElement;
     }
     
     // ========================================= Organizations ======================================
 
-    Element writeOrganizations(Element rootElement) {
+    Element writeOrganizations(ExportContext context, Element rootElement) {
         Element organizationsElement = new Element(ELEMENT_ORGANIZATIONS, ARCHIMATE3_NAMESPACE);
         
-        for(IFolder folder : fModel.getFolders()) {
+        for(IFolder folder : context.model.getFolders()) {
             writeFolder(folder, organizationsElement);
+            flushElement(context, organizationsElement);
         }
         
+        endElement(context, organizationsElement);
+        
         // If there are children
         if(!organizationsElement.getChildren().isEmpty()) {
             rootElement.addContent(organizationsElement);
@@ -517,15 +910,15 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     
     // ========================================= Properties ======================================
 
-    Element writeModelPropertiesDefinitions(Element rootElement) {
-        if(fPropertyDefsList.isEmpty()) {
+    Element writeModelPropertiesDefinitions(ExportContext context, Element rootElement) {
+        if(context.propertyDefsList.isEmpty()) {
             return null;
         }
         
         Element propertiesDefinitionsElement = new Element(ELEMENT_PROPERTYDEFINITIONS, ARCHIMATE3_NAMESPACE);
         rootElement.addContent(propertiesDefinitionsElement);
 
-        for(Entry<String, String> entry : fPropertyDefsList.entrySet()) {
+        for(Entry<String, String> entry : context.propertyDefsList.entrySet()) {
             Element propertyDefElement = new Element(ELEMENT_PROPERTYDEFINITION, ARCHIMATE3_NAMESPACE);
             propertiesDefinitionsElement.addContent(propertyDefElement);
             
@@ -541,25 +934,31 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     }
     
     /**
-     * @return All unique property types in the model
+     * @return All unique property types in the model sorted by name and mapped to property definition IDs.
+     * The IDs are numbered in the order that the types are first found in the model's contents.
      */
-    Map<String, String> getAllUniquePropertyKeysForModel() {
+    Map<String, String> getAllUniquePropertyKeysForModel(IArchimateModel model) {
         Map<String, String> list = new TreeMap<String, String>();
-        
-        String id = "propid-"; //$NON-NLS-1$
-        int idCount = 1;
-        
-        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
-            EObject element = iter.next();
-            if(element instanceof IProperty) {
-                String name = ((IProperty)element).getKey();
+        addPropertyKeys(model, list);
+        return list;
+    }
+    
+    /**
+     * Add the unique property types of the contents of an object, depth first in the same order as eAllContents().
+     * Bounds and bendpoints can't have properties so they are not walked.
+     */
+    private void addPropertyKeys(EObject eObject, Map<String, String> list) {
+        for(EObject child : eObject.eContents()) {
+            if(child instanceof IProperty) {
+                String name = ((IProperty)child).getKey();
                 if(name != null && !list.containsKey(name)) {
-                    list.put(name, id + (idCount++));
+                    list.put(name, "propid-" + (list.size() + 1)); //$NON-NLS-1$
                 }
             }
+            else if(!(child instanceof IBounds || child instanceof IDiagramModelBendpoint)) {
+                addPropertyKeys(child, list);
+            }
         }
-        
-        return list;
     }
     
     /**
@@ -568,16 +967,17 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
      * @param parentElement
      * @return The Element or null
      */
-    Element writeProperties(IProperties properties, Element parentElement) {
+    Element writeProperties(ExportContext context, IProperties properties, Element parentElement) {
         Element propertiesElement = new Element(ELEMENT_PROPERTIES, ARCHIMATE3_NAMESPACE);
         
         for(IProperty property : properties.getProperties()) {
             String name = property.getKey();
             String value = property.getValue();
             if(hasSomeText(name)) {
-                String propertyRefID = fPropertyDefsList.get(name);
+                String propertyRefID = context.propertyDefsList.get(name);
                 if(propertyRefID != null) {
                     writePropertyValue(propertiesElement, propertyRefID, value);
+                    addObject(context, property);
                 }
             }
         }
@@ -606,17 +1006,9 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     
     // ========================================= Views ======================================
     
-    /**
-     * The negative offset for the current diagram.
-     * The exchange format diagram starts at origin 0,0 with no negative coordinates allowed.
-     * Archi diagram nodes can have negative coordinates, so this is the offset to apply to nodes and bendpoints.
-     * We calculate it once for each diagram.
-     */
-    private Point fCurrentDiagramNegativeOffset;
-    
-    Element writeViews(Element rootElement) {
+    Element writeViews(ExportContext context, Element rootElement) {
         // Do we have any views?
-        EList<IDiagramModel> views = fModel.getDiagramModels();
+        EList<IDiagramModel> views = context.model.getDiagramModels();
         if(views.isEmpty()) {
             return null;
         }
@@ -629,17 +1021,25 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         
         for(IDiagramModel dm : views) {
             if(dm instanceof IArchimateDiagramModel) {
-                // Calculate negative offset for this diagram
-                fCurrentDiagramNegativeOffset = XMLExchangeUtils.getNegativeOffsetForDiagram(dm);
+                updateProgress(context);
+                
+                // Calculate geometry and negative offset for this diagram
+                context.currentDiagramGeometry = new DiagramGeometry(dm);
                 
-                writeView((IArchimateDiagramModel)dm, diagramsElement);
+                writeView(context, (IArchimateDiagramModel)dm, diagramsElement);
+                flushElement(context, diagramsElement);
             }
         }
         
+        endElement(context, diagramsElement);
+        endElement(context, viewsElement);
+        
         return viewsElement;
     }
     
-    Element writeView(IArchimateDiagramModel dm, Element viewsElement) {
+    Element writeView(ExportContext context, IArchimateDiagramModel dm, Element viewsElement) {
+        IEvent event = XMLExchangeEvents.begin(Type.VIEW);
+        
         Element viewElement = new Element(ELEMENT_VIEW, ARCHIMATE3_NAMESPACE);
         viewsElement.addContent(viewElement);
 
@@ -662,13 +1062,17 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         writeTextToElement(dm.getDocumentation(), viewElement, ELEMENT_DOCUMENTATION, false);
 
         // Properties
-        writeProperties(dm, viewElement);
+        writeProperties(context, dm, viewElement);
         
         // Nodes
-        writeNodes(dm, viewElement);
+        writeNodes(context, dm, viewElement);
         
         // Connections
-        writeConnections(dm, viewElement);
+        writeConnections(context, dm, viewElement);
+        
+        addObject(context, dm);
+        
+        XMLExchangeEvents.commitView(event, XMLExchangeEvents.OPERATION_EXPORT, dm);
         
         return viewElement;
     }
@@ -678,37 +1082,42 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     /**
      * Write all diagram nodes
      */
-    void writeNodes(IDiagramModel dm, Element viewElement) {
+    void writeNodes(ExportContext context, IDiagramModel dm, Element viewElement) {
         for(IDiagramModelObject child : dm.getChildren()) {
-            writeNode(child, viewElement);
+            writeNode(context, child, viewElement);
         }
     }
     
     /**
      * Write a diagram node
      */
-    void writeNode(IDiagramModelObject dmo, Element parentElement) {
+    void writeNode(ExportContext context, IDiagramModelObject dmo, Element parentElement) {
         if(dmo instanceof IDiagramModelArchimateObject) {
-            writeArchimateNode((IDiagramModelArchimateObject)dmo, parentElement);
+            writeArchimateNode(context, (IDiagramModelArchimateObject)dmo, parentElement);
         }
         // Group
         else if(dmo instanceof IDiagramModelGroup) {
-            writeGroupNode((IDiagramModelGroup)dmo, parentElement);
+            writeGroupNode(context, (IDiagramModelGroup)dmo, parentElement);
         }
         // Note
         else if(dmo instanceof IDiagramModelNote) {
-            writeNoteNode((IDiagramModelNote)dmo, parentElement);
+            writeNoteNode(context, (IDiagramModelNote)dmo, parentElement);
         }
         // View Reference type
         else if(dmo instanceof IDiagramModelReference) {
-            writeViewReferenceNode((IDiagramModelReference)dmo, parentElement);
+            writeViewReferenceNode(context, (IDiagramModelReference)dmo, parentElement);
+        }
+        else {
+            return;
         }
+        
+        addObject(context, dmo);
     }
     
     /**
      * Write an ArchiMate node
      */
-    Element writeArchimateNode(IDiagramModelArchimateObject dmo, Element parentElement) {
+    Element writeArchimateNode(ExportContext context, IDiagramModelArchimateObject dmo, Element parentElement) {
         Element nodeElement = new Element(ELEMENT_NODE, ARCHIMATE3_NAMESPACE);
         parentElement.addContent(nodeElement);
         
@@ -723,14 +1132,14 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         nodeElement.setAttribute(ATTRIBUTE_TYPE, ATTRIBUTE_ELEMENT_TYPE, XSI_NAMESPACE);
         
         // Bounds
-        writeAbsoluteBounds(dmo, nodeElement);
+        writeAbsoluteBounds(context, dmo, nodeElement);
         
         // Style
         writeNodeStyle(dmo, nodeElement);
 
         // Children
         for(IDiagramModelObject child : dmo.getChildren()) {
-            writeNode(child, nodeElement);
+            writeNode(context, child, nodeElement);
         }
         
         return nodeElement;
@@ -739,7 +1148,7 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     /**
      * Write a Group node
      */
-    Element writeGroupNode(IDiagramModelGroup group, Element parentElement) {
+    Element writeGroupNode(ExportContext context, IDiagramModelGroup group, Element parentElement) {
         Element nodeElement = new Element(ELEMENT_NODE, ARCHIMATE3_NAMESPACE);
         parentElement.addContent(nodeElement);
         
@@ -747,7 +1156,7 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         nodeElement.setAttribute(ATTRIBUTE_IDENTIFIER, createID(group));
 
         // Bounds
-        writeAbsoluteBounds(group, nodeElement);
+        writeAbsoluteBounds(context, group, nodeElement);
         
         // Type
         nodeElement.setAttribute(ATTRIBUTE_TYPE, ATTRIBUTE_CONTAINER_TYPE, XSI_NAMESPACE);
@@ -759,14 +1168,14 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         writeTextToElement(group.getDocumentation(), nodeElement, ELEMENT_DOCUMENTATION, false);
 
         // Properties
-        writeProperties(group, nodeElement);
+        writeProperties(context, group, nodeElement);
         
         // Style
         writeNodeStyle(group, nodeElement);
         
         // Children
         for(IDiagramModelObject child : group.getChildren()) {
-            writeNode(child, nodeElement);
+            writeNode(context, child, nodeElement);
         }
         
         return nodeElement;
@@ -775,7 +1184,7 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     /**
      * Write a Note node
      */
-    Element writeNoteNode(IDiagramModelNote note, Element parentElement) {
+    Element writeNoteNode(ExportContext context, IDiagramModelNote note, Element parentElement) {
         Element nodeElement = new Element(ELEMENT_NODE, ARCHIMATE3_NAMESPACE);
         parentElement.addContent(nodeElement);
         
@@ -786,7 +1195,7 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         nodeElement.setAttribute(ATTRIBUTE_TYPE, ATTRIBUTE_LABEL_TYPE, XSI_NAMESPACE);
 
         // Bounds
-        writeAbsoluteBounds(note, nodeElement);
+        writeAbsoluteBounds(context, note, nodeElement);
         
         // Text
         writeTextToElement(note.getContent(), nodeElement, ELEMENT_LABEL, false);
@@ -800,7 +1209,7 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     /**
      * Write a View Reference node
      */
-    Element writeViewReferenceNode(IDiagramModelReference ref, Element parentElement) {
+    Element writeViewReferenceNode(ExportContext context, IDiagramModelReference ref, Element parentElement) {
         Element nodeElement = new Element(ELEMENT_NODE, ARCHIMATE3_NAMESPACE);
         parentElement.addContent(nodeElement);
         
@@ -811,7 +1220,7 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         nodeElement.setAttribute(ATTRIBUTE_TYPE, ATTRIBUTE_LABEL_TYPE, XSI_NAMESPACE);
 
         // Bounds
-        writeAbsoluteBounds(ref, nodeElement);
+        writeAbsoluteBounds(context, ref, nodeElement);
         
         // Text
         writeTextToElement(ref.getName(), nodeElement, ELEMENT_LABEL, false);
@@ -854,9 +1263,11 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         
         RGB rgb = ColorFactory.convertStringToRGB(dmo.getFillColor());
         if(rgb == null) {
-            Color color = ColorFactory.getDefaultFillColor(dmo);
-            if(color != null) {
-                rgb = color.getRGB();
+            synchronized(XMLExchangeUtils.FACTORY_LOCK) {
+                Color color = ColorFactory.getDefaultFillColor(dmo);
+                if(color != null) {
+                    rgb = color.getRGB();
+                }
             }
         }
         
@@ -872,21 +1283,20 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     // ========================================= Connections ======================================
     
     /**
-     * Write all connections
+     * Write all connections in the order that they were found in the walk of the nodes for the diagram's geometry
      */
-    void writeConnections(IDiagramModel dm, Element parentElement) {
-        for(Iterator<EObject> iter = dm.eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
+    void writeConnections(ExportContext context, IDiagramModel dm, Element parentElement) {
+        for(IDiagramModelConnection connection : context.currentDiagramGeometry.getConnections()) {
             // ArchiMate connection
-            if(eObject instanceof IDiagramModelArchimateConnection) {
+            if(connection instanceof IDiagramModelArchimateConnection) {
                 // If it's nested don't write a connection
-                if(!isNestedConnection((IDiagramModelArchimateConnection)eObject)) {
-                    writeConnection((IDiagramModelConnection)eObject, parentElement);
+                if(!isNestedConnection((IDiagramModelArchimateConnection)connection)) {
+                    writeConnection(context, connection, parentElement);
                 }
             }
             // Other connection
-            else if(eObject instanceof IDiagramModelConnection) {
-                writeConnection((IDiagramModelConnection)eObject, parentElement);
+            else {
+                writeConnection(context, connection, parentElement);
             }
         }
     }
@@ -898,7 +1308,8 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         if(connection.getSource() instanceof IDiagramModelArchimateObject && connection.getTarget() instanceof IDiagramModelArchimateObject) {
             IDiagramModelArchimateObject src = (IDiagramModelArchimateObject)connection.getSource();
             IDiagramModelArchimateObject tgt = (IDiagramModelArchimateObject)connection.getTarget();
-            return src.getChildren().contains(tgt) || tgt.getChildren().contains(src);
+            // A child's container is its parent, so there's no need to search the parent's children
+            return tgt.eContainer() == src || src.eContainer() == tgt;
         }
         return false;
     }
@@ -906,7 +1317,7 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     /**
      * Write a connection
      */
-    Element writeConnection(IDiagramModelConnection connection, Element parentElement) {
+    Element writeConnection(ExportContext context, IDiagramModelConnection connection, Element parentElement) {
         Element connectionElement = new Element(ELEMENT_CONNECTION, ARCHIMATE3_NAMESPACE);
         parentElement.addContent(connectionElement);
         
@@ -934,7 +1345,9 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         writeConnectionStyle(connection, connectionElement);
 
         // Bendpoints
-        writeConnectionBendpoints(connection, connectionElement);
+        writeConnectionBendpoints(context, connection, connectionElement);
+        
+        addObject(context, connection);
         
         return connectionElement;
     }
@@ -942,23 +1355,25 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     /**
      * Write connection bendpoints
      */
-    void writeConnectionBendpoints(IDiagramModelConnection connection, Element connectionElement) {
+    void writeConnectionBendpoints(ExportContext context, IDiagramModelConnection connection, Element connectionElement) {
         // TODO: Doesn't work for connection->connection
         if(connection.getSource() instanceof IDiagramModelConnection || connection.getTarget() instanceof IDiagramModelConnection) {
             return;
         }
         
-        List<Point> points = XMLExchangeUtils.getActualBendpointPositions(connection);
+        int index = context.currentDiagramGeometry.getConnectionIndex(connection);
         
-        for(Point pt : points) {
+        for(int i = 0; i < context.currentDiagramGeometry.getBendpointCount(index); i++) {
             Element bendpointElement = new Element(ELEMENT_BENDPOINT, ARCHIMATE3_NAMESPACE);
             connectionElement.addContent(bendpointElement);
-        
-            pt.x -= fCurrentDiagramNegativeOffset.x; // compensate for negative space
-            pt.y -= fCurrentDiagramNegativeOffset.y; // compensate for negative space
             
-            bendpointElement.setAttribute(ATTRIBUTE_X, Integer.toString(pt.x));
-            bendpointElement.setAttribute(ATTRIBUTE_Y, Integer.toString(pt.y));
+            int x = context.currentDiagramGeometry.getBendpointX(index, i) - context.currentDiagramGeometry.getOffsetX(); // compensate for negative space
+            int y = context.currentDiagramGeometry.getBendpointY(index, i) - context.currentDiagramGeometry.getOffsetY(); // compensate for negative space
+            
+            bendpointElement.setAttribute(ATTRIBUTE_X, Integer.toString(x));
+            bendpointElement.setAttribute(ATTRIBUTE_Y, Integer.toString(y));
+            
+            context.stats.addObject(IArchimatePackage.eINSTANCE.getDiagramModelBendpoint().getName());
         }
     }
     
@@ -994,9 +1409,11 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         
         RGB rgb = ColorFactory.convertStringToRGB(lineObject.getLineColor());
         if(rgb == null) {
-            Color color = ColorFactory.getDefaultLineColor(lineObject);
-            if(color != null) {
-                rgb = color.getRGB();
+            synchronized(XMLExchangeUtils.FACTORY_LOCK) {
+                Color color = ColorFactory.getDefaultLineColor(lineObject);
+                if(color != null) {
+                    rgb = color.getRGB();
+                }
             }
         }
         
@@ -1023,7 +1440,9 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
                 fontData = new FontData(fontString);
             }
             else {
-                fontData = FontFactory.getDefaultUserViewFontData();
+                synchronized(XMLExchangeUtils.FACTORY_LOCK) {
+                    fontData = FontFactory.getDefaultUserViewFontData();
+                }
             }
             
             fontElement.setAttribute(ATTRIBUTE_FONTNAME, fontData.getName());
@@ -1085,16 +1504,16 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
     /**
      * Write absolute bounds of a diagram object
      */
-    void writeAbsoluteBounds(IDiagramModelObject dmo, Element element) {
-        IBounds bounds = XMLExchangeUtils.getAbsoluteBounds(dmo);
+    void writeAbsoluteBounds(ExportContext context, IDiagramModelObject dmo, Element element) {
+        int index = context.currentDiagramGeometry.getNodeIndex(dmo);
         
-        int x = bounds.getX() - fCurrentDiagramNegativeOffset.x; // compensate for negative space
-        int y = bounds.getY() - fCurrentDiagramNegativeOffset.y; // compensate for negative space
+        int x = context.currentDiagramGeometry.getX(index) - context.currentDiagramGeometry.getOffsetX(); // compensate for negative space
+        int y = context.currentDiagramGeometry.getY(index) - context.currentDiagramGeometry.getOffsetY(); // compensate for negative space
         
         element.setAttribute(ATTRIBUTE_X, Integer.toString(x));
         element.setAttribute(ATTRIBUTE_Y, Integer.toString(y));
-        element.setAttribute(ATTRIBUTE_WIDTH, Integer.toString(bounds.getWidth()));
-        element.setAttribute(ATTRIBUTE_HEIGHT, Integer.toString(bounds.getHeight()));
+        element.setAttribute(ATTRIBUTE_WIDTH, Integer.toString(context.currentDiagramGeometry.getWidth(index)));
+        element.setAttribute(ATTRIBUTE_HEIGHT, Integer.toString(context.currentDiagramGeometry.getHeight(index)));
     }
 
     /**
@@ -1139,6 +1558,13 @@ public class XMLModelExporter implements IXMLExchangeGlobals {
         return element != null && (element.hasAttributes() || !element.getChildren().isEmpty());
     }
 
+    /**
+     * Count an object that has been written
+     */
+    private void addObject(ExportContext context, EObject eObject) {
+        context.stats.addObject(eObject.eClass().getName());
+    }
+    
     /**
      * Create a uniform id
      */
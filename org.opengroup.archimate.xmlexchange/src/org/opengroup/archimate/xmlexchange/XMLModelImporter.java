@@ -6,15 +6,32 @@
 package org.opengroup.archimate.xmlexchange;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.LongSupplier;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.swt.SWT;
@@ -24,6 +41,11 @@ import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.jdom2.Namespace;
+import org.jdom2.input.JDOMParseException;
+import org.opengroup.archimate.xmlexchange.XMLExchangeEvents.IEvent;
+import org.opengroup.archimate.xmlexchange.XMLExchangeEvents.Section;
+import org.opengroup.archimate.xmlexchange.XMLExchangeEvents.Type;
+import org.xml.sax.SAXException;
 
 import com.archimatetool.editor.diagram.ArchimateDiagramModelFactory;
 import com.archimatetool.editor.diagram.ICreationFactory;
@@ -41,9 +63,7 @@ import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IArchimateRelationship;
-import com.archimatetool.model.IBounds;
 import com.archimatetool.model.IConnectable;
-import com.archimatetool.model.IDiagramModel;
 import com.archimatetool.model.IDiagramModelArchimateComponent;
 import com.archimatetool.model.IDiagramModelArchimateConnection;
 import com.archimatetool.model.IDiagramModelArchimateObject;
@@ -66,314 +86,895 @@ import com.archimatetool.model.IProperty;
 /**
  * XML Model Importer
  * 
+ * The state of each import is held in its own ImportContext, so one instance can import on many threads at the same time.
+ * Set the options before the instance is shared between threads.
+ * 
  * @author Phillip Beauvoir
  */
 public class XMLModelImporter implements IXMLExchangeGlobals {
     
-    private IArchimateModel fModel;
+    /**
+     * Whether to read the file as a stream of events rather than as a JDOM Document
+     */
+    private boolean fStreaming;
+    
+    /**
+     * Whether to validate the file against the Schema while it is read
+     */
+    private boolean fValidating;
     
-    // Properties
-    private Map<String, String> fPropertyDefinitionsList;
+    /**
+     * Whether to build views in parallel
+     */
+    private boolean fParallel;
     
-    // Concept lookup
-    private Map<String, IArchimateConcept> fConceptsLookup;
+    /**
+     * Timings and counters of the last import to finish
+     */
+    private volatile XMLExchangeStats fStats;
     
-    // Connection/Node lookup
-    private Map<String, IConnectable> fConnectionsNodesLookup;
+    /**
+     * The state of one import
+     */
+    private static class ImportContext {
+        IArchimateModel model;
+        
+        // Properties
+        Map<String, String> propertyDefinitionsList;
+        
+        // Concept lookup
+        Map<String, IArchimateConcept> conceptsLookup = new HashMap<>();
+        
+        // Relationship lookup by source concept and then target concept, in document order
+        Map<IArchimateConcept, Map<IArchimateConcept, List<IArchimateRelationship>>> relationsLookup = new HashMap<>();
+        
+        // Properties read before their Property Definitions (streaming mode)
+        // Synchronized as views may be built in parallel
+        List<PropertyInfo> pendingPropertiesList = Collections.synchronizedList(new ArrayList<>());
+        
+        // View references read before their views may have been created
+        // Synchronized as views may be built in parallel
+        List<ViewReferenceInfo> pendingViewReferencesList = Collections.synchronizedList(new ArrayList<>());
+        
+        // Default font data as a string, got on the calling thread
+        String defaultFontData;
+        
+        // Timings and counters
+        XMLExchangeStats stats = new XMLExchangeStats();
+        
+        // Progress and cancellation
+        IProgressMonitor monitor = new NullProgressMonitor();
+        
+        // The bytes of the file read so far, if progress is reported by bytes
+        CountingInputStream progressIn;
+        
+        // Kilobytes of the file reported to the monitor so far
+        int progressWorked;
+        
+        ImportContext() {
+            // Create a new Archimate Model and set its defaults
+            model = IArchimateFactory.eINSTANCE.createArchimateModel();
+            model.setDefaults();
+        }
+    }
     
+    private static class PropertyInfo {
+        IProperties properties;
+        String idref;
+        String value;
+    }
     
+    private static class ViewReferenceInfo {
+        IDiagramModelReference reference;
+        String viewID;
+    }
+    
+    /**
+     * Lookups for the view that is being built
+     */
+    private static class ViewInfo {
+        // Connection/Node lookup
+        Map<String, IConnectable> connectionsNodesLookup = new HashMap<>();
+        
+        // Absolute bounds of nodes as declared in the XML file as int[] { x, y, width, height }
+        Map<IConnectable, int[]> absoluteBoundsLookup = new HashMap<>();
+    }
+    
+    private static class RelationInfo {
+        IArchimateRelationship relation;
+        String sourceID;
+        String targetID;
+    }
+    
+    /**
+     * Set whether to read the file as a stream of events rather than loading it all into a JDOM Document first.
+     * Only one element, relationship or view at a time is held in memory as XML, so peak memory is proportional to the model.
+     * The resulting model is the same in either mode.
+     * @param set
+     */
+    public void setStreaming(boolean set) {
+        fStreaming = set;
+    }
+    
+    /**
+     * Set whether to validate the file against the XSD Schema in the same parse that reads it.
+     * This is the same as calling XMLValidator.validateXML() first but the file is only read once.
+     * A validation error is thrown as a JDOMParseException.
+     * @param set
+     */
+    public void setValidating(boolean set) {
+        fValidating = set;
+    }
+    
+    /**
+     * Set whether to build the views in parallel on the common ForkJoinPool.
+     * Each view's diagram is built apart from the model and then added to the Views folder in document order,
+     * so the resulting model is the same as when views are built one after the other.
+     * @param set
+     */
+    public void setParallel(boolean set) {
+        fParallel = set;
+    }
+    
+    /**
+     * @return The timings and counters of the last import to finish on any thread, or null if nothing has been imported
+     */
+    public XMLExchangeStats getStats() {
+        return fStats;
+    }
+    
+    /**
+     * Import a plain, gzip or zip exchange file
+     */
     public IArchimateModel createArchiMateModel(File instanceFile) throws IOException, JDOMException, XMLModelParserException {
-        // Create a new Archimate Model and set its defaults
-        fModel = IArchimateFactory.eINSTANCE.createArchimateModel();
-        fModel.setDefaults();
+        ImportContext context = new ImportContext();
+        context.stats.addBytesRead(instanceFile.length());
         
-        // Read file without Schema validation
-        Document doc = JDOMUtils.readXMLFile(instanceFile);
+        IEvent event = XMLExchangeEvents.begin(Type.PARSE);
         
-        Element rootElement = doc.getRootElement();
+        // Read file without Schema validation. JDOMUtils can only read a plain file.
+        if(!fStreaming && !fValidating && Compression.detect(instanceFile) == Compression.NONE) {
+            long start = System.nanoTime();
+            Document doc = JDOMUtils.readXMLFile(instanceFile);
+            context.stats.addPhaseTime(XMLExchangeStats.PHASE_PARSE, start);
+            XMLExchangeEvents.commitFile(event, XMLExchangeEvents.OPERATION_IMPORT, instanceFile);
+            
+            parseXMLDocument(context, doc.getRootElement());
+        }
+        else {
+            readXML(context, Compression.newInputStream(instanceFile), event, instanceFile.getPath(), instanceFile::length);
+        }
+        
+        return endImport(context);
+    }
+    
+    /**
+     * Import a plain, gzip or zip exchange file, reporting progress to monitor by the bytes of the file read and by section.
+     * The monitor is checked for cancellation between each element, relationship and view. The monitor can be null.
+     * @throws OperationCanceledException if the monitor is cancelled
+     */
+    public IArchimateModel createArchiMateModel(File instanceFile, IProgressMonitor monitor) throws IOException, JDOMException, XMLModelParserException {
+        ImportContext context = new ImportContext();
+        context.monitor = SubMonitor.convert(monitor, NLS.bind(Messages.XMLModelImporter_15, instanceFile.getName()),
+                (int)Math.min(Integer.MAX_VALUE, instanceFile.length() / 1024));
+        context.stats.addBytesRead(instanceFile.length());
+        
+        IEvent event = XMLExchangeEvents.begin(Type.PARSE);
+        
+        // Count the bytes of the file rather than of the decompressed XML
+        InputStream fileIn = new FileInputStream(instanceFile);
+        
+        try {
+            context.progressIn = new CountingInputStream(fileIn);
+            readXML(context, Compression.decompress(context.progressIn), event, instanceFile.getPath(), instanceFile::length);
+        }
+        finally {
+            fileIn.close();
+        }
+        
+        context.monitor.done();
+        
+        return endImport(context);
+    }
+    
+    /**
+     * Import a plain, gzip or zip exchange file from a stream, for example from another process or from memory.
+     * The stream is not closed, but it is read in blocks that can go past the end of the XML, so the stream should hold only the exchange file.
+     */
+    public IArchimateModel createArchiMateModel(InputStream in) throws IOException, JDOMException, XMLModelParserException {
+        ImportContext context = new ImportContext();
+        
+        CountingInputStream countingIn = new CountingInputStream(in);
+        IEvent event = XMLExchangeEvents.begin(Type.PARSE);
+        readXML(context, Compression.decompress(countingIn), event, null, countingIn::getCount);
+        context.stats.addBytesRead(countingIn.getCount());
+        
+        return endImport(context);
+    }
+    
+    /**
+     * Import a plain, gzip or zip exchange file from a channel.
+     * The channel is not closed, but it is read in blocks that can go past the end of the XML, so the channel should hold only the exchange file.
+     */
+    public IArchimateModel createArchiMateModel(ReadableByteChannel channel) throws IOException, JDOMException, XMLModelParserException {
+        return createArchiMateModel(Channels.newInputStream(channel));
+    }
+    
+    /**
+     * @return The new model after recording the sizes of the lookup tables and keeping the stats
+     */
+    private IArchimateModel endImport(ImportContext context) {
+        context.stats.setLookupSize(XMLExchangeStats.LOOKUP_CONCEPTS, context.conceptsLookup.size());
+        context.stats.setLookupSize(XMLExchangeStats.LOOKUP_RELATIONS, context.relationsLookup.size());
+        context.stats.setLookupSize(XMLExchangeStats.LOOKUP_PROPERTY_DEFINITIONS, context.propertyDefinitionsList.size());
+        
+        fStats = context.stats;
         
+        return context.model;
+    }
+    
+    /**
+     * Read and parse the XML in the decompressed stream in, which is closed when done, and commit the parse event
+     * @param path The path of the file, or null for a stream
+     * @param bytesRead The number of bytes read from the file or stream
+     */
+    private void readXML(ImportContext context, InputStream in, IEvent event, String path, LongSupplier bytesRead) throws IOException, JDOMException, XMLModelParserException {
+        if(fStreaming) {
+            // The file is read as it is parsed so the parse event includes the section events
+            parseXMLStream(context, in);
+            XMLExchangeEvents.commitFile(event, XMLExchangeEvents.OPERATION_IMPORT, path, bytesRead);
+        }
+        else {
+            long start = System.nanoTime();
+            Element rootElement = readXMLStream(in);
+            context.stats.addPhaseTime(XMLExchangeStats.PHASE_PARSE, start);
+            XMLExchangeEvents.commitFile(event, XMLExchangeEvents.OPERATION_IMPORT, path, bytesRead);
+            
+            parseXMLDocument(context, rootElement);
+        }
+    }
+    
+    private void parseXMLDocument(ImportContext context, Element rootElement) throws IOException, XMLModelParserException {
         // Parse Property Definitions first
-        parsePropertyDefinitions(rootElement.getChild(ELEMENT_PROPERTYDEFINITIONS, ARCHIMATE3_NAMESPACE));
+        Section section = beginSection(context, XMLExchangeStats.PHASE_PROPERTY_DEFINITIONS);
+        parsePropertyDefinitions(context, rootElement.getChild(ELEMENT_PROPERTYDEFINITIONS, ARCHIMATE3_NAMESPACE));
+        section.end(context.propertyDefinitionsList.size());
         
         // Parse Root Element
-        parseRootElement(rootElement);
-        
-        // New lookup tables
-        fConceptsLookup = new HashMap<>();
-        fConnectionsNodesLookup = new HashMap<>();
+        section = beginSection(context, XMLExchangeStats.PHASE_MODEL);
+        parseRootElement(context, rootElement);
+        section.end();
         
         // Parse ArchiMate Elements
-        parseArchiMateElements(rootElement.getChild(ELEMENT_ELEMENTS, ARCHIMATE3_NAMESPACE));
+        section = beginSection(context, XMLExchangeStats.PHASE_ELEMENTS);
+        parseArchiMateElements(context, rootElement.getChild(ELEMENT_ELEMENTS, ARCHIMATE3_NAMESPACE));
+        section.end();
         
         // Parse ArchiMate Relations
-        parseArchiMateRelations(rootElement.getChild(ELEMENT_RELATIONSHIPS, ARCHIMATE3_NAMESPACE));
+        section = beginSection(context, XMLExchangeStats.PHASE_RELATIONSHIPS);
+        parseArchiMateRelations(context, rootElement.getChild(ELEMENT_RELATIONSHIPS, ARCHIMATE3_NAMESPACE));
+        section.end();
         
         // Parse Views
         Element viewsElement = rootElement.getChild(ELEMENT_VIEWS, ARCHIMATE3_NAMESPACE);
         if(viewsElement != null) {
-            parseViews(viewsElement.getChild(ELEMENT_DIAGRAMS, ARCHIMATE3_NAMESPACE));
+            section = beginSection(context, XMLExchangeStats.PHASE_VIEWS);
+            parseViews(context, viewsElement.getChild(ELEMENT_DIAGRAMS, ARCHIMATE3_NAMESPACE));
+            section.end();
         }
         
         // TODO Parse Organization - not implemented as yet.
-        // parseOrganization(rootElement.getChild(ELEMENT_ORGANIZATION, OPEN_GROUP_NAMESPACE));
+        // parseOrganization(context, rootElement.getChild(ELEMENT_ORGANIZATION, OPEN_GROUP_NAMESPACE));
+    }
+    
+    // ========================================= Streaming ======================================
+    
+    /**
+     * @return A new XMLStreamReader on the input stream, validating the events it reads if set
+     */
+    private XMLStreamReader createXMLStreamReader(InputStream in) throws XMLStreamException, IOException {
+        XMLStreamReader reader = XMLStreamUtils.createXMLStreamReader(in);
+        
+        if(fValidating) {
+            try {
+                reader = new ValidatingStreamReader(reader, XMLValidator.createValidatorHandler());
+            }
+            catch(SAXException ex) {
+                throw new IOException(ex);
+            }
+        }
+        
+        return reader;
+    }
+    
+    /**
+     * Read the decompressed stream, validating it in the same parse if set, and return its root element
+     */
+    private Element readXMLStream(InputStream in) throws IOException, JDOMException {
+        XMLStreamReader reader = null;
+        
+        try {
+            reader = createXMLStreamReader(in);
+            
+            if(!XMLStreamUtils.nextRootElement(reader)) {
+                throw new JDOMException(Messages.XMLModelParserException_0);
+            }
+            
+            Element rootElement = XMLStreamUtils.buildElement(reader);
+            
+            // Read to the end so that the whole document is validated
+            XMLStreamUtils.readToEnd(reader);
+            
+            return rootElement;
+        }
+        catch(XMLStreamException ex) {
+            throw createJDOMException(ex);
+        }
+        finally {
+            close(reader, in);
+        }
+    }
+    
+    /**
+     * Read the stream with a StAX reader, building a small JDOM Element for each element, relationship and view
+     * in turn and handing it to the same parse methods as the Document mode.
+     * Property Definitions come after the elements and relationships in the file, so properties are held until they have been read.
+     */
+    private void parseXMLStream(ImportContext context, InputStream in) throws IOException, JDOMException, XMLModelParserException {
+        XMLStreamReader reader = null;
         
-        return fModel;
+        try {
+            reader = createXMLStreamReader(in);
+            
+            if(!XMLStreamUtils.nextRootElement(reader)) {
+                throw new JDOMException(Messages.XMLModelParserException_0);
+            }
+            
+            // Root Element without its content, the name, documentation and properties are added to it as they are read
+            Element rootElement = XMLStreamUtils.createElement(reader);
+            
+            boolean hasElements = false;
+            
+            // Each section includes the time to read its part of the file
+            while(XMLStreamUtils.nextChildElement(reader)) {
+                // ArchiMate Elements
+                if(isArchimateElement(reader, ELEMENT_ELEMENTS)) {
+                    Section section = beginSection(context, XMLExchangeStats.PHASE_ELEMENTS);
+                    parseArchiMateElements(context, reader);
+                    hasElements = true;
+                    section.end();
+                }
+                
+                // ArchiMate Relations
+                else if(isArchimateElement(reader, ELEMENT_RELATIONSHIPS)) {
+                    checkHasElements(hasElements);
+                    Section section = beginSection(context, XMLExchangeStats.PHASE_RELATIONSHIPS);
+                    parseArchiMateRelations(context, reader);
+                    section.end();
+                }
+                
+                // Property Definitions
+                else if(isArchimateElement(reader, ELEMENT_PROPERTYDEFINITIONS)) {
+                    Section section = beginSection(context, XMLExchangeStats.PHASE_PROPERTY_DEFINITIONS);
+                    parsePropertyDefinitions(context, XMLStreamUtils.buildElement(reader));
+                    addPendingProperties(context);
+                    section.end(context.propertyDefinitionsList.size());
+                }
+                
+                // Views
+                else if(isArchimateElement(reader, ELEMENT_VIEWS)) {
+                    checkHasElements(hasElements);
+                    Section section = beginSection(context, XMLExchangeStats.PHASE_VIEWS);
+                    parseViews(context, reader);
+                    section.end();
+                }
+                
+                // Name, Documentation and Properties of the Root Element
+                else if(isArchimateElement(reader, ELEMENT_NAME) || isArchimateElement(reader, ELEMENT_DOCUMENTATION)
+                        || isArchimateElement(reader, ELEMENT_PROPERTIES)) {
+                    rootElement.addContent(XMLStreamUtils.buildElement(reader));
+                }
+                
+                // Metadata and Organizations are not used
+                else {
+                    XMLStreamUtils.skipElement(reader);
+                }
+            }
+            
+            // Read to the end so that the whole document is validated
+            long start = System.nanoTime();
+            XMLStreamUtils.readToEnd(reader);
+            context.stats.addPhaseTime(XMLExchangeStats.PHASE_PARSE, start);
+            
+            checkHasElements(hasElements);
+            
+            // No Property Definitions in the file
+            if(context.propertyDefinitionsList == null) {
+                Section section = beginSection(context, XMLExchangeStats.PHASE_PROPERTY_DEFINITIONS);
+                parsePropertyDefinitions(context, null);
+                addPendingProperties(context);
+                section.end(0);
+            }
+            
+            // Parse Root Element
+            Section section = beginSection(context, XMLExchangeStats.PHASE_MODEL);
+            parseRootElement(context, rootElement);
+            section.end();
+        }
+        catch(XMLStreamException ex) {
+            throw createJDOMException(ex);
+        }
+        finally {
+            close(reader, in);
+        }
+    }
+    
+    /**
+     * @return A JDOMParseException for a validation error, else a JDOMException, as the Document mode would throw
+     */
+    private JDOMException createJDOMException(XMLStreamException ex) {
+        Throwable cause = ex.getNestedException();
+        
+        if(cause instanceof SAXException) {
+            return new JDOMParseException(cause.getMessage(), cause);
+        }
+        
+        return new JDOMException(ex.getMessage(), ex);
+    }
+    
+    private void close(XMLStreamReader reader, InputStream in) throws IOException {
+        if(reader != null) {
+            try {
+                reader.close();
+            }
+            catch(XMLStreamException ex) {
+                ex.printStackTrace();
+            }
+        }
+        
+        in.close();
+    }
+    
+    private void parseArchiMateElements(ImportContext context, XMLStreamReader reader) throws XMLStreamException, XMLModelParserException {
+        while(XMLStreamUtils.nextChildElement(reader)) {
+            if(isArchimateElement(reader, ELEMENT_ELEMENT)) {
+                updateProgress(context);
+                parseArchiMateElement(context, XMLStreamUtils.buildElement(reader));
+            }
+            else {
+                XMLStreamUtils.skipElement(reader);
+            }
+        }
+    }
+    
+    private void parseArchiMateRelations(ImportContext context, XMLStreamReader reader) throws XMLStreamException, IOException {
+        List<RelationInfo> relationInfoList = new ArrayList<RelationInfo>();
+        
+        while(XMLStreamUtils.nextChildElement(reader)) {
+            if(isArchimateElement(reader, ELEMENT_RELATIONSHIP)) {
+                updateProgress(context);
+                parseArchiMateRelation(context, XMLStreamUtils.buildElement(reader), relationInfoList);
+            }
+            else {
+                XMLStreamUtils.skipElement(reader);
+            }
+        }
+        
+        // 2nd pass, add source and target concepts
+        addRelationsSourceAndTarget(context, relationInfoList);
+    }
+    
+    private void parseViews(ImportContext context, XMLStreamReader reader) throws XMLStreamException, XMLModelParserException {
+        Map<String, IArchimateDiagramModel> diagramModels = new Hashtable<String, IArchimateDiagramModel>();
+        List<ForkJoinTask<IArchimateDiagramModel>> viewTasks = new ArrayList<>();
+        
+        while(XMLStreamUtils.nextChildElement(reader)) {
+            if(isArchimateElement(reader, ELEMENT_DIAGRAMS)) {
+                while(XMLStreamUtils.nextChildElement(reader)) {
+                    if(isArchimateElement(reader, ELEMENT_VIEW)) {
+                        updateProgress(context);
+                        
+                        // Build the view while the next one is read
+                        if(fParallel) {
+                            viewTasks.add(submitView(context, XMLStreamUtils.buildElement(reader)));
+                        }
+                        else {
+                            parseView(context, XMLStreamUtils.buildElement(reader), diagramModels);
+                        }
+                    }
+                    else {
+                        XMLStreamUtils.skipElement(reader);
+                    }
+                }
+            }
+            // Viewpoints are not used
+            else {
+                XMLStreamUtils.skipElement(reader);
+            }
+        }
+        
+        // Add the views built in parallel
+        addViews(context, viewTasks, diagramModels);
+        
+        // Now add any pending view diagram references
+        addViewReferences(context, diagramModels);
+    }
+    
+    /**
+     * @return A new section of the import that has begun
+     */
+    private Section beginSection(ImportContext context, String phase) {
+        String name = getSectionName(phase);
+        if(name != null) {
+            context.monitor.subTask(name);
+        }
+        
+        return XMLExchangeEvents.beginSection(context.stats, XMLExchangeEvents.OPERATION_IMPORT, phase);
+    }
+    
+    /**
+     * @return The name of a section to show as progress, or null if it is not shown
+     */
+    private String getSectionName(String phase) {
+        switch(phase) {
+            case XMLExchangeStats.PHASE_ELEMENTS:
+                return Messages.XMLModelImporter_16;
+            
+            case XMLExchangeStats.PHASE_RELATIONSHIPS:
+                return Messages.XMLModelImporter_17;
+            
+            case XMLExchangeStats.PHASE_VIEWS:
+                return Messages.XMLModelImporter_18;
+            
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Report the bytes of the file read since the last call and throw an OperationCanceledException if the monitor is cancelled.
+     * This is called on the importing thread between each element, relationship and view.
+     */
+    private void updateProgress(ImportContext context) {
+        if(context.monitor.isCanceled()) {
+            throw new OperationCanceledException();
+        }
+        
+        if(context.progressIn != null) {
+            int worked = (int)Math.min(Integer.MAX_VALUE, context.progressIn.getCount() / 1024);
+            if(worked > context.progressWorked) {
+                context.monitor.worked(worked - context.progressWorked);
+                context.progressWorked = worked;
+            }
+        }
+    }
+    
+    private boolean isArchimateElement(XMLStreamReader reader, String name) {
+        return XMLStreamUtils.isElement(reader, name, ARCHIMATE3_NAMESPACE);
+    }
+    
+    private void checkHasElements(boolean hasElements) throws XMLModelParserException {
+        if(!hasElements) {
+            throw new XMLModelParserException(Messages.XMLModelImporter_0);
+        }
     }
     
     // ========================================= Property Definitions ======================================
 
-    private void parsePropertyDefinitions(Element propertydefsElement) {
+    private void parsePropertyDefinitions(ImportContext context, Element propertydefsElement) {
+        context.propertyDefinitionsList = new HashMap<String, String>();
+        
         if(propertydefsElement == null) {
             return;
         }
 
-        fPropertyDefinitionsList = null;
-        fPropertyDefinitionsList = new HashMap<String, String>();
-        
         // Archi only supports String types so we can ignore the data type
         for(Element propertyDefElement : propertydefsElement.getChildren(ELEMENT_PROPERTYDEFINITION, ARCHIMATE3_NAMESPACE)) {
             String identifier = propertyDefElement.getAttributeValue(ATTRIBUTE_IDENTIFIER);
             String name = getChildElementText(propertyDefElement, ELEMENT_NAME, false);
             if(identifier != null && name != null) {
-                fPropertyDefinitionsList.put(identifier, name);
+                context.propertyDefinitionsList.put(identifier, name);
             }
         }
     }
     
     // ========================================= Root Element ======================================
 
-    private void parseRootElement(Element rootElement) {
+    private void parseRootElement(ImportContext context, Element rootElement) {
         // Identifier
         String id = rootElement.getAttributeValue(ATTRIBUTE_IDENTIFIER);
         if(id != null) {
-            fModel.setId(id);
+            context.model.setId(id);
         }
         
         // Name
         String name = getChildElementText(rootElement, ELEMENT_NAME, true);
         if(name != null) {
-            fModel.setName(name);
+            context.model.setName(name);
         }
         
         // Documentation
         String documentation = getChildElementText(rootElement, ELEMENT_DOCUMENTATION, false);
         if(documentation != null) {
-            fModel.setPurpose(documentation);
+            context.model.setPurpose(documentation);
         }
         
         // Properties
-        addProperties(fModel, rootElement);
+        addProperties(context, context.model, rootElement);
     }
     
     // ========================================= Properties ======================================
 
-    private void addProperties(IProperties propertiesModel, Element parentElement) {
+    private void addProperties(ImportContext context, IProperties propertiesModel, Element parentElement) {
         Element propertiesElement = parentElement.getChild(ELEMENT_PROPERTIES, ARCHIMATE3_NAMESPACE);
         if(propertiesElement != null) {
             for(Element propertyElement : propertiesElement.getChildren(ELEMENT_PROPERTY, ARCHIMATE3_NAMESPACE)) {
                 String idref = propertyElement.getAttributeValue(ATTRIBUTE_PROPERTY_IDENTIFIERREF);
                 
                 if(idref != null) {
-                    String propertyName = fPropertyDefinitionsList.get(idref);
-                    if(propertyName != null) {
-                        String propertyValue = getChildElementText(propertyElement, ELEMENT_VALUE, true);
-                        IProperty property = IArchimateFactory.eINSTANCE.createProperty();
-                        property.setKey(propertyName);
-                        property.setValue(propertyValue);
-                        propertiesModel.getProperties().add(property);
+                    String propertyValue = getChildElementText(propertyElement, ELEMENT_VALUE, true);
+                    
+                    // Property Definitions not read yet so add it later
+                    if(context.propertyDefinitionsList == null) {
+                        PropertyInfo pInfo = new PropertyInfo();
+                        pInfo.properties = propertiesModel;
+                        pInfo.idref = idref;
+                        pInfo.value = propertyValue;
+                        context.pendingPropertiesList.add(pInfo);
+                    }
+                    else {
+                        addProperty(context, propertiesModel, idref, propertyValue);
                     }
                 }
             }
         }
     }
     
+    private void addProperty(ImportContext context, IProperties propertiesModel, String idref, String propertyValue) {
+        String propertyName = context.propertyDefinitionsList.get(idref);
+        if(propertyName != null) {
+            IProperty property = IArchimateFactory.eINSTANCE.createProperty();
+            property.setKey(propertyName);
+            property.setValue(propertyValue);
+            propertiesModel.getProperties().add(property);
+            addObject(context, property);
+        }
+    }
+    
+    /**
+     * Add any properties that were read before the Property Definitions
+     */
+    private void addPendingProperties(ImportContext context) {
+        context.stats.setLookupSize(XMLExchangeStats.LOOKUP_PENDING_PROPERTIES, context.pendingPropertiesList.size());
+        
+        for(PropertyInfo pInfo : context.pendingPropertiesList) {
+            addProperty(context, pInfo.properties, pInfo.idref, pInfo.value);
+        }
+        
+        context.pendingPropertiesList.clear();
+    }
+    
     // ========================================= Elements ======================================
 
-    private void parseArchiMateElements(Element elementsElement) throws XMLModelParserException {
+    private void parseArchiMateElements(ImportContext context, Element elementsElement) throws XMLModelParserException {
         if(elementsElement == null) {
             throw new XMLModelParserException(Messages.XMLModelImporter_0);
         }
         
         for(Element childElement : elementsElement.getChildren(ELEMENT_ELEMENT, ARCHIMATE3_NAMESPACE)) {
-            String type = childElement.getAttributeValue(ATTRIBUTE_TYPE, XSI_NAMESPACE);
-            // If type is bogus ignore
-            if(type == null) {
-                continue;
-            }
-            
-            IArchimateElement element = (IArchimateElement)XMLTypeMapper.createArchimateConcept(type);
-            // If element is null throw exception
-            if(element == null) {
-                throw new XMLModelParserException(NLS.bind(Messages.XMLModelImporter_1, type));
-            }
-                    
-            // Identifier first
-            String id = childElement.getAttributeValue(ATTRIBUTE_IDENTIFIER);
-            if(id != null) {
-                element.setId(id);
-            }
+            updateProgress(context);
+            parseArchiMateElement(context, childElement);
+        }
+    }
 
-            // Add to model
-            fModel.getDefaultFolderForObject(element).getElements().add(element);
-            
-            String name = getChildElementText(childElement, ELEMENT_NAME, true);
-            if(name != null) {
-                element.setName(name);
-            }
-            
-            String documentation = getChildElementText(childElement, ELEMENT_DOCUMENTATION, false);
-            if(documentation != null) {
-                element.setDocumentation(documentation);
-            }
-            
-            // Properties
-            addProperties(element, childElement);
-            
-            // Add to lookup
-            fConceptsLookup.put(element.getId(), element);
+    private void parseArchiMateElement(ImportContext context, Element childElement) throws XMLModelParserException {
+        String type = childElement.getAttributeValue(ATTRIBUTE_TYPE, XSI_NAMESPACE);
+        // If type is bogus ignore
+        if(type == null) {
+            return;
+        }
+        
+        IArchimateElement element = (IArchimateElement)XMLTypeMapper.createArchimateConcept(type);
+        // If element is null throw exception
+        if(element == null) {
+            throw new XMLModelParserException(NLS.bind(Messages.XMLModelImporter_1, type));
+        }
+        
+        // Identifier first
+        String id = childElement.getAttributeValue(ATTRIBUTE_IDENTIFIER);
+        if(id != null) {
+            element.setId(id);
         }
+        
+        // Add to model
+        context.model.getDefaultFolderForObject(element).getElements().add(element);
+        
+        String name = getChildElementText(childElement, ELEMENT_NAME, true);
+        if(name != null) {
+            element.setName(name);
+        }
+        
+        String documentation = getChildElementText(childElement, ELEMENT_DOCUMENTATION, false);
+        if(documentation != null) {
+            element.setDocumentation(documentation);
+        }
+        
+        // Properties
+        addProperties(context, element, childElement);
+        
+        // Add to lookup
+        context.conceptsLookup.put(element.getId(), element);
+        
+        addObject(context, element);
     }
     
     // ========================================= Relations ======================================
 
-    private void parseArchiMateRelations(Element relationsElement) throws IOException {
+    private void parseArchiMateRelations(ImportContext context, Element relationsElement) throws IOException {
         if(relationsElement == null) { // Optional
             return;
         }
         
-        class RelationInfo {
-            IArchimateRelationship relation;
-            String sourceID;
-            String targetID;
-        }
-        
         List<RelationInfo> relationInfoList = new ArrayList<RelationInfo>();
-        IFolder relationshipFolder = fModel.getFolder(FolderType.RELATIONS);
         
         for(Element childElement : relationsElement.getChildren(ELEMENT_RELATIONSHIP, ARCHIMATE3_NAMESPACE)) {
-            String type = childElement.getAttributeValue(ATTRIBUTE_TYPE, XSI_NAMESPACE);
-            // If type is bogus ignore
-            if(type == null) {
-                continue;
-            }
-            
-            IArchimateRelationship relation = (IArchimateRelationship)XMLTypeMapper.createArchimateConcept(type);
-            // If relation is null throw exception
-            if(relation == null) {
-                throw new IOException(NLS.bind(Messages.XMLModelImporter_2, type));
-            }
-            
-            // Identifier first
-            String id = childElement.getAttributeValue(ATTRIBUTE_IDENTIFIER);
-            if(id != null) {
-                relation.setId(id);
-            }
+            updateProgress(context);
+            parseArchiMateRelation(context, childElement, relationInfoList);
+        }
 
-            // Add to model
-            relationshipFolder.getElements().add(relation);
-            
-            // Name
-            String name = getChildElementText(childElement, ELEMENT_NAME, true);
-            if(name != null) {
-                relation.setName(name);
-            }
-            
-            // Documentation
-            String documentation = getChildElementText(childElement, ELEMENT_DOCUMENTATION, false);
-            if(documentation != null) {
-                relation.setDocumentation(documentation);
-            }
-            
-            // Properties
-            addProperties(relation, childElement);
-            
-            // Source and target
-            String sourceID = childElement.getAttributeValue(ATTRIBUTE_SOURCE);
-            String targetID = childElement.getAttributeValue(ATTRIBUTE_TARGET);
-            
-            // Access type
-            if(relation instanceof IAccessRelationship) {
-                String accessType = childElement.getAttributeValue(ATTRIBUTE_ACCESS_TYPE);
-                if(accessType != null) {
-                    IAccessRelationship accessRelationship = (IAccessRelationship)relation;
+        // 2nd pass, add source and target concepts
+        addRelationsSourceAndTarget(context, relationInfoList);
+    }
+    
+    private void parseArchiMateRelation(ImportContext context, Element childElement, List<RelationInfo> relationInfoList) throws IOException {
+        String type = childElement.getAttributeValue(ATTRIBUTE_TYPE, XSI_NAMESPACE);
+        // If type is bogus ignore
+        if(type == null) {
+            return;
+        }
+        
+        IArchimateRelationship relation = (IArchimateRelationship)XMLTypeMapper.createArchimateConcept(type);
+        // If relation is null throw exception
+        if(relation == null) {
+            throw new IOException(NLS.bind(Messages.XMLModelImporter_2, type));
+        }
+        
+        // Identifier first
+        String id = childElement.getAttributeValue(ATTRIBUTE_IDENTIFIER);
+        if(id != null) {
+            relation.setId(id);
+        }
+        
+        // Add to model
+        context.model.getFolder(FolderType.RELATIONS).getElements().add(relation);
+        
+        // Name
+        String name = getChildElementText(childElement, ELEMENT_NAME, true);
+        if(name != null) {
+            relation.setName(name);
+        }
+        
+        // Documentation
+        String documentation = getChildElementText(childElement, ELEMENT_DOCUMENTATION, false);
+        if(documentation != null) {
+            relation.setDocumentation(documentation);
+        }
+        
+        // Properties
+        addProperties(context, relation, childElement);
+        
+        // Source and target
+        String sourceID = childElement.getAttributeValue(ATTRIBUTE_SOURCE);
+        String targetID = childElement.getAttributeValue(ATTRIBUTE_TARGET);
+        
+        // Access type
+        if(relation instanceof IAccessRelationship) {
+            String accessType = childElement.getAttributeValue(ATTRIBUTE_ACCESS_TYPE);
+            if(accessType != null) {
+                IAccessRelationship accessRelationship = (IAccessRelationship)relation;
+                
+                switch(accessType) {
+                    case ACCESS_TYPE_ACCESS:
+                        accessRelationship.setAccessType(IAccessRelationship.UNSPECIFIED_ACCESS);
+                        break;
                     
-                    switch(accessType) {
-                        case ACCESS_TYPE_ACCESS:
-                            accessRelationship.setAccessType(IAccessRelationship.UNSPECIFIED_ACCESS);
-                            break;
-
-                        case ACCESS_TYPE_READ:
-                            accessRelationship.setAccessType(IAccessRelationship.READ_ACCESS);
-                            break;
-
-                        case ACCESS_TYPE_READ_WRITE:
-                            accessRelationship.setAccessType(IAccessRelationship.READ_WRITE_ACCESS);
-                            break;
-
-                        default:
-                            accessRelationship.setAccessType(IAccessRelationship.WRITE_ACCESS);
-                            break;
-                    }
+                    case ACCESS_TYPE_READ:
+                        accessRelationship.setAccessType(IAccessRelationship.READ_ACCESS);
+                        break;
+                    
+                    case ACCESS_TYPE_READ_WRITE:
+                        accessRelationship.setAccessType(IAccessRelationship.READ_WRITE_ACCESS);
+                        break;
+                    
+                    default:
+                        accessRelationship.setAccessType(IAccessRelationship.WRITE_ACCESS);
+                        break;
                 }
             }
-            
-            // Influence type
-            if(relation instanceof IInfluenceRelationship) {
-                String influenceStrength = childElement.getAttributeValue(ATTRIBUTE_INFLUENCE_MODIFIER);
-                if(influenceStrength != null) {
-                    ((IInfluenceRelationship)relation).setStrength(influenceStrength);
-                }
+        }
+        
+        // Influence type
+        if(relation instanceof IInfluenceRelationship) {
+            String influenceStrength = childElement.getAttributeValue(ATTRIBUTE_INFLUENCE_MODIFIER);
+            if(influenceStrength != null) {
+                ((IInfluenceRelationship)relation).setStrength(influenceStrength);
             }
-            
-            // Add to lookup table
-            fConceptsLookup.put(relation.getId(), relation);
-            
-            // Add to relations list for 2nd pass
-            RelationInfo rInfo = new RelationInfo();
-            rInfo.relation = relation;
-            rInfo.sourceID = sourceID;
-            rInfo.targetID = targetID;
-            relationInfoList.add(rInfo);
         }
         
-        // 2nd pass, add source and target concepts
+        // Add to lookup table
+        context.conceptsLookup.put(relation.getId(), relation);
+        
+        addObject(context, relation);
+        
+        // Add to relations list for 2nd pass
+        RelationInfo rInfo = new RelationInfo();
+        rInfo.relation = relation;
+        rInfo.sourceID = sourceID;
+        rInfo.targetID = targetID;
+        relationInfoList.add(rInfo);
+    }
+    
+    /**
+     * 2nd pass, add source and target concepts
+     */
+    private void addRelationsSourceAndTarget(ImportContext context, List<RelationInfo> relationInfoList) throws IOException {
         for(RelationInfo rInfo : relationInfoList) {
-            IArchimateConcept source = fConceptsLookup.get(rInfo.sourceID);
+            IArchimateConcept source = context.conceptsLookup.get(rInfo.sourceID);
             if(source == null) {
                 throw new IOException(Messages.XMLModelImporter_3 + rInfo.sourceID);
             }
 
-            IArchimateConcept target = fConceptsLookup.get(rInfo.targetID);
+            IArchimateConcept target = context.conceptsLookup.get(rInfo.targetID);
             if(target == null) {
                 throw new IOException(Messages.XMLModelImporter_4 + rInfo.targetID);
             }
 
             rInfo.relation.setSource(source);
             rInfo.relation.setTarget(target);
+            
+            // Add to lookup table
+            context.relationsLookup.computeIfAbsent(source, key -> new HashMap<>())
+                            .computeIfAbsent(target, key -> new ArrayList<>())
+                            .add(rInfo.relation);
         }
     }
     
+    /**
+     * @return The relationships from source to target in document order, or an empty list
+     */
+    private List<IArchimateRelationship> getRelations(ImportContext context, IArchimateConcept source, IArchimateConcept target) {
+        Map<IArchimateConcept, List<IArchimateRelationship>> targets = context.relationsLookup.get(source);
+        if(targets != null) {
+            List<IArchimateRelationship> relations = targets.get(target);
+            if(relations != null) {
+                return relations;
+            }
+        }
+        
+        return Collections.emptyList();
+    }
+    
     // ========================================= Organization ======================================
 
     @SuppressWarnings("unused")
-    private void parseOrganization(Element organizationElement) {
+    private void parseOrganization(ImportContext context, Element organizationElement) {
         if(organizationElement == null) { // Optional
             return;
         }
 
         for(Element childElement : organizationElement.getChildren(ELEMENT_ITEM, ARCHIMATE3_NAMESPACE)) {
-            parseItem(childElement);
+            parseItem(context, childElement);
         }
     }
     
-    private void parseItem(Element itemElement) {
+    private void parseItem(ImportContext context, Element itemElement) {
         // The idea is to see if we can match any referenced elements/relations into a suitable folder
         // and then move them to that folder. At this stage, it's not worth it.
         
         String idref = itemElement.getAttributeValue(ATTRIBUTE_IDENTIFIERREF);
         
         if(idref != null) {
-            IArchimateConcept concept = fConceptsLookup.get(idref);
+            IArchimateConcept concept = context.conceptsLookup.get(idref);
             if(concept != null) {
                 
             }
@@ -384,13 +985,13 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
         }
 
         for(Element childElement : itemElement.getChildren(ELEMENT_ITEM, ARCHIMATE3_NAMESPACE)) {
-            parseItem(childElement);
+            parseItem(context, childElement);
         }
     }
     
     // ========================================= Views ======================================
 
-    private void parseViews(Element viewsElement) throws XMLModelParserException {
+    private void parseViews(ImportContext context, Element viewsElement) throws XMLModelParserException {
         if(viewsElement == null) { // Optional
             return;
         }
@@ -398,79 +999,186 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
         Map<String, IArchimateDiagramModel> diagramModels = new Hashtable<String, IArchimateDiagramModel>();
         
         // Add the views first because there may be child node view references
-        for(Element viewElement : viewsElement.getChildren(ELEMENT_VIEW, ARCHIMATE3_NAMESPACE)) {
-            IArchimateDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
-            fModel.getDefaultFolderForObject(dm).getElements().add(dm);
+        if(fParallel) {
+            List<ForkJoinTask<IArchimateDiagramModel>> viewTasks = new ArrayList<>();
             
-            // Identifier first
-            String id = viewElement.getAttributeValue(ATTRIBUTE_IDENTIFIER);
-            if(id != null) {
-                dm.setId(id);
-
-                // Store it
-                diagramModels.put(id, dm);
+            for(Element viewElement : viewsElement.getChildren(ELEMENT_VIEW, ARCHIMATE3_NAMESPACE)) {
+                updateProgress(context);
+                viewTasks.add(submitView(context, viewElement));
             }
             
-            // Viewpoint
-            String viewPointName = viewElement.getAttributeValue(ATTRIBUTE_VIEWPOINT);
-            if(viewPointName != null) {
-                String viewPointID = XMLTypeMapper.getViewpointID(viewPointName);
-                dm.setViewpoint(viewPointID);
+            addViews(context, viewTasks, diagramModels);
+        }
+        else {
+            for(Element viewElement : viewsElement.getChildren(ELEMENT_VIEW, ARCHIMATE3_NAMESPACE)) {
+                updateProgress(context);
+                parseView(context, viewElement, diagramModels);
             }
+        }
 
-            // Name
-            String name = getChildElementText(viewElement, ELEMENT_NAME, true);
-            if(name != null) {
-                dm.setName(name);
+        // Now add any pending view diagram references
+        addViewReferences(context, diagramModels);
+    }
+
+    private void parseView(ImportContext context, Element viewElement, Map<String, IArchimateDiagramModel> diagramModels) throws XMLModelParserException {
+        IArchimateDiagramModel dm = createView(context, viewElement);
+        addView(context, dm, diagramModels);
+        addViewContent(context, dm, viewElement);
+    }
+    
+    /**
+     * Submit a task to the common ForkJoinPool that builds a view's diagram apart from the model
+     */
+    private ForkJoinTask<IArchimateDiagramModel> submitView(ImportContext context, Element viewElement) {
+        // Make sure that this is got on this thread
+        getDefaultFontData(context);
+        
+        return ForkJoinPool.commonPool().submit(() -> {
+            IArchimateDiagramModel dm = createView(context, viewElement);
+            addViewContent(context, dm, viewElement);
+            return dm;
+        });
+    }
+    
+    /**
+     * Wait for the views built in parallel and add them to the model in document order
+     */
+    private void addViews(ImportContext context, List<ForkJoinTask<IArchimateDiagramModel>> viewTasks, Map<String, IArchimateDiagramModel> diagramModels) throws XMLModelParserException {
+        try {
+            for(ForkJoinTask<IArchimateDiagramModel> task : viewTasks) {
+                addView(context, task.get(), diagramModels);
             }
+        }
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new XMLModelParserException(ex.getMessage(), ex);
+        }
+        catch(ExecutionException ex) {
+            Throwable cause = ex.getCause();
             
-            // Documentation
-            String documentation = getChildElementText(viewElement, ELEMENT_DOCUMENTATION, false);
-            if(documentation != null) {
-                dm.setDocumentation(documentation);
+            if(cause instanceof XMLModelParserException) {
+                throw (XMLModelParserException)cause;
+            }
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error)cause;
             }
             
-            // Properties
-            addProperties(dm, viewElement);
-            
-            // Nodes
-            addNodes(dm, viewElement);
-            
-            // Connections
-            addConnections(viewElement);
+            throw new XMLModelParserException(cause.getMessage(), cause);
         }
-        
-        // Now add any pending view diagram references
-        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
-            if(eObject instanceof IDiagramModelReference) {
-                IDiagramModelReference dmRef = (IDiagramModelReference)eObject;
-                String refID = (String)dmRef.getAdapter(ATTRIBUTE_REF);
-                if(refID != null) {
-                    IArchimateDiagramModel dm = diagramModels.get(refID);
-                    dmRef.setReferencedModel(dm);
-                }
+        finally {
+            // Don't leave any still running after an error
+            for(ForkJoinTask<IArchimateDiagramModel> task : viewTasks) {
+                task.cancel(false);
             }
         }
     }
     
+    private IArchimateDiagramModel createView(ImportContext context, Element viewElement) {
+        IArchimateDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        
+        // Identifier first
+        String id = viewElement.getAttributeValue(ATTRIBUTE_IDENTIFIER);
+        if(id != null) {
+            dm.setId(id);
+        }
+        
+        addObject(context, dm);
+        
+        return dm;
+    }
+    
+    /**
+     * Add the view to the model and store it for view references
+     */
+    private void addView(ImportContext context, IArchimateDiagramModel dm, Map<String, IArchimateDiagramModel> diagramModels) {
+        context.model.getDefaultFolderForObject(dm).getElements().add(dm);
+        
+        if(dm.getId() != null) {
+            diagramModels.put(dm.getId(), dm);
+        }
+    }
+    
+    /**
+     * Add the view's attributes, nodes and connections. The view does not have to be in the model.
+     */
+    private void addViewContent(ImportContext context, IArchimateDiagramModel dm, Element viewElement) throws XMLModelParserException {
+        IEvent event = XMLExchangeEvents.begin(Type.VIEW);
+        
+        // Lookups for this view
+        ViewInfo viewInfo = new ViewInfo();
+        
+        // Viewpoint
+        String viewPointName = viewElement.getAttributeValue(ATTRIBUTE_VIEWPOINT);
+        if(viewPointName != null) {
+            String viewPointID = XMLTypeMapper.getViewpointID(viewPointName);
+            dm.setViewpoint(viewPointID);
+        }
+        
+        // Name
+        String name = getChildElementText(viewElement, ELEMENT_NAME, true);
+        if(name != null) {
+            dm.setName(name);
+        }
+        
+        // Documentation
+        String documentation = getChildElementText(viewElement, ELEMENT_DOCUMENTATION, false);
+        if(documentation != null) {
+            dm.setDocumentation(documentation);
+        }
+        
+        // Properties
+        addProperties(context, dm, viewElement);
+        
+        // Nodes
+        addNodes(context, dm, viewElement, null, viewInfo);
+        
+        // Connections
+        addConnections(context, dm, viewElement, viewInfo);
+        
+        context.stats.setLookupSize(XMLExchangeStats.LOOKUP_VIEW_NODES, viewInfo.connectionsNodesLookup.size());
+        context.stats.setLookupSize(XMLExchangeStats.LOOKUP_VIEW_BOUNDS, viewInfo.absoluteBoundsLookup.size());
+        
+        XMLExchangeEvents.commitView(event, XMLExchangeEvents.OPERATION_IMPORT, dm);
+    }
+    
+    /**
+     * Add any pending view diagram references
+     */
+    private void addViewReferences(ImportContext context, Map<String, IArchimateDiagramModel> diagramModels) {
+        context.stats.setLookupSize(XMLExchangeStats.LOOKUP_PENDING_VIEW_REFERENCES, context.pendingViewReferencesList.size());
+        
+        for(ViewReferenceInfo vInfo : context.pendingViewReferencesList) {
+            IArchimateDiagramModel dm = diagramModels.get(vInfo.viewID);
+            vInfo.reference.setReferencedModel(dm);
+        }
+        
+        context.pendingViewReferencesList.clear();
+    }
+    
     // ========================================= Nodes ======================================
 
-    private void addNodes(IDiagramModelContainer parentContainer, Element parentElement) throws XMLModelParserException {
+    /**
+     * Add nodes to a container
+     * @param parentAbsoluteBounds The absolute bounds of the parent node as declared in the XML file, or null if the parent is the diagram
+     */
+    private void addNodes(ImportContext context, IDiagramModelContainer parentContainer, Element parentElement, int[] parentAbsoluteBounds, ViewInfo viewInfo) throws XMLModelParserException {
         for(Element nodeElement : parentElement.getChildren(ELEMENT_NODE, ARCHIMATE3_NAMESPACE)) {
             IDiagramModelObject dmo = null;
             
             // This has an element ref so it's an ArchiMate element node
             String elementRef = nodeElement.getAttributeValue(ATTRIBUTE_ELEMENTREF);
             if(hasValue(elementRef) ) {
-                IArchimateConcept concept = fConceptsLookup.get(elementRef);
+                IArchimateConcept concept = context.conceptsLookup.get(elementRef);
                 
                 if(!(concept instanceof IArchimateElement)) {
                     throw new XMLModelParserException(Messages.XMLModelImporter_5 + elementRef);
                 }
                 
                 // Create new diagram node object
-                dmo = ArchimateDiagramModelFactory.createDiagramModelArchimateObject((IArchimateElement)concept);
+                dmo = createDiagramModelArchimateObject((IArchimateElement)concept);
             }
             
             // No element ref so this is another type of node, but what is it?
@@ -486,8 +1194,7 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
                 boolean isViewRef = isLabel && nodeElement.getChild(ELEMENT_VIEWREF, ARCHIMATE3_NAMESPACE) != null;
                 
                 if(isGroup || hasChildren) {
-                    ICreationFactory factory = new ArchimateDiagramModelFactory(IArchimatePackage.eINSTANCE.getDiagramModelGroup());
-                    IDiagramModelGroup group = (IDiagramModelGroup)factory.getNewObject();
+                    IDiagramModelGroup group = (IDiagramModelGroup)createDiagramModelObject(IArchimatePackage.eINSTANCE.getDiagramModelGroup());
                     dmo = group;
 
                     // Label
@@ -503,7 +1210,7 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
                     }
                     
                     // Properties
-                    addProperties(group, nodeElement);
+                    addProperties(context, group, nodeElement);
                 }
                 // View Ref
                 else if(isViewRef) {
@@ -514,13 +1221,16 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
                     Element viewRefElement = nodeElement.getChild(ELEMENT_VIEWREF, ARCHIMATE3_NAMESPACE);
                     String viewRefID = viewRefElement.getAttributeValue(ATTRIBUTE_REF);
                     // Note - the referenced diagram model will have to be set afterwards since we may not have created it yet
-                    // so we use this a temp store
-                    ref.setAdapter(ATTRIBUTE_REF, viewRefID);
+                    if(viewRefID != null) {
+                        ViewReferenceInfo vInfo = new ViewReferenceInfo();
+                        vInfo.reference = ref;
+                        vInfo.viewID = viewRefID;
+                        context.pendingViewReferencesList.add(vInfo);
+                    }
                 }
                 // A Note is our only other option
                 else {
-                    ICreationFactory factory = new ArchimateDiagramModelFactory(IArchimatePackage.eINSTANCE.getDiagramModelNote());
-                    IDiagramModelNote note = (IDiagramModelNote)factory.getNewObject();
+                    IDiagramModelNote note = (IDiagramModelNote)createDiagramModelObject(IArchimatePackage.eINSTANCE.getDiagramModelNote());
                     
                     dmo = note;
                     
@@ -541,33 +1251,52 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
                 parentContainer.getChildren().add(dmo);
                 
                 // Get the absolute bounds as declared in the XML file
-                IBounds bounds = getNodeBounds(nodeElement);
+                int[] absoluteBounds = getNodeBounds(nodeElement);
+                viewInfo.absoluteBoundsLookup.put(dmo, absoluteBounds);
                 
                 // Convert the given absolute bounds into relative bounds if this is in a child object
-                if(parentContainer instanceof IDiagramModelObject) {
-                    bounds = XMLExchangeUtils.getRelativeBounds(bounds, (IDiagramModelObject)parentContainer);
+                // The parent's absolute bounds are its origin so there's no need to walk up the parent chain
+                if(parentAbsoluteBounds != null) {
+                    dmo.setBounds(absoluteBounds[0] - parentAbsoluteBounds[0], absoluteBounds[1] - parentAbsoluteBounds[1],
+                            absoluteBounds[2], absoluteBounds[3]);
+                }
+                else {
+                    dmo.setBounds(absoluteBounds[0], absoluteBounds[1], absoluteBounds[2], absoluteBounds[3]);
                 }
-                
-                dmo.setBounds(bounds);
                 
                 // Style
-                addNodeStyle(dmo, nodeElement.getChild(ELEMENT_STYLE, ARCHIMATE3_NAMESPACE));
+                addNodeStyle(context, dmo, nodeElement.getChild(ELEMENT_STYLE, ARCHIMATE3_NAMESPACE));
                 
                 // Add to lookup
-                fConnectionsNodesLookup.put(dmo.getId(), dmo);
+                viewInfo.connectionsNodesLookup.put(dmo.getId(), dmo);
+                
+                addObject(context, dmo);
 
                 // Child nodes
                 if(dmo instanceof IDiagramModelContainer) {
-                    addNodes((IDiagramModelContainer)dmo, nodeElement);
+                    addNodes(context, (IDiagramModelContainer)dmo, nodeElement, absoluteBounds, viewInfo);
                 }
             }
         }
     }
     
+    private IDiagramModelArchimateObject createDiagramModelArchimateObject(IArchimateElement element) {
+        synchronized(XMLExchangeUtils.FACTORY_LOCK) {
+            return ArchimateDiagramModelFactory.createDiagramModelArchimateObject(element);
+        }
+    }
+    
+    private IDiagramModelObject createDiagramModelObject(EClass eClass) {
+        synchronized(XMLExchangeUtils.FACTORY_LOCK) {
+            ICreationFactory factory = new ArchimateDiagramModelFactory(eClass);
+            return (IDiagramModelObject)factory.getNewObject();
+        }
+    }
+    
     /**
-     * Get the object bounds as declared in XML. The x, y will be absolute values.
+     * Get the object bounds as declared in XML as int[] { x, y, width, height }. The x, y will be absolute values.
      */
-    IBounds getNodeBounds(Element nodeElement) throws XMLModelParserException {
+    int[] getNodeBounds(Element nodeElement) throws XMLModelParserException {
         // Check for x, y, width and height
         String xString = nodeElement.getAttributeValue(ATTRIBUTE_X);
         String yString = nodeElement.getAttributeValue(ATTRIBUTE_Y);
@@ -578,18 +1307,18 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
             throw new XMLModelParserException(Messages.XMLModelImporter_6);
         }
         
-        int x = Integer.valueOf(xString);
-        int y = Integer.valueOf(yString);
-        int width = Integer.valueOf(wString);
-        int height = Integer.valueOf(hString);
+        int x = Integer.parseInt(xString);
+        int y = Integer.parseInt(yString);
+        int width = Integer.parseInt(wString);
+        int height = Integer.parseInt(hString);
 
-        return IArchimateFactory.eINSTANCE.createBounds(x, y, width, height);
+        return new int[] { x, y, width, height };
     }
     
     /**
      * Node Style
      */
-    private void addNodeStyle(IDiagramModelObject dmo, Element styleElement) throws XMLModelParserException {
+    private void addNodeStyle(ImportContext context, IDiagramModelObject dmo, Element styleElement) throws XMLModelParserException {
         if(styleElement == null) {
             return;
         }
@@ -604,12 +1333,12 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
         dmo.setLineColor(getRGBColorString(styleElement.getChild(ELEMENT_LINECOLOR, ARCHIMATE3_NAMESPACE)));
 
         // Font
-        addFont(dmo, styleElement.getChild(ELEMENT_FONT, ARCHIMATE3_NAMESPACE));
+        addFont(context, dmo, styleElement.getChild(ELEMENT_FONT, ARCHIMATE3_NAMESPACE));
     }
     
     // ======================================= Connections ====================================
     
-    private void addConnections(Element viewElement) throws XMLModelParserException {
+    private void addConnections(ImportContext context, IArchimateDiagramModel dm, Element viewElement, ViewInfo viewInfo) throws XMLModelParserException {
         class ConnectionInfo {
             IDiagramModelConnection connection;
             Element connectionElement;
@@ -625,13 +1354,13 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
             String relationshipRef = connectionElement.getAttributeValue(ATTRIBUTE_RELATIONSHIPREF);
             if(hasValue(relationshipRef)) {
                 // Get relationship
-                IArchimateConcept concept = fConceptsLookup.get(relationshipRef);
+                IArchimateConcept concept = context.conceptsLookup.get(relationshipRef);
                 if(!(concept instanceof IArchimateRelationship)) {
                     throw new XMLModelParserException(Messages.XMLModelImporter_7 + relationshipRef);
                 }
                 
                 // Create new ArchiMate connection with relationship
-                connection = ArchimateDiagramModelFactory.createDiagramModelArchimateConnection((IArchimateRelationship)concept);
+                connection = createDiagramModelArchimateConnection((IArchimateRelationship)concept);
             }
             // Create new ordinary connection
             else {
@@ -651,7 +1380,7 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
                 connectionInfoList.add(cInfo);
                 
                 // Add to lookup
-                fConnectionsNodesLookup.put(connection.getId(), connection);
+                viewInfo.connectionsNodesLookup.put(connection.getId(), connection);
             }
         }
         
@@ -659,14 +1388,14 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
         for(ConnectionInfo cInfo : connectionInfoList) {
             // Get connection source node/connection
             String sourceRef = cInfo.connectionElement.getAttributeValue(ATTRIBUTE_SOURCE);
-            IConnectable connectableSource = fConnectionsNodesLookup.get(sourceRef);
+            IConnectable connectableSource = viewInfo.connectionsNodesLookup.get(sourceRef);
             if(connectableSource == null) {
                 throw new XMLModelParserException(Messages.XMLModelImporter_9 + sourceRef);
             }
             
             // Get connection target node/connection
             String targetRef = cInfo.connectionElement.getAttributeValue(ATTRIBUTE_TARGET);
-            IConnectable connectableTarget = fConnectionsNodesLookup.get(targetRef);
+            IConnectable connectableTarget = viewInfo.connectionsNodesLookup.get(targetRef);
             if(connectableTarget == null) {
                 throw new XMLModelParserException(Messages.XMLModelImporter_10 + targetRef);
             }
@@ -697,51 +1426,55 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
             
             // Connect
             cInfo.connection.connect(connectableSource, connectableTarget);
+            addObject(context, cInfo.connection);
                 
             // Bendpoints
-            addBendpoints(cInfo.connection, cInfo.connectionElement);
+            addBendpoints(context, cInfo.connection, cInfo.connectionElement, viewInfo);
                 
             // Style
-            addConnectionStyle(cInfo.connection, cInfo.connectionElement.getChild(ELEMENT_STYLE, ARCHIMATE3_NAMESPACE));
+            addConnectionStyle(context, cInfo.connection, cInfo.connectionElement.getChild(ELEMENT_STYLE, ARCHIMATE3_NAMESPACE));
         }
         
         // Add implicit nested connections
-        addNestedConnections();
+        // Views may be built in parallel so this is the time summed over all threads
+        long start = System.nanoTime();
+        addNestedConnections(context, dm);
+        context.stats.addPhaseTime(XMLExchangeStats.PHASE_NESTED_CONNECTIONS, start);
     }
     
     /**
-     * Add implicit nested connections
-     * 1. Iterate through all diagram ArchiMate nodes and look for nested nodes
+     * Add implicit nested connections to a diagram once its nodes and connections have been added
+     * 1. Iterate through the diagram's ArchiMate nodes and look for nested nodes
      * 2. If there is a relationship between the ArchiMate elements of the nodes and no existing connection, add one
      */
-    private void addNestedConnections() {
-        for(IDiagramModel dm : fModel.getDiagramModels()) { // All diagrams
-            for(Iterator<EObject> iter = dm.eAllContents(); iter.hasNext();) { // Contents of a diagram
-                EObject eObject = iter.next();
+    private void addNestedConnections(ImportContext context, IArchimateDiagramModel dm) {
+        for(Iterator<EObject> iter = dm.eAllContents(); iter.hasNext();) { // Contents of the diagram
+            EObject eObject = iter.next();
+            
+            if(eObject instanceof IDiagramModelArchimateObject) { // ArchiMate node
+                IDiagramModelArchimateObject parent = (IDiagramModelArchimateObject)eObject;
                 
-                if(eObject instanceof IDiagramModelArchimateObject) { // ArchiMate node
-                    IDiagramModelArchimateObject parent = (IDiagramModelArchimateObject)eObject;
-                    
-                    for(IDiagramModelObject dmo : parent.getChildren()) {
-                        if(dmo instanceof IDiagramModelArchimateObject) { // ArchiMate child node
-                            IDiagramModelArchimateObject child = (IDiagramModelArchimateObject)dmo;
-                            IArchimateElement parentElement = parent.getArchimateElement();
-                            IArchimateElement childElement = child.getArchimateElement();
-                            
-                            // Parent -> Child
-                            for(IArchimateRelationship relation : parentElement.getSourceRelationships()) {
-                                if(relation.getTarget() == childElement && !DiagramModelUtils.hasDiagramModelArchimateConnection(parent, child, relation)) {
-                                    IDiagramModelArchimateConnection connection = ArchimateDiagramModelFactory.createDiagramModelArchimateConnection(relation);
-                                    connection.connect(parent, child);
-                                }
+                for(IDiagramModelObject dmo : parent.getChildren()) {
+                    if(dmo instanceof IDiagramModelArchimateObject) { // ArchiMate child node
+                        IDiagramModelArchimateObject child = (IDiagramModelArchimateObject)dmo;
+                        IArchimateElement parentElement = parent.getArchimateElement();
+                        IArchimateElement childElement = child.getArchimateElement();
+                        
+                        // Parent -> Child
+                        for(IArchimateRelationship relation : getRelations(context, parentElement, childElement)) {
+                            if(!DiagramModelUtils.hasDiagramModelArchimateConnection(parent, child, relation)) {
+                                IDiagramModelArchimateConnection connection = createDiagramModelArchimateConnection(relation);
+                                connection.connect(parent, child);
+                                addObject(context, connection);
                             }
-                            
-                            // Child -> Parent
-                            for(IArchimateRelationship relation : childElement.getSourceRelationships()) {
-                                if(relation.getTarget() == parentElement && !DiagramModelUtils.hasDiagramModelArchimateConnection(child, parent, relation)) {
-                                    IDiagramModelArchimateConnection connection = ArchimateDiagramModelFactory.createDiagramModelArchimateConnection(relation);
-                                    connection.connect(child, parent);
-                                }
+                        }
+                        
+                        // Child -> Parent
+                        for(IArchimateRelationship relation : getRelations(context, childElement, parentElement)) {
+                            if(!DiagramModelUtils.hasDiagramModelArchimateConnection(child, parent, relation)) {
+                                IDiagramModelArchimateConnection connection = createDiagramModelArchimateConnection(relation);
+                                connection.connect(child, parent);
+                                addObject(context, connection);
                             }
                         }
                     }
@@ -750,15 +1483,31 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
         }
     }
         
+    private IDiagramModelArchimateConnection createDiagramModelArchimateConnection(IArchimateRelationship relation) {
+        synchronized(XMLExchangeUtils.FACTORY_LOCK) {
+            return ArchimateDiagramModelFactory.createDiagramModelArchimateConnection(relation);
+        }
+    }
+    
     /**
      * Add bendpoints
      */
-    private void addBendpoints(IDiagramModelConnection connection, Element connectionElement) throws XMLModelParserException {
+    private void addBendpoints(ImportContext context, IDiagramModelConnection connection, Element connectionElement, ViewInfo viewInfo) throws XMLModelParserException {
         // TODO: Doesn't work for connection->connection
         if(connection.getSource() instanceof IDiagramModelConnection || connection.getTarget() instanceof IDiagramModelConnection) {
             return;
         }
 
+        // Absolute bounds of source and target nodes
+        int[] srcBounds = viewInfo.absoluteBoundsLookup.get(connection.getSource());
+        int[] tgtBounds = viewInfo.absoluteBoundsLookup.get(connection.getTarget());
+        
+        // Centres of source and target nodes
+        int srcX = srcBounds[0] + (srcBounds[2] / 2);
+        int srcY = srcBounds[1] + (srcBounds[3] / 2);
+        int tgtX = tgtBounds[0] + (tgtBounds[2] / 2);
+        int tgtY = tgtBounds[1] + (tgtBounds[3] / 2);
+        
         for(Element bendpointElement : connectionElement.getChildren(ELEMENT_BENDPOINT, ARCHIMATE3_NAMESPACE)) {
             String xString = bendpointElement.getAttributeValue(ATTRIBUTE_X);
             String yString = bendpointElement.getAttributeValue(ATTRIBUTE_Y);
@@ -766,31 +1515,24 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
                 throw new XMLModelParserException(Messages.XMLModelImporter_13);
             }
             
-            int x = Integer.valueOf(xString);
-            int y = Integer.valueOf(yString);
+            int x = Integer.parseInt(xString);
+            int y = Integer.parseInt(yString);
             
             IDiagramModelBendpoint bendpoint = IArchimateFactory.eINSTANCE.createDiagramModelBendpoint();
             connection.getBendpoints().add(bendpoint);
+            addObject(context, bendpoint);
 
-            IBounds srcBounds = XMLExchangeUtils.getAbsoluteBounds(connection.getSource());
-            IBounds tgtBounds = XMLExchangeUtils.getAbsoluteBounds(connection.getTarget());
-            
-            int startX = x - (srcBounds.getX() + (srcBounds.getWidth() / 2));
-            int startY = y - (srcBounds.getY() + (srcBounds.getHeight() / 2));
-            bendpoint.setStartX(startX);
-            bendpoint.setStartY(startY);
-
-            int endX = x - (tgtBounds.getX() + (tgtBounds.getWidth() / 2));
-            int endY = y - (tgtBounds.getY() + (tgtBounds.getHeight() / 2));
-            bendpoint.setEndX(endX);
-            bendpoint.setEndY(endY);
+            bendpoint.setStartX(x - srcX);
+            bendpoint.setStartY(y - srcY);
+            bendpoint.setEndX(x - tgtX);
+            bendpoint.setEndY(y - tgtY);
         }
     }
     
     /**
      * Connection Style
      */
-    private void addConnectionStyle(IDiagramModelConnection connection, Element styleElement) throws XMLModelParserException {
+    private void addConnectionStyle(ImportContext context, IDiagramModelConnection connection, Element styleElement) throws XMLModelParserException {
         if(styleElement == null) {
             return;
         }
@@ -812,17 +1554,24 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
         connection.setLineColor(getRGBColorString(styleElement.getChild(ELEMENT_LINECOLOR, ARCHIMATE3_NAMESPACE)));
 
         // Font
-        addFont(connection, styleElement.getChild(ELEMENT_FONT, ARCHIMATE3_NAMESPACE));
+        addFont(context, connection, styleElement.getChild(ELEMENT_FONT, ARCHIMATE3_NAMESPACE));
     }
 
     // ========================================= Helpers ======================================
 
-    private void addFont(IFontAttribute fontObject, Element fontElement) throws XMLModelParserException {
+    /**
+     * Count an object that has been created
+     */
+    private void addObject(ImportContext context, EObject eObject) {
+        context.stats.addObject(eObject.eClass().getName());
+    }
+    
+    private void addFont(ImportContext context, IFontAttribute fontObject, Element fontElement) throws XMLModelParserException {
         if(fontElement == null) {
             return;
         }
         
-        FontData newFontData = new FontData(FontFactory.getDefaultUserViewFontData().toString());
+        FontData newFontData = new FontData(getDefaultFontData(context));
 
         String fontName = fontElement.getAttributeValue(ATTRIBUTE_FONTNAME);
         if(hasValue(fontName)) {
@@ -853,6 +1602,19 @@ public class XMLModelImporter implements IXMLExchangeGlobals {
         fontObject.setFontColor(getRGBColorString(fontElement.getChild(ELEMENT_FONTCOLOR, ARCHIMATE3_NAMESPACE)));
     }
     
+    /**
+     * @return The user's default view font data as a string. This is got once on the calling thread.
+     */
+    private String getDefaultFontData(ImportContext context) {
+        if(context.defaultFontData == null) {
+            synchronized(XMLExchangeUtils.FACTORY_LOCK) {
+                context.defaultFontData = FontFactory.getDefaultUserViewFontData().toString();
+            }
+        }
+        
+        return context.defaultFontData;
+    }
+    
     /**
      * Get the RGB String for an element, or null.
      */
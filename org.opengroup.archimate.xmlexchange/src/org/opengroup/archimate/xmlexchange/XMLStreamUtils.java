@@ -0,0 +1,193 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package org.opengroup.archimate.xmlexchange;
+
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.jdom2.Element;
+import org.jdom2.JDOMFactory;
+import org.jdom2.Namespace;
+import org.jdom2.UncheckedJDOMFactory;
+
+
+/**
+ * StAX helpers for reading the XML Exchange format one fragment at a time
+ *
+ * The reader is always left positioned on the END_ELEMENT of whatever element was last read or skipped,
+ * so that {@link #nextChildElement(XMLStreamReader)} can be called again to move to the next sibling.
+ */
+final class XMLStreamUtils implements XMLStreamConstants {
+    
+    // The parser has already checked well-formedness so there's no need to verify names and text again
+    private static final JDOMFactory FACTORY = new UncheckedJDOMFactory();
+    
+    /**
+     * @return A new namespace aware XMLStreamReader on the input stream
+     */
+    static XMLStreamReader createXMLStreamReader(InputStream in) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        
+        // Don't allow DTD loading in case of XXE exploits
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        
+        // Report text in one event as JDOM does
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        
+        return factory.createXMLStreamReader(in);
+    }
+    
+    /**
+     * Move to the root element of the document
+     * @return false if there is no root element
+     */
+    static boolean nextRootElement(XMLStreamReader reader) throws XMLStreamException {
+        while(reader.hasNext()) {
+            if(reader.next() == START_ELEMENT) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Move to the next child element of the current element.
+     * The reader must be positioned on the START_ELEMENT of the parent or on the END_ELEMENT of a previous child.
+     * @return true if the reader is on the START_ELEMENT of the next child, false if it is on the END_ELEMENT of the parent
+     */
+    static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+        while(reader.hasNext()) {
+            switch(reader.next()) {
+                case START_ELEMENT:
+                    return true;
+                
+                case END_ELEMENT:
+                    return false;
+                
+                default:
+                    break;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Skip the current element and all of its content, leaving the reader on its END_ELEMENT
+     */
+    static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        
+        while(depth > 0 && reader.hasNext()) {
+            switch(reader.next()) {
+                case START_ELEMENT:
+                    depth++;
+                    break;
+                
+                case END_ELEMENT:
+                    depth--;
+                    break;
+                
+                default:
+                    break;
+            }
+        }
+    }
+    
+    /**
+     * Read any remaining events to the end of the document
+     */
+    static void readToEnd(XMLStreamReader reader) throws XMLStreamException {
+        while(reader.hasNext()) {
+            reader.next();
+        }
+    }
+    
+    /**
+     * @return true if the reader is on a START_ELEMENT with the given local name in the given namespace
+     */
+    static boolean isElement(XMLStreamReader reader, String name, Namespace namespace) {
+        return name.equals(reader.getLocalName()) && namespace.getURI().equals(reader.getNamespaceURI());
+    }
+    
+    /**
+     * Build a detached JDOM Element for the current element and all of its content, leaving the reader on its END_ELEMENT.
+     * Only this element's sub-tree is held in memory.
+     */
+    static Element buildElement(XMLStreamReader reader) throws XMLStreamException {
+        Element element = createElement(reader);
+        Element current = element;
+        
+        while(reader.hasNext()) {
+            switch(reader.next()) {
+                case START_ELEMENT:
+                    Element child = createElement(reader);
+                    FACTORY.addContent(current, child);
+                    current = child;
+                    break;
+                
+                case END_ELEMENT:
+                    if(current == element) {
+                        return element;
+                    }
+                    current = current.getParentElement();
+                    break;
+                
+                case CHARACTERS:
+                case SPACE:
+                    FACTORY.addContent(current, FACTORY.text(reader.getText()));
+                    break;
+                
+                case CDATA:
+                    FACTORY.addContent(current, FACTORY.cdata(reader.getText()));
+                    break;
+                
+                // Comments and processing instructions are not used
+                default:
+                    break;
+            }
+        }
+        
+        return element;
+    }
+    
+    /**
+     * Create a JDOM Element for the current START_ELEMENT with its namespace declarations and attributes, but no content
+     */
+    static Element createElement(XMLStreamReader reader) {
+        Namespace namespace = Namespace.getNamespace(reader.getPrefix(), reader.getNamespaceURI());
+        Element element = FACTORY.element(reader.getLocalName(), namespace);
+        
+        // Namespace declarations
+        for(int i = 0; i < reader.getNamespaceCount(); i++) {
+            Namespace declaration = Namespace.getNamespace(reader.getNamespacePrefix(i), reader.getNamespaceURI(i));
+            if(!declaration.equals(namespace)) {
+                FACTORY.addNamespaceDeclaration(element, declaration);
+            }
+        }
+        
+        // Attributes
+        for(int i = 0; i < reader.getAttributeCount(); i++) {
+            String uri = reader.getAttributeNamespace(i);
+            Namespace attributeNamespace = (uri == null || uri.isEmpty()) ? Namespace.NO_NAMESPACE
+                                                                             : Namespace.getNamespace(reader.getAttributePrefix(i), uri);
+            FACTORY.setAttribute(element, FACTORY.attribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i), attributeNamespace));
+        }
+        
+        return element;
+    }
+    
+    private XMLStreamUtils() {
+    }
+}
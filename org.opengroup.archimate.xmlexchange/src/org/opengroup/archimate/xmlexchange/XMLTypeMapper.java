@@ -5,7 +5,9 @@
  */
 package org.opengroup.archimate.xmlexchange;
 
-import java.util.Hashtable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -20,101 +22,123 @@ import com.archimatetool.model.IJunction;
 @SuppressWarnings("nls")
 public class XMLTypeMapper implements IXMLExchangeGlobals {
     
-    // Mapping of Type strings to Element Eobjects
-    private static Map<String, EClass> ElementsMapping = new Hashtable<String, EClass>();
+    /*
+     * The mappings are built once when the class is initialised and can't be changed after that,
+     * so they can be read by concurrent imports and exports without locking.
+     */
+    
+    // Mapping of Type strings to Element EClasses
+    private static final Map<String, EClass> ElementsMapping;
+    
+    // Reverse mapping of Element EClasses to Type strings. EClasses are singletons so are compared by identity.
+    private static final Map<EClass, String> ElementNamesMapping;
     
     static {
+        Map<String, EClass> elementsMapping = new HashMap<String, EClass>();
+        
         // Strategy Elements
-        ElementsMapping.put("Capability", IArchimatePackage.eINSTANCE.getCapability());
-        ElementsMapping.put("CourseOfAction", IArchimatePackage.eINSTANCE.getCourseOfAction());
-        ElementsMapping.put("Resource", IArchimatePackage.eINSTANCE.getResource());
+        elementsMapping.put("Capability", IArchimatePackage.eINSTANCE.getCapability());
+        elementsMapping.put("CourseOfAction", IArchimatePackage.eINSTANCE.getCourseOfAction());
+        elementsMapping.put("Resource", IArchimatePackage.eINSTANCE.getResource());
         
         // Business Elements
-        ElementsMapping.put("BusinessActor", IArchimatePackage.eINSTANCE.getBusinessActor());
-        ElementsMapping.put("BusinessCollaboration", IArchimatePackage.eINSTANCE.getBusinessCollaboration());
-        ElementsMapping.put("BusinessEvent", IArchimatePackage.eINSTANCE.getBusinessEvent());
-        ElementsMapping.put("BusinessFunction", IArchimatePackage.eINSTANCE.getBusinessFunction());
-        ElementsMapping.put("BusinessInteraction", IArchimatePackage.eINSTANCE.getBusinessInteraction());
-        ElementsMapping.put("BusinessInterface", IArchimatePackage.eINSTANCE.getBusinessInterface());
-        ElementsMapping.put("BusinessObject", IArchimatePackage.eINSTANCE.getBusinessObject());
-        ElementsMapping.put("BusinessProcess", IArchimatePackage.eINSTANCE.getBusinessProcess());
-        ElementsMapping.put("BusinessRole", IArchimatePackage.eINSTANCE.getBusinessRole());
-        ElementsMapping.put("BusinessService", IArchimatePackage.eINSTANCE.getBusinessService());
-        ElementsMapping.put("Contract", IArchimatePackage.eINSTANCE.getContract());
-        ElementsMapping.put("Product", IArchimatePackage.eINSTANCE.getProduct());
-        ElementsMapping.put("Representation", IArchimatePackage.eINSTANCE.getRepresentation());
+        elementsMapping.put("BusinessActor", IArchimatePackage.eINSTANCE.getBusinessActor());
+        elementsMapping.put("BusinessCollaboration", IArchimatePackage.eINSTANCE.getBusinessCollaboration());
+        elementsMapping.put("BusinessEvent", IArchimatePackage.eINSTANCE.getBusinessEvent());
+        elementsMapping.put("BusinessFunction", IArchimatePackage.eINSTANCE.getBusinessFunction());
+        elementsMapping.put("BusinessInteraction", IArchimatePackage.eINSTANCE.getBusinessInteraction());
+        elementsMapping.put("BusinessInterface", IArchimatePackage.eINSTANCE.getBusinessInterface());
+        elementsMapping.put("BusinessObject", IArchimatePackage.eINSTANCE.getBusinessObject());
+        elementsMapping.put("BusinessProcess", IArchimatePackage.eINSTANCE.getBusinessProcess());
+        elementsMapping.put("BusinessRole", IArchimatePackage.eINSTANCE.getBusinessRole());
+        elementsMapping.put("BusinessService", IArchimatePackage.eINSTANCE.getBusinessService());
+        elementsMapping.put("Contract", IArchimatePackage.eINSTANCE.getContract());
+        elementsMapping.put("Product", IArchimatePackage.eINSTANCE.getProduct());
+        elementsMapping.put("Representation", IArchimatePackage.eINSTANCE.getRepresentation());
         
         // Application Elements
-        ElementsMapping.put("ApplicationCollaboration", IArchimatePackage.eINSTANCE.getApplicationCollaboration());
-        ElementsMapping.put("ApplicationComponent", IArchimatePackage.eINSTANCE.getApplicationComponent());
-        ElementsMapping.put("ApplicationEvent", IArchimatePackage.eINSTANCE.getApplicationEvent());
-        ElementsMapping.put("ApplicationFunction", IArchimatePackage.eINSTANCE.getApplicationFunction());
-        ElementsMapping.put("ApplicationInteraction", IArchimatePackage.eINSTANCE.getApplicationInteraction());
-        ElementsMapping.put("ApplicationInterface", IArchimatePackage.eINSTANCE.getApplicationInterface());
-        ElementsMapping.put("ApplicationProcess", IArchimatePackage.eINSTANCE.getApplicationProcess());
-        ElementsMapping.put("ApplicationService", IArchimatePackage.eINSTANCE.getApplicationService());
-        ElementsMapping.put("DataObject", IArchimatePackage.eINSTANCE.getDataObject());
+        elementsMapping.put("ApplicationCollaboration", IArchimatePackage.eINSTANCE.getApplicationCollaboration());
+        elementsMapping.put("ApplicationComponent", IArchimatePackage.eINSTANCE.getApplicationComponent());
+        elementsMapping.put("ApplicationEvent", IArchimatePackage.eINSTANCE.getApplicationEvent());
+        elementsMapping.put("ApplicationFunction", IArchimatePackage.eINSTANCE.getApplicationFunction());
+        elementsMapping.put("ApplicationInteraction", IArchimatePackage.eINSTANCE.getApplicationInteraction());
+        elementsMapping.put("ApplicationInterface", IArchimatePackage.eINSTANCE.getApplicationInterface());
+        elementsMapping.put("ApplicationProcess", IArchimatePackage.eINSTANCE.getApplicationProcess());
+        elementsMapping.put("ApplicationService", IArchimatePackage.eINSTANCE.getApplicationService());
+        elementsMapping.put("DataObject", IArchimatePackage.eINSTANCE.getDataObject());
         
         // Technology Elements
-        ElementsMapping.put("Artifact", IArchimatePackage.eINSTANCE.getArtifact());
-        ElementsMapping.put("CommunicationNetwork", IArchimatePackage.eINSTANCE.getCommunicationNetwork());
-        ElementsMapping.put("Device", IArchimatePackage.eINSTANCE.getDevice());
-        ElementsMapping.put("Node", IArchimatePackage.eINSTANCE.getNode());
-        ElementsMapping.put("Path", IArchimatePackage.eINSTANCE.getPath());
-        ElementsMapping.put("SystemSoftware", IArchimatePackage.eINSTANCE.getSystemSoftware());
-        ElementsMapping.put("TechnologyCollaboration", IArchimatePackage.eINSTANCE.getTechnologyCollaboration());
-        ElementsMapping.put("TechnologyInteraction", IArchimatePackage.eINSTANCE.getTechnologyInteraction());
-        ElementsMapping.put("TechnologyInterface", IArchimatePackage.eINSTANCE.getTechnologyInterface());
-        ElementsMapping.put("TechnologyEvent", IArchimatePackage.eINSTANCE.getTechnologyEvent());
-        ElementsMapping.put("TechnologyFunction", IArchimatePackage.eINSTANCE.getTechnologyFunction());
-        ElementsMapping.put("TechnologyProcess", IArchimatePackage.eINSTANCE.getTechnologyProcess());
-        ElementsMapping.put("TechnologyService", IArchimatePackage.eINSTANCE.getTechnologyService());
+        elementsMapping.put("Artifact", IArchimatePackage.eINSTANCE.getArtifact());
+        elementsMapping.put("CommunicationNetwork", IArchimatePackage.eINSTANCE.getCommunicationNetwork());
+        elementsMapping.put("Device", IArchimatePackage.eINSTANCE.getDevice());
+        elementsMapping.put("Node", IArchimatePackage.eINSTANCE.getNode());
+        elementsMapping.put("Path", IArchimatePackage.eINSTANCE.getPath());
+        elementsMapping.put("SystemSoftware", IArchimatePackage.eINSTANCE.getSystemSoftware());
+        elementsMapping.put("TechnologyCollaboration", IArchimatePackage.eINSTANCE.getTechnologyCollaboration());
+        elementsMapping.put("TechnologyInteraction", IArchimatePackage.eINSTANCE.getTechnologyInteraction());
+        elementsMapping.put("TechnologyInterface", IArchimatePackage.eINSTANCE.getTechnologyInterface());
+        elementsMapping.put("TechnologyEvent", IArchimatePackage.eINSTANCE.getTechnologyEvent());
+        elementsMapping.put("TechnologyFunction", IArchimatePackage.eINSTANCE.getTechnologyFunction());
+        elementsMapping.put("TechnologyProcess", IArchimatePackage.eINSTANCE.getTechnologyProcess());
+        elementsMapping.put("TechnologyService", IArchimatePackage.eINSTANCE.getTechnologyService());
         
         // Physical Elements
-        ElementsMapping.put("DistributionNetwork", IArchimatePackage.eINSTANCE.getDistributionNetwork());
-        ElementsMapping.put("Equipment", IArchimatePackage.eINSTANCE.getEquipment());
-        ElementsMapping.put("Facility", IArchimatePackage.eINSTANCE.getFacility());
-        ElementsMapping.put("Material", IArchimatePackage.eINSTANCE.getMaterial());
+        elementsMapping.put("DistributionNetwork", IArchimatePackage.eINSTANCE.getDistributionNetwork());
+        elementsMapping.put("Equipment", IArchimatePackage.eINSTANCE.getEquipment());
+        elementsMapping.put("Facility", IArchimatePackage.eINSTANCE.getFacility());
+        elementsMapping.put("Material", IArchimatePackage.eINSTANCE.getMaterial());
 
         // Motivation
-        ElementsMapping.put("Assessment", IArchimatePackage.eINSTANCE.getAssessment());
-        ElementsMapping.put("Constraint", IArchimatePackage.eINSTANCE.getConstraint());
-        ElementsMapping.put("Driver", IArchimatePackage.eINSTANCE.getDriver());
-        ElementsMapping.put("Goal", IArchimatePackage.eINSTANCE.getGoal());
-        ElementsMapping.put("Outcome", IArchimatePackage.eINSTANCE.getOutcome());
-        ElementsMapping.put("Meaning", IArchimatePackage.eINSTANCE.getMeaning());
-        ElementsMapping.put("Principle", IArchimatePackage.eINSTANCE.getPrinciple());
-        ElementsMapping.put("Requirement", IArchimatePackage.eINSTANCE.getRequirement());
-        ElementsMapping.put("Stakeholder", IArchimatePackage.eINSTANCE.getStakeholder());
-        ElementsMapping.put("Value", IArchimatePackage.eINSTANCE.getValue());
+        elementsMapping.put("Assessment", IArchimatePackage.eINSTANCE.getAssessment());
+        elementsMapping.put("Constraint", IArchimatePackage.eINSTANCE.getConstraint());
+        elementsMapping.put("Driver", IArchimatePackage.eINSTANCE.getDriver());
+        elementsMapping.put("Goal", IArchimatePackage.eINSTANCE.getGoal());
+        elementsMapping.put("Outcome", IArchimatePackage.eINSTANCE.getOutcome());
+        elementsMapping.put("Meaning", IArchimatePackage.eINSTANCE.getMeaning());
+        elementsMapping.put("Principle", IArchimatePackage.eINSTANCE.getPrinciple());
+        elementsMapping.put("Requirement", IArchimatePackage.eINSTANCE.getRequirement());
+        elementsMapping.put("Stakeholder", IArchimatePackage.eINSTANCE.getStakeholder());
+        elementsMapping.put("Value", IArchimatePackage.eINSTANCE.getValue());
 
         // Impl/Migration
-        ElementsMapping.put("Deliverable", IArchimatePackage.eINSTANCE.getDeliverable());
-        ElementsMapping.put("Gap", IArchimatePackage.eINSTANCE.getGap());
-        ElementsMapping.put("ImplementationEvent", IArchimatePackage.eINSTANCE.getImplementationEvent());
-        ElementsMapping.put("Plateau", IArchimatePackage.eINSTANCE.getPlateau());
-        ElementsMapping.put("WorkPackage", IArchimatePackage.eINSTANCE.getWorkPackage());
+        elementsMapping.put("Deliverable", IArchimatePackage.eINSTANCE.getDeliverable());
+        elementsMapping.put("Gap", IArchimatePackage.eINSTANCE.getGap());
+        elementsMapping.put("ImplementationEvent", IArchimatePackage.eINSTANCE.getImplementationEvent());
+        elementsMapping.put("Plateau", IArchimatePackage.eINSTANCE.getPlateau());
+        elementsMapping.put("WorkPackage", IArchimatePackage.eINSTANCE.getWorkPackage());
 
         // Other
-        ElementsMapping.put("Grouping", IArchimatePackage.eINSTANCE.getGrouping());
-        ElementsMapping.put("Location", IArchimatePackage.eINSTANCE.getLocation());
+        elementsMapping.put("Grouping", IArchimatePackage.eINSTANCE.getGrouping());
+        elementsMapping.put("Location", IArchimatePackage.eINSTANCE.getLocation());
         
         // Relations
-        ElementsMapping.put("Assignment", IArchimatePackage.eINSTANCE.getAssignmentRelationship());
-        ElementsMapping.put("Access", IArchimatePackage.eINSTANCE.getAccessRelationship());
-        ElementsMapping.put("Association", IArchimatePackage.eINSTANCE.getAssociationRelationship());
-        ElementsMapping.put("Composition", IArchimatePackage.eINSTANCE.getCompositionRelationship());
-        ElementsMapping.put("Aggregation", IArchimatePackage.eINSTANCE.getAggregationRelationship());
-        ElementsMapping.put("Serving", IArchimatePackage.eINSTANCE.getServingRelationship());
-        ElementsMapping.put("Triggering", IArchimatePackage.eINSTANCE.getTriggeringRelationship());
-        ElementsMapping.put("Flow", IArchimatePackage.eINSTANCE.getFlowRelationship());
-        ElementsMapping.put("Realization", IArchimatePackage.eINSTANCE.getRealizationRelationship());
-        ElementsMapping.put("Specialization", IArchimatePackage.eINSTANCE.getSpecializationRelationship());
-        ElementsMapping.put("Influence", IArchimatePackage.eINSTANCE.getInfluenceRelationship());
+        elementsMapping.put("Assignment", IArchimatePackage.eINSTANCE.getAssignmentRelationship());
+        elementsMapping.put("Access", IArchimatePackage.eINSTANCE.getAccessRelationship());
+        elementsMapping.put("Association", IArchimatePackage.eINSTANCE.getAssociationRelationship());
+        elementsMapping.put("Composition", IArchimatePackage.eINSTANCE.getCompositionRelationship());
+        elementsMapping.put("Aggregation", IArchimatePackage.eINSTANCE.getAggregationRelationship());
+        elementsMapping.put("Serving", IArchimatePackage.eINSTANCE.getServingRelationship());
+        elementsMapping.put("Triggering", IArchimatePackage.eINSTANCE.getTriggeringRelationship());
+        elementsMapping.put("Flow", IArchimatePackage.eINSTANCE.getFlowRelationship());
+        elementsMapping.put("Realization", IArchimatePackage.eINSTANCE.getRealizationRelationship());
+        elementsMapping.put("Specialization", IArchimatePackage.eINSTANCE.getSpecializationRelationship());
+        elementsMapping.put("Influence", IArchimatePackage.eINSTANCE.getInfluenceRelationship());
         
         // Junctions
-        ElementsMapping.put("AndJunction", IArchimatePackage.eINSTANCE.getJunction());
-        ElementsMapping.put("OrJunction", IArchimatePackage.eINSTANCE.getJunction());
+        elementsMapping.put("AndJunction", IArchimatePackage.eINSTANCE.getJunction());
+        elementsMapping.put("OrJunction", IArchimatePackage.eINSTANCE.getJunction());
+        
+        ElementsMapping = Collections.unmodifiableMap(elementsMapping);
+        
+        // Junction has two names and is a special case
+        Map<EClass, String> elementNamesMapping = new IdentityHashMap<EClass, String>();
+        for(Entry<String, EClass> entry : elementsMapping.entrySet()) {
+            if(entry.getValue() != IArchimatePackage.eINSTANCE.getJunction()) {
+                elementNamesMapping.put(entry.getValue(), entry.getKey());
+            }
+        }
+        
+        ElementNamesMapping = Collections.unmodifiableMap(elementNamesMapping);
     }
 
     public static IArchimateConcept createArchimateConcept(String type) {
@@ -147,46 +171,54 @@ public class XMLTypeMapper implements IXMLExchangeGlobals {
             return "AndJunction";
         }
         
-        for(Entry<String, EClass> entry : ElementsMapping.entrySet()) {
-            if(entry.getValue().equals(archimateConcept.eClass())) {
-                return entry.getKey();
-            }
-        }
-        
-        return null;
+        return ElementNamesMapping.get(archimateConcept.eClass());
     }
     
-    // Mapping of Viewpoint Names
-    private static Map<String, String> ViewPointsMapping = new Hashtable<String, String>();
+    // Mapping of Viewpoint IDs to Viewpoint Names
+    private static final Map<String, String> ViewPointsMapping;
+    
+    // Reverse mapping of Viewpoint Names to Viewpoint IDs
+    private static final Map<String, String> ViewPointIDsMapping;
     
     static {
-        ViewPointsMapping.put("", ""); // This means no Viewpoint
-        ViewPointsMapping.put("organization", "Organization");
-//        ViewPointsMapping.put("", "Application Platform");
-        ViewPointsMapping.put("information_structure", "Information Structure");
-        ViewPointsMapping.put("technology", "Technology");
-        ViewPointsMapping.put("layered", "Layered");
-        ViewPointsMapping.put("physical", "Physical");
-        ViewPointsMapping.put("product", "Product");
-        ViewPointsMapping.put("application_usage", "Application Usage");
-        ViewPointsMapping.put("technology_usage", "Technology Usage");
-        ViewPointsMapping.put("business_process_cooperation", "Business Process Cooperation");
-        ViewPointsMapping.put("application_cooperation", "Application Cooperation");
-        ViewPointsMapping.put("service_realization", "Service Realization");
-        ViewPointsMapping.put("implementation_deployment", "Implementation and Deployment");
-        ViewPointsMapping.put("goal_realization", "Goal Realization");
-//        ViewPointsMapping.put("", "Goal Contribution");
-//        ViewPointsMapping.put("", "Principles");
-        ViewPointsMapping.put("requirements_realization", "Requirements Realization");
-        ViewPointsMapping.put("motivation", "Motivation");
-        ViewPointsMapping.put("strategy", "Strategy");
-        ViewPointsMapping.put("capability", "Capability Map");
-        ViewPointsMapping.put("outcome_realization", "Outcome Realization");
-        ViewPointsMapping.put("resource", "Resource Map");
-        ViewPointsMapping.put("project", "Project");
-        ViewPointsMapping.put("migration", "Migration");
-        ViewPointsMapping.put("implementation_migration", "Implementation and Migration");
-        ViewPointsMapping.put("stakeholder", "Stakeholder");
+        Map<String, String> viewPointsMapping = new HashMap<String, String>();
+        
+        viewPointsMapping.put("", ""); // This means no Viewpoint
+        viewPointsMapping.put("organization", "Organization");
+//        viewPointsMapping.put("", "Application Platform");
+        viewPointsMapping.put("information_structure", "Information Structure");
+        viewPointsMapping.put("technology", "Technology");
+        viewPointsMapping.put("layered", "Layered");
+        viewPointsMapping.put("physical", "Physical");
+        viewPointsMapping.put("product", "Product");
+        viewPointsMapping.put("application_usage", "Application Usage");
+        viewPointsMapping.put("technology_usage", "Technology Usage");
+        viewPointsMapping.put("business_process_cooperation", "Business Process Cooperation");
+        viewPointsMapping.put("application_cooperation", "Application Cooperation");
+        viewPointsMapping.put("service_realization", "Service Realization");
+        viewPointsMapping.put("implementation_deployment", "Implementation and Deployment");
+        viewPointsMapping.put("goal_realization", "Goal Realization");
+//        viewPointsMapping.put("", "Goal Contribution");
+//        viewPointsMapping.put("", "Principles");
+        viewPointsMapping.put("requirements_realization", "Requirements Realization");
+        viewPointsMapping.put("motivation", "Motivation");
+        viewPointsMapping.put("strategy", "Strategy");
+        viewPointsMapping.put("capability", "Capability Map");
+        viewPointsMapping.put("outcome_realization", "Outcome Realization");
+        viewPointsMapping.put("resource", "Resource Map");
+        viewPointsMapping.put("project", "Project");
+        viewPointsMapping.put("migration", "Migration");
+        viewPointsMapping.put("implementation_migration", "Implementation and Migration");
+        viewPointsMapping.put("stakeholder", "Stakeholder");
+        
+        ViewPointsMapping = Collections.unmodifiableMap(viewPointsMapping);
+        
+        Map<String, String> viewPointIDsMapping = new HashMap<String, String>();
+        for(Entry<String, String> entry : viewPointsMapping.entrySet()) {
+            viewPointIDsMapping.put(entry.getValue(), entry.getKey());
+        }
+        
+        ViewPointIDsMapping = Collections.unmodifiableMap(viewPointIDsMapping);
     }
 
     public static String getViewpointName(String viewPointID) {
@@ -194,13 +226,8 @@ public class XMLTypeMapper implements IXMLExchangeGlobals {
     }
     
     public static String getViewpointID(String viewPointName) {
-        for(Entry<String, String> entry : ViewPointsMapping.entrySet()) {
-            if(entry.getValue().equals(viewPointName)) {
-                return entry.getKey();
-            }
-        }
-        
-        return "";
+        String viewPointID = ViewPointIDsMapping.get(viewPointName);
+        return viewPointID != null ? viewPointID : "";
     }
 
 }
@@ -8,6 +8,7 @@ package org.opengroup.archimate.xmlexchange;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
@@ -18,7 +19,15 @@ import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.osgi.util.NLS;
+import org.opengroup.archimate.xmlexchange.XMLExchangeEvents.IEvent;
+import org.opengroup.archimate.xmlexchange.XMLExchangeEvents.Type;
 import org.w3c.dom.ls.LSInput;
 import org.w3c.dom.ls.LSResourceResolver;
 import org.xml.sax.SAXException;
@@ -31,41 +40,178 @@ import org.xml.sax.SAXException;
  */
 public final class XMLValidator {
     
+    // The compiled Schema is immutable and thread safe so it is compiled once and shared
+    private static volatile Schema schema;
+    
+    // A Validator is not thread safe so each thread has its own
+    private static final ThreadLocal<Validator> validators = new ThreadLocal<Validator>();
+    
+    /**
+     * Validate a plain, gzip or zip file. A compressed file is decompressed as it is validated.
+     */
     public void validateXML(File xmlInstance) throws SAXException, IOException {
+        validateXML(xmlInstance, new NullProgressMonitor());
+    }
+    
+    /**
+     * Validate a plain, gzip or zip file, reporting progress to monitor by the bytes of the file read.
+     * The monitor is checked for cancellation each time more of the file is read. The monitor can be null.
+     * @throws OperationCanceledException if the monitor is cancelled
+     */
+    public void validateXML(File xmlInstance, IProgressMonitor monitor) throws SAXException, IOException {
+        IEvent event = XMLExchangeEvents.begin(Type.VALIDATE);
+        
+        SubMonitor progress = SubMonitor.convert(monitor, NLS.bind(Messages.XMLValidator_0, xmlInstance.getName()),
+                (int)Math.min(Integer.MAX_VALUE, xmlInstance.length() / 1024));
+        
+        Validator validator = getValidator();
+        
+        // Fixes #274 https://github.com/archimatetool/archi/issues/274
+        // Count the bytes of the file rather than of the decompressed XML
+        InputStream fileIn = new FileInputStream(xmlInstance);
+        
+        try {
+            validator.validate(new StreamSource(Compression.decompress(new ProgressInputStream(fileIn, progress))));
+        }
+        catch(SAXException ex) {
+            if(!isIgnoredError(ex)) {
+                throw ex;
+            }
+        }
+        finally {
+            fileIn.close();
+        }
+        
+        progress.done();
+        
+        XMLExchangeEvents.commitFile(event, null, xmlInstance);
+    }
+    
+    /**
+     * Compile the Schema now rather than on first use, so that a long running process does not pay for it in its first validation
+     */
+    public static void loadSchema() throws SAXException, IOException {
+        getSchema();
+    }
+    
+    /**
+     * @return A new ValidatorHandler for validating a document from the SAX events of another parser.
+     * The first error is thrown as a SAXException. If isIgnoredError() is true for it the rest of the document
+     * should not be validated, as validateXML() stops at that error and accepts the file.
+     */
+    static ValidatorHandler createValidatorHandler() throws SAXException, IOException {
+        return getSchema().newValidatorHandler();
+    }
+    
+    /**
+     * Ignore error where an XSD declaration is one that we do not have locally (for example for additional metadata)
+     */
+    static boolean isIgnoredError(SAXException ex) {
+        String message = ex.getMessage();
+        return message != null && message.contains("The matching wildcard is strict, but no declaration can be found"); //$NON-NLS-1$
+    }
+    
+    /**
+     * @return The compiled Schema of the local XSDs, compiled on first use
+     */
+    static Schema getSchema() throws SAXException, IOException {
+        Schema result = schema;
+        
+        if(result == null) {
+            synchronized(XMLValidator.class) {
+                result = schema;
+                if(result == null) {
+                    result = createSchema();
+                    schema = result;
+                }
+            }
+        }
+        
+        return result;
+    }
+    
+    private static Schema createSchema() throws SAXException, IOException {
         SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
         
         // Resolver for xsd import
         factory.setResourceResolver(new ResourceResolver());
         
         // Local XSDs
-        Schema schema = factory.newSchema(new Source[]{
+        return factory.newSchema(new Source[]{
                 new StreamSource(XMLExchangePlugin.INSTANCE.getBundleInputStream(XMLExchangePlugin.XSD_FOLDER + XMLExchangePlugin.ARCHIMATE3_DIAGRAM_XSD)),
                 new StreamSource(XMLExchangePlugin.INSTANCE.getBundleInputStream(XMLExchangePlugin.XSD_FOLDER + XMLExchangePlugin.DUBLINCORE_XSD))
         });
-
-        Validator validator = schema.newValidator();
+    }
+    
+    /**
+     * @return This thread's Validator, reset to a clean state
+     */
+    private static Validator getValidator() throws SAXException, IOException {
+        Validator validator = validators.get();
+        
+        if(validator == null) {
+            validator = getSchema().newValidator();
+            validators.set(validator);
+        }
+        else {
+            // Clear any state left over from the last file
+            validator.reset();
+        }
         
         // Don't allow DTD loading in case of XSS exploits
+        // These have to be set again after a reset
         validator.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, ""); //$NON-NLS-1$
         validator.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, ""); //$NON-NLS-1$
         
-        // Fixes #274 https://github.com/archimatetool/archi/issues/274
-        FileInputStream in = new FileInputStream(xmlInstance);
+        return validator;
+    }
+
+    /**
+     * Reports the kilobytes read to a monitor and throws an OperationCanceledException if the monitor is cancelled
+     */
+    private static class ProgressInputStream extends FilterInputStream {
+        private IProgressMonitor fMonitor;
+        private long fCount;
+        private int fWorked;
         
-        try {
-            validator.validate(new StreamSource(in));
+        ProgressInputStream(InputStream in, IProgressMonitor monitor) {
+            super(in);
+            fMonitor = monitor;
         }
-        catch(SAXException ex) {
-            // Ignore error where an XSD declaration is one that we do not have locally (for example for additional metadata)
-            if(!ex.getMessage().contains("The matching wildcard is strict, but no declaration can be found")) { //$NON-NLS-1$
-                throw ex;
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if(b != -1) {
+                update(1);
             }
+            return b;
         }
-        finally {
-            in.close();
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if(read > 0) {
+                update(read);
+            }
+            return read;
+        }
+        
+        private void update(int read) {
+            if(fMonitor.isCanceled()) {
+                throw new OperationCanceledException();
+            }
+            
+            fCount += read;
+            
+            int worked = (int)Math.min(Integer.MAX_VALUE, fCount / 1024);
+            if(worked > fWorked) {
+                fMonitor.worked(worked - fWorked);
+                fWorked = worked;
+            }
         }
     }
-
+    
     static class ResourceResolver implements LSResourceResolver {
         @Override
         public LSInput resolveResource(String type, String namespaceURI, String publicId, String systemId, String baseURI) {
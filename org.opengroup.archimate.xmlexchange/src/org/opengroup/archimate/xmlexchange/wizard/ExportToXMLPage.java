@@ -26,6 +26,7 @@ import org.eclipse.swt.widgets.Group;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Text;
 import org.eclipse.ui.PlatformUI;
+import org.opengroup.archimate.xmlexchange.Compression;
 import org.opengroup.archimate.xmlexchange.IXMLExchangeGlobals;
 import org.opengroup.archimate.xmlexchange.XMLExchangePlugin;
 
@@ -49,11 +50,13 @@ public class ExportToXMLPage extends WizardPage {
     private static final String PREFS_ORGANISATION = "ExportXMLExchangeOrganisation"; //$NON-NLS-1$
     private static final String PREFS_INCLUDE_XSD = "ExportXMLExchangeIncludeXSD"; //$NON-NLS-1$
     private static final String PREFS_LANGUAGE = "ExportXMLExchangeLanguage"; //$NON-NLS-1$
+    private static final String PREFS_COMPRESSION = "ExportXMLExchangeCompression"; //$NON-NLS-1$
     
     private Text fFileTextField;
     private Button fOrganiseButton;
     private Button fIncludeXSDButton;
     private Combo fLanguageCombo;
+    private Combo fCompressionCombo;
     
     /**
      * The model to export
@@ -89,7 +92,8 @@ public class ExportToXMLPage extends WizardPage {
         fFileTextField = new Text(exportGroup, SWT.BORDER | SWT.SINGLE);
         fFileTextField.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
         
-        String fileName = StringUtils.isSet(fModel.getName()) ? fModel.getName() + ".xml" : "exported.xml"; //$NON-NLS-1$ //$NON-NLS-2$
+        String fileName = StringUtils.isSet(fModel.getName()) ? fModel.getName() : "exported"; //$NON-NLS-1$
+        fileName += getFileExtension(getLastCompression());
         
         // Get last folder used
         String lastFolderName = XMLExchangePlugin.INSTANCE.getPreferenceStore().getString(PREFS_LAST_FILE_LOCATION);
@@ -164,6 +168,68 @@ public class ExportToXMLPage extends WizardPage {
             }
             fLanguageCombo.setText(code);
         }
+        
+        label = new Label(optionsGroup, SWT.NULL);
+        label.setText(Messages.ExportToXMLPage_11);
+        
+        // In the same order as Compression
+        fCompressionCombo = new Combo(optionsGroup, SWT.READ_ONLY);
+        fCompressionCombo.setItems(new String[] { Messages.ExportToXMLPage_12, Messages.ExportToXMLPage_13, Messages.ExportToXMLPage_14 });
+        fCompressionCombo.select(getLastCompression().ordinal());
+        
+        // Change the file extension to match
+        fCompressionCombo.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                fFileTextField.setText(getFileNameWithExtension(getFileName(), getCompression()));
+            }
+        });
+    }
+    
+    private Compression getLastCompression() {
+        String lastCompression = XMLExchangePlugin.INSTANCE.getPreferenceStore().getString(PREFS_COMPRESSION);
+        
+        for(Compression compression : Compression.values()) {
+            if(compression.name().equals(lastCompression)) {
+                return compression;
+            }
+        }
+        
+        return Compression.NONE;
+    }
+    
+    private String getFileExtension(Compression compression) {
+        switch(compression) {
+            case GZIP:
+                return IXMLExchangeGlobals.GZIP_FILE_EXTENSION;
+            
+            case ZIP:
+                return IXMLExchangeGlobals.ZIP_FILE_EXTENSION;
+            
+            default:
+                return IXMLExchangeGlobals.FILE_EXTENSION;
+        }
+    }
+    
+    private String getFileExtensionWildcard(Compression compression) {
+        return "*" + getFileExtension(compression); //$NON-NLS-1$
+    }
+    
+    /**
+     * @return fileName with the file extension for compression in place of any exchange file extension
+     */
+    private String getFileNameWithExtension(String fileName, Compression compression) {
+        String lowerCaseName = fileName.toLowerCase(Locale.ROOT);
+        
+        for(String extension : new String[] { IXMLExchangeGlobals.GZIP_FILE_EXTENSION, IXMLExchangeGlobals.ZIP_FILE_EXTENSION,
+                                              IXMLExchangeGlobals.FILE_EXTENSION }) {
+            if(lowerCaseName.endsWith(extension)) {
+                fileName = fileName.substring(0, fileName.length() - extension.length());
+                break;
+            }
+        }
+        
+        return fileName + getFileExtension(compression);
     }
 
     String getFileName() {
@@ -181,6 +247,10 @@ public class ExportToXMLPage extends WizardPage {
     String getLanguageCode() {
         return fLanguageCombo.getText();
     }
+    
+    Compression getCompression() {
+        return Compression.values()[Math.max(0, fCompressionCombo.getSelectionIndex())];
+    }
 
     private void validateFields() {
         String fileName = getFileName();
@@ -208,15 +278,16 @@ public class ExportToXMLPage extends WizardPage {
         File file = new File(fFileTextField.getText());
         dialog.setFileName(file.getName());
         
-        dialog.setFilterExtensions(new String[] { IXMLExchangeGlobals.FILE_EXTENSION_WILDCARD, "*.*" } ); //$NON-NLS-1$
+        dialog.setFilterExtensions(new String[] { getFileExtensionWildcard(getCompression()), "*.*" } ); //$NON-NLS-1$
         String path = dialog.open();
         if(path == null) {
             return null;
         }
         
         // Only Windows adds the extension by default
-        if(dialog.getFilterIndex() == 0 && !path.endsWith(IXMLExchangeGlobals.FILE_EXTENSION)) {
-            path += IXMLExchangeGlobals.FILE_EXTENSION;
+        String extension = getFileExtension(getCompression());
+        if(dialog.getFilterIndex() == 0 && !path.endsWith(extension)) {
+            path += extension;
         }
         
         return new File(path);
@@ -236,5 +307,6 @@ public class ExportToXMLPage extends WizardPage {
         store.setValue(PREFS_ORGANISATION, doSaveOrganisation());
         store.setValue(PREFS_INCLUDE_XSD, doIncludeXSD());
         store.setValue(PREFS_LANGUAGE, getLanguageCode());
+        store.setValue(PREFS_COMPRESSION, getCompression().name());
     }
 }
@@ -8,12 +8,18 @@ package org.opengroup.archimate.xmlexchange.wizard;
 import java.io.File;
 import java.io.IOException;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.jface.wizard.Wizard;
-import org.eclipse.swt.custom.BusyIndicator;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.swt.widgets.Display;
+import org.opengroup.archimate.xmlexchange.XMLExchangePlugin;
 import org.opengroup.archimate.xmlexchange.XMLModelExporter;
-import org.opengroup.archimate.xmlexchange.XMLValidator;
 
 import com.archimatetool.model.IArchimateModel;
 
@@ -22,6 +28,8 @@ import com.archimatetool.model.IArchimateModel;
 /**
  * Export to XML Wizard
  * 
+ * A copy of the model is exported and validated in a Job that shows its progress and can be cancelled.
+ * 
  * @author Phillip Beauvoir
  */
 public class ExportToXMLWizard extends Wizard {
@@ -68,36 +76,45 @@ public class ExportToXMLWizard extends Wizard {
             }
         }
 
-        BusyIndicator.showWhile(Display.getCurrent(), new Runnable() {
+        // Get the options from the pages on the UI thread
+        XMLModelExporter xmlModelExporter = new XMLModelExporter();
+        
+        xmlModelExporter.setMetadata(fPageMetadata.getMetadata());
+        xmlModelExporter.setSaveOrganisation(fPage.doSaveOrganisation());
+        xmlModelExporter.setIncludeXSD(fPage.doIncludeXSD());
+        xmlModelExporter.setLanguageCode(fPage.getLanguageCode());
+        xmlModelExporter.setCompression(fPage.getCompression());
+        xmlModelExporter.setValidating(true);
+        
+        fPage.storePreferences();
+        fPageMetadata.storePreferences();
+        
+        // EMF models are not thread safe and the model can be changed or closed while the Job runs,
+        // so the Job exports a copy taken now. The copy has the same identifiers.
+        IArchimateModel model = EcoreUtil.copy(fModel);
+        
+        // Export and validate in the background so that a large model does not block the UI
+        Job job = new Job(NLS.bind(Messages.ExportToXMLWizard_5, file.getName())) {
             @Override
-            public void run() {
+            protected IStatus run(IProgressMonitor monitor) {
                 try {
-                    XMLModelExporter xmlModelExporter = new XMLModelExporter();
-                    
-                    xmlModelExporter.setMetadata(fPageMetadata.getMetadata());
-                    xmlModelExporter.setSaveOrganisation(fPage.doSaveOrganisation());
-                    xmlModelExporter.setIncludeXSD(fPage.doIncludeXSD());
-                    xmlModelExporter.setLanguageCode(fPage.getLanguageCode());
-                    
-                    xmlModelExporter.exportModel(fModel, file);
-
-                    fPage.storePreferences();
-                    fPageMetadata.storePreferences();
-                    
-                    // Validate file
-                    XMLValidator validator = new XMLValidator();
-                    validator.validateXML(file);
+                    // The file is only replaced when the export is complete and valid
+                    xmlModelExporter.exportModel(model, file, monitor);
                 }
-                catch(Throwable ex) {
+                catch(OperationCanceledException ex) {
+                    return Status.CANCEL_STATUS;
+                }
+                catch(Exception ex) {
                     ex.printStackTrace();
-                    MessageDialog.openError(Display.getCurrent().getActiveShell(),
-                            Messages.ExportToXMLWizard_3,
-                            Messages.ExportToXMLWizard_4
-                            + " " //$NON-NLS-1$
-                            + ex.getMessage());
+                    return new Status(IStatus.ERROR, XMLExchangePlugin.PLUGIN_ID, Messages.ExportToXMLWizard_4 + " " + ex.getMessage(), ex); //$NON-NLS-1$
                 }
+                
+                return Status.OK_STATUS;
             }
-        });
+        };
+        
+        job.setUser(true);
+        job.schedule();
         
         return true;
     }
@@ -12,6 +12,14 @@ public class Messages extends NLS {
 
     public static String ExportToXMLPage_10;
 
+    public static String ExportToXMLPage_11;
+
+    public static String ExportToXMLPage_12;
+
+    public static String ExportToXMLPage_13;
+
+    public static String ExportToXMLPage_14;
+
     public static String ExportToXMLPage_2;
 
     public static String ExportToXMLPage_3;
@@ -77,6 +85,8 @@ public class Messages extends NLS {
     public static String ExportToXMLWizard_3;
 
     public static String ExportToXMLWizard_4;
+
+    public static String ExportToXMLWizard_5;
     static {
         // initialize resource bundle
         NLS.initializeMessages(BUNDLE_NAME, Messages.class);